@@ -0,0 +1,167 @@
+package com.github.princesslana.smalld;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of gateway payloads from the frame being received by the websocket to the
+ * last listener being notified.
+ *
+ * <p>Frames are delivered to the websocket listener that {@link SmallD} registers when it connects,
+ * as OkHttp's reader thread would. Each invocation delivers a batch of frames and waits until the
+ * last listener has seen all of them, so the handoff to the dispatch thread is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GatewayIngestBenchmark {
+
+  private static final int BATCH = 100;
+
+  @Param({"MESSAGE_CREATE", "PRESENCE_UPDATE", "GUILD_CREATE"})
+  private String type;
+
+  private String payload;
+
+  private final AtomicLong received = new AtomicLong();
+
+  private long sent = 0;
+
+  private CapturingHttpClient http;
+
+  private SmallD smalld;
+
+  private WebSocketListener gateway;
+
+  /**
+   * Creates a {@link SmallD} with the default listeners and connects it to a websocket that does
+   * not send anything itself.
+   *
+   * @throws Exception if connecting fails
+   */
+  @Setup
+  public void setUp() throws Exception {
+    payload = Payloads.get(type);
+
+    Config config = Config.builder().setToken("benchmark").build();
+    http = new CapturingHttpClient(config);
+    smalld = new SmallD(config, http);
+
+    SequenceNumber seq = new SequenceNumber();
+    Stream.of(seq, new Identify(seq), new Heartbeat(seq)).forEach(c -> c.accept(smalld));
+    smalld.onGatewayPayload(p -> received.incrementAndGet());
+
+    Thread runner = SmallD.DAEMON_THREAD_FACTORY.newThread(smalld::run);
+    runner.start();
+
+    gateway = http.listener.get(10, TimeUnit.SECONDS);
+  }
+
+  /** Closes the {@link SmallD} instance. */
+  @TearDown
+  public void tearDown() {
+    smalld.close();
+  }
+
+  /** Delivers a batch of frames and waits for the listeners to be notified of them. */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void ingest() {
+    for (int i = 0; i < BATCH; i++) {
+      gateway.onMessage(http.webSocket, payload);
+    }
+
+    sent += BATCH;
+
+    while (received.get() < sent) {
+      Thread.yield();
+    }
+  }
+
+  /** An {@link HttpClient} that captures the gateway listener instead of connecting. */
+  private static class CapturingHttpClient extends HttpClient {
+
+    private final CompletableFuture<WebSocketListener> listener = new CompletableFuture<>();
+
+    private final WebSocket webSocket = new NoopWebSocket();
+
+    CapturingHttpClient(Config config) {
+      super(config);
+    }
+
+    @Override
+    public void warmUp() {
+      // nothing to warm up
+    }
+
+    @Override
+    public String send(
+        String path, UnaryOperator<Request.Builder> build, Map<String, Object> parameters) {
+      return "{\"url\":\"wss://gateway.discord.gg\"}";
+    }
+
+    @Override
+    public WebSocket newWebSocket(Request request, WebSocketListener listener) {
+      this.listener.complete(listener);
+      return webSocket;
+    }
+  }
+
+  /** A {@link WebSocket} that discards what is sent to it. */
+  private static class NoopWebSocket implements WebSocket {
+
+    @Override
+    public Request request() {
+      return new Request.Builder().url("https://gateway.discord.gg").build();
+    }
+
+    @Override
+    public long queueSize() {
+      return 0;
+    }
+
+    @Override
+    public boolean send(String text) {
+      return true;
+    }
+
+    @Override
+    public boolean send(ByteString bytes) {
+      return true;
+    }
+
+    @Override
+    public boolean close(int code, String reason) {
+      return true;
+    }
+
+    @Override
+    public void cancel() {
+      // nothing to cancel
+    }
+  }
+}
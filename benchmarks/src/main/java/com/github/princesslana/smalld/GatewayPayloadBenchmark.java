@@ -0,0 +1,55 @@
+package com.github.princesslana.smalld;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures parsing a gateway payload, which every default listener does for every payload. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GatewayPayloadBenchmark {
+
+  @Param({"MESSAGE_CREATE", "PRESENCE_UPDATE", "GUILD_CREATE"})
+  private String type;
+
+  private String payload;
+
+  /** Loads the payload to parse. */
+  @Setup
+  public void setUp() {
+    payload = Payloads.get(type);
+  }
+
+  /**
+   * Parses the payload.
+   *
+   * @return the parsed payload
+   */
+  @Benchmark
+  public GatewayPayload parse() {
+    return GatewayPayload.parse(payload);
+  }
+
+  /**
+   * Finds the event type without parsing the payload, as is done when counting events.
+   *
+   * @return the event type
+   */
+  @Benchmark
+  public String peek() {
+    return GatewayPayload.peek(payload, "t");
+  }
+}
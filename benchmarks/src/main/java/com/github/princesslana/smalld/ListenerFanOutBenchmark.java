@@ -0,0 +1,59 @@
+package com.github.princesslana.smalld;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures notifying the gateway payload listeners of a payload on the dispatch thread, with the
+ * {@link SequenceNumber}, {@link Identify}, and {@link Heartbeat} listeners that {@link
+ * SmallD#create(Config)} adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerFanOutBenchmark {
+
+  @Param({"MESSAGE_CREATE", "PRESENCE_UPDATE", "GUILD_CREATE"})
+  private String type;
+
+  private String payload;
+
+  private SmallD smalld;
+
+  /** Creates a {@link SmallD} with the default listeners. */
+  @Setup
+  public void setUp() {
+    payload = Payloads.get(type);
+    smalld = new SmallD(Config.builder().setToken("benchmark").build());
+
+    SequenceNumber seq = new SequenceNumber();
+    Stream.of(seq, new Identify(seq), new Heartbeat(seq)).forEach(c -> c.accept(smalld));
+  }
+
+  /** Closes the {@link SmallD} instance. */
+  @TearDown
+  public void tearDown() {
+    smalld.close();
+  }
+
+  /** Notifies the listeners of the payload. */
+  @Benchmark
+  public void notifyListeners() {
+    smalld.notifyListeners(payload);
+  }
+}
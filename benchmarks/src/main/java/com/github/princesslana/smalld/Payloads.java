@@ -0,0 +1,142 @@
+package com.github.princesslana.smalld;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import okio.Okio;
+
+/** Gateway payloads used as benchmark inputs. */
+final class Payloads {
+
+  /** Number of members in the generated {@code GUILD_CREATE}, giving a payload of about 5MB. */
+  static final int GUILD_CREATE_MEMBERS = 10000;
+
+  private Payloads() {}
+
+  /**
+   * Returns the payload of the given event type.
+   *
+   * @param type one of {@code MESSAGE_CREATE}, {@code PRESENCE_UPDATE}, or {@code GUILD_CREATE}
+   * @return the payload
+   */
+  static String get(String type) {
+    switch (type) {
+      case "MESSAGE_CREATE":
+        return load("message_create.json");
+      case "PRESENCE_UPDATE":
+        return load("presence_update.json");
+      case "GUILD_CREATE":
+        return guildCreate(GUILD_CREATE_MEMBERS);
+      default:
+        throw new IllegalArgumentException("Unknown payload type: " + type);
+    }
+  }
+
+  private static String load(String resource) {
+    try (InputStream in = Payloads.class.getResourceAsStream(resource)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing payload resource: " + resource);
+      }
+      return Okio.buffer(Okio.source(in)).readString(StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      throw new SmallDException(e);
+    }
+  }
+
+  /**
+   * Generates a {@code GUILD_CREATE} for a large guild. Discord sends these shortly after
+   * identifying, with the guild's channels, roles, and, with the privileged intents, a member and
+   * presence for every user that is online. The shape of each part follows a recorded payload.
+   */
+  private static String guildCreate(int members) {
+    StringBuilder out = new StringBuilder(members * 560);
+
+    out.append("{\"t\":\"GUILD_CREATE\",\"s\":2,\"op\":0,\"d\":{")
+        .append("\"id\":\"702595512402640946\",\"name\":\"SmallD Benchmark Guild\",")
+        .append("\"icon\":\"4f2e1d0c9b8a7f6e5d4c3b2a1f0e9d8c\",")
+        .append("\"owner_id\":\"245627862424518656\",")
+        .append("\"region\":\"us-east\",\"afk_channel_id\":null,\"afk_timeout\":300,")
+        .append("\"verification_level\":1,\"default_message_notifications\":1,")
+        .append("\"explicit_content_filter\":2,\"features\":[\"COMMUNITY\",\"NEWS\"],")
+        .append("\"mfa_level\":0,\"large\":true,\"unavailable\":false,")
+        .append("\"joined_at\":\"2020-04-21T14:17:36.011000+00:00\",")
+        .append("\"member_count\":")
+        .append(members)
+        .append(",\"roles\":[");
+
+    for (int i = 0; i < 50; i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append("{\"id\":\"")
+          .append(712040316428943381L + i)
+          .append("\",\"name\":\"role-")
+          .append(i)
+          .append("\",\"color\":")
+          .append(i * 4099)
+          .append(",\"hoist\":")
+          .append(i % 5 == 0)
+          .append(",\"position\":")
+          .append(i)
+          .append(",\"permissions\":104324673,\"managed\":false,\"mentionable\":true}");
+    }
+
+    out.append("],\"channels\":[");
+
+    for (int i = 0; i < 200; i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append("{\"id\":\"")
+          .append(702595512402640950L + i)
+          .append("\",\"type\":")
+          .append(i % 10 == 0 ? 4 : 0)
+          .append(",\"name\":\"channel-")
+          .append(i)
+          .append("\",\"position\":")
+          .append(i)
+          .append(",\"parent_id\":\"702595512402640950\",\"topic\":\"Discussion of topic ")
+          .append(i)
+          .append("\",\"nsfw\":false,\"rate_limit_per_user\":0,")
+          .append("\"last_message_id\":\"743912480873742396\",\"permission_overwrites\":[")
+          .append("{\"id\":\"702595512402640946\",\"type\":\"role\",\"allow\":0,\"deny\":2048}]}");
+    }
+
+    out.append("],\"members\":[");
+
+    for (int i = 0; i < members; i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append("{\"user\":{\"username\":\"user")
+          .append(i)
+          .append("\",\"public_flags\":0,\"id\":\"")
+          .append(411613487925329921L + i)
+          .append("\",\"discriminator\":\"")
+          .append(String.format("%04d", i % 10000))
+          .append("\",\"avatar\":\"1b2c3d4e5f60718293a4b5c6d7e8f901\"},")
+          .append("\"roles\":[\"702595512402640947\"],\"premium_since\":null,\"nick\":")
+          .append(i % 3 == 0 ? "\"nick" + i + "\"" : "null")
+          .append(",\"mute\":false,\"joined_at\":\"2020-04-21T14:17:36.011000+00:00\",")
+          .append("\"hoisted_role\":null,\"deaf\":false}");
+    }
+
+    out.append("],\"presences\":[");
+
+    for (int i = 0; i < members; i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append("{\"user\":{\"id\":\"")
+          .append(411613487925329921L + i)
+          .append("\"},\"status\":\"online\",\"game\":null,")
+          .append("\"client_status\":{\"desktop\":\"online\"},")
+          .append("\"activities\":[{\"type\":0,\"name\":\"Visual Studio Code\",")
+          .append("\"created_at\":1597434127562,\"state\":\"Workspace: smalld\"}]}");
+    }
+
+    out.append("],\"voice_states\":[],\"emojis\":[]}}");
+
+    return out.toString();
+  }
+}
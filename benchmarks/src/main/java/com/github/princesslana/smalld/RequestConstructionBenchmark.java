@@ -0,0 +1,110 @@
+package com.github.princesslana.smalld;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building REST requests, from a call to {@link SmallD} up to the point at which the
+ * request would be handed to OkHttp to be sent.
+ *
+ * <p>The {@link HttpClient} builds each request as {@link HttpClient#send(String, UnaryOperator,
+ * Map)} does, and keeps it rather than sending it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestConstructionBenchmark {
+
+  private static final String MESSAGE =
+      "{\"content\":\"the release with the intents fix is out :tada:\",\"tts\":false}";
+
+  private final Map<String, Object> memberParameters = new LinkedHashMap<>();
+
+  private SmallD smalld;
+
+  /** Creates a {@link SmallD} that does not send its requests. */
+  @Setup
+  public void setUp() {
+    Config config = Config.builder().setToken("benchmark").build();
+    smalld = new SmallD(config, new BuildingHttpClient(config));
+
+    memberParameters.put("limit", 1000);
+    memberParameters.put("after", "411613487925329921");
+  }
+
+  /**
+   * Builds a request to create a message.
+   *
+   * @return the response body, which is always empty
+   */
+  @Benchmark
+  public String createMessage() {
+    return smalld.post("/channels/702595512402640950/messages", MESSAGE);
+  }
+
+  /**
+   * Builds a request to create a message, from four threads at once.
+   *
+   * @return the response body, which is always empty
+   */
+  @Benchmark
+  @Threads(4)
+  public String createMessageConcurrently() {
+    return smalld.post("/channels/702595512402640950/messages", MESSAGE);
+  }
+
+  /**
+   * Builds a request to list guild members, with query parameters.
+   *
+   * @return the response body, which is always empty
+   */
+  @Benchmark
+  public String listMembers() {
+    return smalld.get("/guilds/702595512402640946/members", memberParameters);
+  }
+
+  /**
+   * Builds a request to add a reaction, which has a path segment that must be encoded.
+   *
+   * @return the response body, which is always empty
+   */
+  @Benchmark
+  public String addReaction() {
+    return smalld.put(
+        "/channels/702595512402640950/messages/743912480873742396/reactions/\uD83D\uDC4D/@me", "");
+  }
+
+  /** An {@link HttpClient} that builds requests and keeps the last one instead of sending it. */
+  private static class BuildingHttpClient extends HttpClient {
+
+    private Request last;
+
+    BuildingHttpClient(Config config) {
+      super(config);
+    }
+
+    @Override
+    public String send(
+        String path, UnaryOperator<Request.Builder> build, Map<String, Object> parameters) {
+      last = build.apply(newRequest(path, parameters)).build();
+      return "";
+    }
+  }
+}
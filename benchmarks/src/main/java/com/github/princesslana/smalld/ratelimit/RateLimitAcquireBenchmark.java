@@ -0,0 +1,82 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures acquiring permits from the rate limits that every request passes through, from one
+ * thread and from several threads sharing the same limit.
+ *
+ * <p>The limits never run out of permits, so that only the cost of acquiring is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitAcquireBenchmark {
+
+  private final Clock clock = Clock.systemUTC();
+
+  private RateLimit resource;
+
+  private RateLimit global;
+
+  /** Creates the rate limits. */
+  @Setup
+  public void setUp() {
+    resource = new ResourceRateLimit(clock, Long.MAX_VALUE, Instant.now().plusSeconds(3600));
+    global = unlimitedGlobal(clock);
+  }
+
+  /** Acquires a permit for a resource. */
+  @Benchmark
+  public void resource() {
+    resource.acquire();
+  }
+
+  /** Acquires a permit for a resource, from eight threads at once. */
+  @Benchmark
+  @Threads(8)
+  public void resourceContended() {
+    resource.acquire();
+  }
+
+  /** Acquires a permit from the proactive global rate limit. */
+  @Benchmark
+  public void global() {
+    global.acquire();
+  }
+
+  /** Acquires a permit from the proactive global rate limit, from eight threads at once. */
+  @Benchmark
+  @Threads(8)
+  public void globalContended() {
+    global.acquire();
+  }
+
+  /**
+   * Creates a global rate limit that will not run out of permits during a benchmark. It allows a
+   * burst of a billion requests, so that requests from several threads never have to wait.
+   *
+   * @param clock the clock to use
+   * @return the rate limit
+   */
+  static RateLimit unlimitedGlobal(Clock clock) {
+    return new TokenBucketRateLimit(clock, 1_000_000_000L, Duration.ofSeconds(1000));
+  }
+}
@@ -0,0 +1,69 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the rate limit bucket of a request, which is done several times for every
+ * request that is sent. Each invocation looks up the next path, cycling through a path for every
+ * route in {@code rate_limit_buckets.properties}, so the result is an average over all routes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitBucketBenchmark {
+
+  @Param({"GET", "DELETE"})
+  private String method;
+
+  private String[] paths;
+
+  private int next = 0;
+
+  /** Creates the paths to look up. */
+  @Setup
+  public void setUp() {
+    paths = Routes.all().toArray(new String[0]);
+  }
+
+  /**
+   * Finds the bucket of the next path.
+   *
+   * @return the bucket
+   */
+  @Benchmark
+  public RateLimitBucket from() {
+    return RateLimitBucket.from(method, nextPath());
+  }
+
+  /**
+   * Finds the bucket of the next path, from four threads at once.
+   *
+   * @return the bucket
+   */
+  @Benchmark
+  @Threads(4)
+  public RateLimitBucket fromConcurrently() {
+    return RateLimitBucket.from(method, nextPath());
+  }
+
+  private String nextPath() {
+    String path = paths[next];
+    next = next + 1 == paths.length ? 0 : next + 1;
+    return path;
+  }
+}
@@ -0,0 +1,198 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the work the {@link RateLimitInterceptor} does around each request: acquiring the global
+ * and resource rate limits before the request, and reading the rate limit headers of the response.
+ *
+ * <p>The chain answers every request with a successful response that has Discord's rate limit
+ * headers, without any I/O. Requests are spread over a number of channels, so each thread works
+ * across several buckets of the shared rate limit maps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitInterceptorBenchmark {
+
+  /** The interceptor that is shared by all threads, as it is by all requests of a client. */
+  @State(Scope.Benchmark)
+  public static class SharedInterceptor {
+
+    /** How long requests may wait for a rate limit, in ms. Zero takes the path without waiting. */
+    @Param({"0", "1000"})
+    private long maxWaitMillis;
+
+    private RateLimitInterceptor interceptor;
+
+    /** Creates the interceptor. */
+    @Setup
+    public void setUp() {
+      interceptor =
+          RateLimitInterceptor.builder()
+              .setGlobalRateLimit(RateLimitAcquireBenchmark.unlimitedGlobal(Clock.systemUTC()))
+              .setMaxWait(Duration.ofMillis(maxWaitMillis))
+              .build();
+    }
+  }
+
+  /** The requests made by a thread. */
+  @State(Scope.Thread)
+  public static class Chains {
+
+    private static final int CHANNELS = 32;
+
+    private StubChain[] chains;
+
+    private int next = 0;
+
+    /** Creates a chain for a request to each channel. */
+    @Setup
+    public void setUp() {
+      chains =
+          Routes.createMessage(CHANNELS)
+              .stream()
+              .map(p -> new StubChain(newRequest(p)))
+              .toArray(StubChain[]::new);
+    }
+
+    private StubChain next() {
+      StubChain chain = chains[next];
+      next = next + 1 == chains.length ? 0 : next + 1;
+      return chain;
+    }
+
+    private static Request newRequest(String path) {
+      return new Request.Builder().url("https://discordapp.com/api/v6" + path).get().build();
+    }
+  }
+
+  /**
+   * Intercepts a request.
+   *
+   * @param interceptor the interceptor
+   * @param chains the requests of this thread
+   * @return the response
+   * @throws IOException if intercepting fails
+   */
+  @Benchmark
+  public Response intercept(SharedInterceptor interceptor, Chains chains) throws IOException {
+    return interceptor.interceptor.intercept(chains.next());
+  }
+
+  /**
+   * Intercepts a request, from eight threads at once.
+   *
+   * @param interceptor the interceptor
+   * @param chains the requests of this thread
+   * @return the response
+   * @throws IOException if intercepting fails
+   */
+  @Benchmark
+  @Threads(8)
+  public Response interceptContended(SharedInterceptor interceptor, Chains chains)
+      throws IOException {
+    return interceptor.interceptor.intercept(chains.next());
+  }
+
+  /** A chain that answers its request with a response that allows plenty more requests. */
+  private static class StubChain implements Interceptor.Chain {
+
+    private static final String DATE =
+        DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+
+    private final Request request;
+
+    StubChain(Request request) {
+      this.request = request;
+    }
+
+    @Override
+    public Request request() {
+      return request;
+    }
+
+    @Override
+    public Response proceed(Request request) {
+      return new Response.Builder()
+          .request(request)
+          .protocol(Protocol.HTTP_1_1)
+          .code(200)
+          .message("OK")
+          .header("Date", DATE)
+          .header("X-RateLimit-Limit", "5")
+          .header("X-RateLimit-Remaining", String.valueOf(Long.MAX_VALUE))
+          .header("X-RateLimit-Reset-After", "1.000")
+          .header("X-RateLimit-Bucket", "abcd1234")
+          .body(ResponseBody.create(null, ""))
+          .build();
+    }
+
+    @Override
+    public Connection connection() {
+      return null;
+    }
+
+    @Override
+    public Call call() {
+      return null;
+    }
+
+    @Override
+    public int connectTimeoutMillis() {
+      return 0;
+    }
+
+    @Override
+    public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+      return this;
+    }
+
+    @Override
+    public int readTimeoutMillis() {
+      return 0;
+    }
+
+    @Override
+    public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+      return this;
+    }
+
+    @Override
+    public int writeTimeoutMillis() {
+      return 0;
+    }
+
+    @Override
+    public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import com.github.princesslana.smalld.SmallDException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/** Request paths used as benchmark inputs. */
+final class Routes {
+
+  private static final String MAPPINGS = "rate_limit_buckets.properties";
+
+  private static final String ID = "702595512402640950";
+
+  private static final String TOKEN = "aBcD3fGh1jKlMn0pQrSt";
+
+  private Routes() {}
+
+  /**
+   * Returns a path for every route that has a rate limit bucket mapping, with ids and tokens in
+   * place of its parameters, and a path that has no mapping.
+   *
+   * @return the paths
+   */
+  static List<String> all() {
+    try (InputStream in = RateLimitBucket.class.getResourceAsStream(MAPPINGS)) {
+      Properties mappings = new Properties();
+      mappings.load(in);
+
+      List<String> paths =
+          mappings
+              .stringPropertyNames()
+              .stream()
+              .sorted()
+              .map(r -> r.replace("(\\d+)", ID).replace("(\\w+)", TOKEN))
+              .collect(Collectors.toList());
+
+      paths.add("/unmapped/route");
+
+      return paths;
+    } catch (IOException e) {
+      throw new SmallDException(e);
+    }
+  }
+
+  /**
+   * Returns paths to create a message in each of a number of channels, as a bot that is active in
+   * many channels would.
+   *
+   * @param channels the number of channels
+   * @return the paths
+   */
+  static List<String> createMessage(int channels) {
+    return LongStream.range(0, channels)
+        .mapToObj(i -> "/channels/" + (Long.parseLong(ID) + i) + "/messages")
+        .collect(Collectors.toList());
+  }
+}
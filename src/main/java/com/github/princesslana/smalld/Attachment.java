@@ -6,13 +6,25 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
 
 /**
  * An attachment for a multipart request. Content is read from the source provided for the
- * attachment on every call to {@link #getBytes()}.
+ * attachment on every call to {@link #getBytes()}, and every time the {@link RequestBody} from
+ * {@link #toRequestBody()} is written.
+ *
+ * <p>An attachment from an {@link AttachmentCache} may hold on to content the cache would otherwise
+ * delete. It is {@link #release() released} once a request it is sent with has completed.
  */
 public class Attachment {
 
@@ -20,7 +32,9 @@ public class Attachment {
 
   private final String mimeType;
 
-  private final Supplier<InputStream> stream;
+  private final Content content;
+
+  private final AtomicReference<Runnable> onRelease;
 
   /**
    * Create an instance with content from a byte array.
@@ -30,7 +44,7 @@ public class Attachment {
    * @param bytes the content of this attachment
    */
   public Attachment(String filename, String mimeType, byte[] bytes) {
-    this(filename, mimeType, () -> new ByteArrayInputStream(bytes));
+    this(filename, mimeType, new BytesContent(bytes));
   }
 
   /**
@@ -41,7 +55,7 @@ public class Attachment {
    * @param file file to retrieve content of this attachment
    */
   public Attachment(String filename, String mimeType, File file) {
-    this(filename, mimeType, supplyFrom(() -> new FileInputStream(file)));
+    this(filename, mimeType, new FileContent(file));
   }
 
   /**
@@ -65,9 +79,31 @@ public class Attachment {
    * @param stream a supplier that can create an InputStream to get the content
    */
   public Attachment(String filename, String mimeType, Supplier<InputStream> stream) {
+    this(filename, mimeType, new StreamContent(stream));
+  }
+
+  /**
+   * Create an instance with content from the provided {@link File}, that will notify the owner of
+   * the file when it is released.
+   *
+   * @param filename the filename of this attachment
+   * @param mimeType the mime type of this attachment
+   * @param file file to retrieve content of this attachment
+   * @param onRelease run the first time this attachment is released
+   */
+  Attachment(String filename, String mimeType, File file, Runnable onRelease) {
+    this(filename, mimeType, new FileContent(file), onRelease);
+  }
+
+  private Attachment(String filename, String mimeType, Content content) {
+    this(filename, mimeType, content, null);
+  }
+
+  private Attachment(String filename, String mimeType, Content content, Runnable onRelease) {
     this.filename = filename;
     this.mimeType = mimeType;
-    this.stream = stream;
+    this.content = content;
+    this.onRelease = new AtomicReference<>(onRelease);
   }
 
   /**
@@ -95,7 +131,7 @@ public class Attachment {
    */
   public byte[] getBytes() {
     try (Buffer buffer = new Buffer();
-        InputStream is = stream.get()) {
+        InputStream is = content.open()) {
       buffer.readFrom(is);
       return buffer.readByteArray();
     } catch (IOException e) {
@@ -103,6 +139,54 @@ public class Attachment {
     }
   }
 
+  /**
+   * Return a {@link RequestBody} that streams the content from its source as it is written.
+   *
+   * <p>The content is never held in memory in full, unless it was provided as a byte array. Content
+   * from a {@link File} is transferred directly from the file channel and has the length of the
+   * file when this is called. Exactly that many bytes are sent, and writing fails if the file has
+   * become shorter. Content from a {@link URL} or {@link InputStream} has an unknown length.
+   *
+   * @return the content as a request body
+   */
+  public RequestBody toRequestBody() {
+    MediaType contentType = MediaType.get(mimeType);
+    long length = content.length();
+
+    return content instanceof BytesContent
+        ? RequestBody.create(contentType, ((BytesContent) content).bytes)
+        : new RequestBody() {
+          @Override
+          public MediaType contentType() {
+            return contentType;
+          }
+
+          @Override
+          public long contentLength() {
+            return length;
+          }
+
+          @Override
+          public void writeTo(BufferedSink sink) throws IOException {
+            content.writeTo(sink, length);
+          }
+        };
+  }
+
+  /**
+   * Release the content of this attachment. This has no effect unless the attachment came from an
+   * {@link AttachmentCache}, in which case the cache may then delete the content. {@link SmallD}
+   * releases attachments once the request they were sent with has completed, including any retries,
+   * so an attachment from a cache should be sent only once.
+   */
+  public void release() {
+    Runnable r = onRelease.getAndSet(null);
+
+    if (r != null) {
+      r.run();
+    }
+  }
+
   private static Supplier<InputStream> supplyFrom(Callable<InputStream> c) {
     return () -> {
       try {
@@ -112,4 +196,106 @@ public class Attachment {
       }
     };
   }
+
+  /** The source of the content of an attachment. */
+  private interface Content {
+    InputStream open() throws IOException;
+
+    long length();
+
+    /** Writes the content, which is {@code length} bytes long, or -1 if the length is unknown. */
+    void writeTo(BufferedSink sink, long length) throws IOException;
+  }
+
+  /** Content held in a byte array. */
+  private static class BytesContent implements Content {
+    private final byte[] bytes;
+
+    BytesContent(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public InputStream open() {
+      return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public long length() {
+      return bytes.length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink, long length) throws IOException {
+      sink.write(bytes);
+    }
+  }
+
+  /** Content read from a file. */
+  private static class FileContent implements Content {
+    private final File file;
+
+    FileContent(File file) {
+      this.file = file;
+    }
+
+    @Override
+    public InputStream open() throws IOException {
+      return new FileInputStream(file);
+    }
+
+    @Override
+    public long length() {
+      return file.length();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink, long length) throws IOException {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        long position = 0;
+
+        while (position < length) {
+          long transferred = channel.transferTo(position, length - position, sink);
+
+          if (transferred <= 0) {
+            throw new IOException(
+                "File was truncated while being sent, after "
+                    + position
+                    + " of "
+                    + length
+                    + " bytes: "
+                    + file);
+          }
+
+          position += transferred;
+        }
+      }
+    }
+  }
+
+  /** Content read from an {@link InputStream}. */
+  private static class StreamContent implements Content {
+    private final Supplier<InputStream> stream;
+
+    StreamContent(Supplier<InputStream> stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public InputStream open() {
+      return stream.get();
+    }
+
+    @Override
+    public long length() {
+      return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink, long length) throws IOException {
+      try (Source source = Okio.source(open())) {
+        sink.writeAll(source);
+      }
+    }
+  }
 }
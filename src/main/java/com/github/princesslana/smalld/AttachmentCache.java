@@ -0,0 +1,435 @@
+package com.github.princesslana.smalld;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * A cache of attachment content, so that content that is sent many times is only fetched once.
+ *
+ * <p>Content is looked up by a key, which for content from a {@link URL} is the URL itself. When
+ * content is fetched it is stored by its SHA-256 hash, so that keys with identical content share a
+ * single copy. Small content is kept on the heap. Content larger than the spill threshold is
+ * written to a temporary file, from which it can be sent without being read into memory.
+ *
+ * <p>When the total size of the cached content exceeds the maximum size the least recently used
+ * content is evicted, and its temporary file deleted. A temporary file is not deleted while an
+ * {@link Attachment} backed by it is still in use, so that an upload, or a retry of it, can still
+ * read it. An attachment is in use until it is {@link Attachment#release() released}, which {@link
+ * SmallD} does once the request it was sent with has completed.
+ *
+ * <p>When there is a miss for a key that is already being fetched, the caller waits for that fetch
+ * rather than fetching the content again.
+ */
+public class AttachmentCache implements Closeable {
+
+  private static final int READ_SIZE = 8192;
+
+  private static final String SPILL_PREFIX = "smalld-attachment-";
+
+  private static final String SPILL_SUFFIX = ".bin";
+
+  private final long maximumSize;
+
+  private final long spillThreshold;
+
+  private final Path spillDirectory;
+
+  private final Map<String, String> hashesByKey = new HashMap<>();
+
+  private final Map<String, Content> contentsByHash = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Map<String, CompletableFuture<Content>> fetchesByKey = new HashMap<>();
+
+  private long totalSize = 0;
+
+  private long hits = 0;
+
+  private long misses = 0;
+
+  private AttachmentCache(Builder builder) {
+    this.maximumSize = builder.maximumSize;
+    this.spillThreshold = builder.spillThreshold;
+    this.spillDirectory = builder.spillDirectory;
+  }
+
+  /**
+   * Returns an attachment with content from the provided {@link URL}. The content is fetched only
+   * if it is not already cached.
+   *
+   * @param filename the filename of the attachment
+   * @param mimeType the mime type of the attachment
+   * @param url url to retrieve content of the attachment
+   * @return the attachment
+   */
+  public Attachment get(String filename, String mimeType, URL url) {
+    return get(
+        filename,
+        mimeType,
+        url.toString(),
+        () -> {
+          try {
+            return url.openStream();
+          } catch (IOException e) {
+            throw new SmallDException(e);
+          }
+        });
+  }
+
+  /**
+   * Returns an attachment with content from an {@link InputStream}. The stream is opened and read
+   * only if there is no content cached for the key.
+   *
+   * @param filename the filename of the attachment
+   * @param mimeType the mime type of the attachment
+   * @param key identifies the content
+   * @param stream a supplier that can create an InputStream to get the content
+   * @return the attachment
+   */
+  public Attachment get(
+      String filename, String mimeType, String key, Supplier<InputStream> stream) {
+    while (true) {
+      CompletableFuture<Content> fetching;
+      boolean fetcher = false;
+
+      synchronized (this) {
+        Content content = lookup(key);
+
+        if (content != null) {
+          return toAttachment(content, filename, mimeType);
+        }
+
+        fetching = fetchesByKey.get(key);
+
+        if (fetching == null) {
+          fetching = new CompletableFuture<>();
+          fetchesByKey.put(key, fetching);
+          fetcher = true;
+          misses++;
+        } else {
+          hits++;
+        }
+      }
+
+      if (fetcher) {
+        return fetchAndStore(filename, mimeType, key, stream, fetching);
+      }
+
+      Content fetched = await(fetching);
+
+      synchronized (this) {
+        if (!fetched.deleted) {
+          return toAttachment(fetched, filename, mimeType);
+        }
+      }
+      // the content was evicted and deleted before we could use it, so look it up again
+    }
+  }
+
+  /**
+   * Returns the number of lookups that were served from the cache.
+   *
+   * @return the number of cache hits
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that required the content to be fetched.
+   *
+   * @return the number of cache misses
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Returns the total size of the cached content in bytes.
+   *
+   * @return the size of the cached content
+   */
+  public synchronized long getSize() {
+    return totalSize;
+  }
+
+  /**
+   * Returns the number of distinct pieces of content that are cached.
+   *
+   * @return the number of cached contents
+   */
+  public synchronized int getContentCount() {
+    return contentsByHash.size();
+  }
+
+  /**
+   * Removes all cached content, deleting any temporary files. Attachments from this cache that are
+   * still in use can no longer be sent.
+   */
+  @Override
+  public synchronized void close() {
+    contentsByHash.values().forEach(Content::delete);
+    contentsByHash.clear();
+    hashesByKey.clear();
+    totalSize = 0;
+  }
+
+  private Content lookup(String key) {
+    String hash = hashesByKey.get(key);
+    Content content = hash == null ? null : contentsByHash.get(hash);
+
+    if (content != null) {
+      hits++;
+    }
+
+    return content;
+  }
+
+  private Attachment fetchAndStore(
+      String filename,
+      String mimeType,
+      String key,
+      Supplier<InputStream> stream,
+      CompletableFuture<Content> fetching) {
+    try {
+      Content content = fetch(stream);
+
+      synchronized (this) {
+        Content stored = store(key, content);
+        fetching.complete(stored);
+        return toAttachment(stored, filename, mimeType);
+      }
+    } catch (RuntimeException e) {
+      fetching.completeExceptionally(e);
+      throw e;
+    } finally {
+      synchronized (this) {
+        fetchesByKey.remove(key);
+      }
+    }
+  }
+
+  private static Content await(CompletableFuture<Content> fetching) {
+    try {
+      return fetching.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException
+          ? (RuntimeException) e.getCause()
+          : new SmallDException(e.getCause());
+    }
+  }
+
+  private Attachment toAttachment(Content content, String filename, String mimeType) {
+    if (content.file == null) {
+      return new Attachment(filename, mimeType, content.bytes);
+    }
+
+    content.references++;
+    return new Attachment(filename, mimeType, content.file.toFile(), () -> release(content));
+  }
+
+  private synchronized void release(Content content) {
+    content.references--;
+
+    if (content.references == 0 && content.evicted) {
+      content.delete();
+    }
+  }
+
+  private Content store(String key, Content fetched) {
+    Content existing = contentsByHash.get(fetched.hash);
+
+    hashesByKey.put(key, fetched.hash);
+
+    if (existing != null) {
+      fetched.delete();
+      return existing;
+    }
+
+    contentsByHash.put(fetched.hash, fetched);
+    totalSize += fetched.size;
+
+    evict(fetched);
+
+    return fetched;
+  }
+
+  private void evict(Content keep) {
+    Iterator<Content> it = contentsByHash.values().iterator();
+
+    while (totalSize > maximumSize && it.hasNext()) {
+      Content eldest = it.next();
+
+      if (eldest != keep) {
+        it.remove();
+        if (eldest.references == 0) {
+          eldest.delete();
+        } else {
+          eldest.evicted = true;
+        }
+        totalSize -= eldest.size;
+        hashesByKey.values().removeIf(eldest.hash::equals);
+      }
+    }
+  }
+
+  private Content fetch(Supplier<InputStream> stream) {
+    MessageDigest digest = newDigest();
+
+    try (Source source = Okio.source(new DigestInputStream(stream.get(), digest))) {
+      Buffer buffer = new Buffer();
+
+      while (buffer.size() <= spillThreshold && source.read(buffer, READ_SIZE) != -1) {
+        // keep reading until spill threshold is reached or the content is read
+      }
+
+      if (buffer.size() <= spillThreshold) {
+        long size = buffer.size();
+        return new Content(toHex(digest), size, buffer.readByteArray(), null);
+      }
+
+      Path file =
+          spillDirectory == null
+              ? Files.createTempFile(SPILL_PREFIX, SPILL_SUFFIX)
+              : Files.createTempFile(spillDirectory, SPILL_PREFIX, SPILL_SUFFIX);
+
+      try (BufferedSink sink = Okio.buffer(Okio.sink(file))) {
+        sink.writeAll(buffer);
+        sink.writeAll(source);
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(file);
+        throw e;
+      }
+
+      return new Content(toHex(digest), Files.size(file), null, file);
+    } catch (IOException e) {
+      throw new SmallDException(e);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new SmallDException(e);
+    }
+  }
+
+  private static String toHex(MessageDigest digest) {
+    return ByteString.of(digest.digest()).hex();
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build an {@code AttachmentCache}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Cached content, held either on the heap or in a temporary file. The references, evicted and
+   * deleted fields are guarded by the cache.
+   */
+  private static class Content {
+    private final String hash;
+    private final long size;
+    private final byte[] bytes;
+    private final Path file;
+    private int references = 0;
+    private boolean evicted = false;
+    private boolean deleted = false;
+
+    Content(String hash, long size, byte[] bytes, Path file) {
+      this.hash = hash;
+      this.size = size;
+      this.bytes = bytes;
+      this.file = file;
+    }
+
+    void delete() {
+      if (file != null) {
+        deleted = true;
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          throw new SmallDException(e);
+        }
+      }
+    }
+  }
+
+  /** {@code Builder} of {@code AttachmentCache} instances. */
+  public static class Builder {
+
+    private long maximumSize = 64 * 1024 * 1024;
+    private long spillThreshold = 1024 * 1024;
+    private Path spillDirectory;
+
+    private Builder() {}
+
+    /**
+     * Set the maximum total size in bytes of the cached content. If not set this will default to
+     * 64MiB.
+     *
+     * @param maximumSize the maximum size of the cached content
+     * @return this
+     */
+    public Builder setMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Set the size in bytes above which content is stored in a temporary file rather than on the
+     * heap. If not set this will default to 1MiB.
+     *
+     * @param spillThreshold the size above which content is stored in a file
+     * @return this
+     */
+    public Builder setSpillThreshold(long spillThreshold) {
+      this.spillThreshold = spillThreshold;
+      return this;
+    }
+
+    /**
+     * Set the directory in which temporary files are created. If not set the default temporary
+     * directory is used.
+     *
+     * @param spillDirectory the directory for temporary files
+     * @return this
+     */
+    public Builder setSpillDirectory(Path spillDirectory) {
+      this.spillDirectory = spillDirectory;
+      return this;
+    }
+
+    /**
+     * Build the {@code AttachmentCache} instance.
+     *
+     * @return the built AttachmentCache instance
+     */
+    public AttachmentCache build() {
+      return new AttachmentCache(this);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.princesslana.smalld;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A handle with which REST requests can be cancelled.
+ *
+ * <p>A {@code Cancellation} is provided to a request with {@link
+ * RequestOptions.Builder#setCancellation}. Calling {@link #cancel()} will stop a request that is
+ * waiting for a rate limit from being sent, and will abort a request that is in flight. A cancelled
+ * request fails with a {@link RequestCancelledException}. The same {@code Cancellation} may be
+ * provided to many requests to cancel them together.
+ */
+public class Cancellation {
+
+  private final Set<Runnable> listeners = new LinkedHashSet<>();
+
+  private boolean cancelled = false;
+
+  /** Cancel all requests that use this handle. Requests made after this is called will fail. */
+  public void cancel() {
+    Runnable[] toNotify;
+
+    synchronized (this) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      toNotify = listeners.toArray(new Runnable[0]);
+      listeners.clear();
+    }
+
+    for (Runnable listener : toNotify) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Returns whether {@link #cancel()} has been called.
+   *
+   * @return true if cancelled
+   */
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Register a listener to be run when this is cancelled. If this has already been cancelled the
+   * listener is run immediately.
+   *
+   * @param listener the listener to run on cancellation
+   * @return a {@code Runnable} that will remove the listener
+   */
+  public Runnable onCancel(Runnable listener) {
+    synchronized (this) {
+      if (!cancelled) {
+        listeners.add(listener);
+        return () -> removeListener(listener);
+      }
+    }
+
+    listener.run();
+    return () -> {};
+  }
+
+  private synchronized void removeListener(Runnable listener) {
+    listeners.remove(listener);
+  }
+}
@@ -1,24 +1,65 @@
 package com.github.princesslana.smalld;
 
+import com.github.princesslana.smalld.metrics.Metrics;
+import com.github.princesslana.smalld.ratelimit.InvalidRequestGuard;
+import com.github.princesslana.smalld.ratelimit.RateLimit;
 import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
 
 /** Config options for {@link SmallD}. */
 public class Config {
 
   private String baseUrl;
   private final Clock clock;
+  private final boolean coalesceGetRequests;
+  private final Duration connectionKeepAlive;
   private final int currentShard;
+  private final int globalRateLimit;
+  private final RateLimit globalRateLimiter;
+  private final boolean http2;
+  private final InvalidRequestGuard invalidRequestGuard;
+  private final int maxIdleConnections;
+  private final int maxRequests;
+  private final int maxRequestsPerHost;
+  private final Metrics metrics;
   private final int numberOfShards;
+  private final PayloadLogger payloadLogger;
+  private final GatewayJournal gatewayJournal;
+  private final Duration rateLimitMaxWait;
   private final String token;
   private final int intents;
+  private final int listenerTimingSampleRate;
+  private final ResponseCache responseCache;
+  private final RetryPolicy retryPolicy;
+  private final Duration slowListenerThreshold;
+  private final int warmUpConnections;
 
   private Config(Builder builder) {
     baseUrl = builder.baseUrl;
     clock = builder.clock;
+    coalesceGetRequests = builder.coalesceGetRequests;
+    connectionKeepAlive = builder.connectionKeepAlive;
     currentShard = builder.currentShard;
+    globalRateLimit = builder.globalRateLimit;
+    globalRateLimiter = builder.globalRateLimiter;
+    http2 = builder.http2;
+    invalidRequestGuard = builder.invalidRequestGuard;
+    maxIdleConnections = builder.maxIdleConnections;
+    maxRequests = builder.maxRequests;
+    maxRequestsPerHost = builder.maxRequestsPerHost;
+    metrics = builder.metrics;
     numberOfShards = builder.numberOfShards;
+    payloadLogger = builder.payloadLogger;
+    gatewayJournal = builder.gatewayJournal;
+    rateLimitMaxWait = builder.rateLimitMaxWait;
     token = builder.token;
     intents = builder.intents;
+    listenerTimingSampleRate = builder.listenerTimingSampleRate;
+    responseCache = builder.responseCache;
+    retryPolicy = builder.retryPolicy;
+    slowListenerThreshold = builder.slowListenerThreshold;
+    warmUpConnections = builder.warmUpConnections;
   }
 
   /**
@@ -39,6 +80,24 @@ public class Config {
     return clock;
   }
 
+  /**
+   * Returns whether concurrent identical GET requests should be merged into a single request.
+   *
+   * @return true if GET requests should be coalesced
+   */
+  public boolean isCoalesceGetRequests() {
+    return coalesceGetRequests;
+  }
+
+  /**
+   * Returns how long idle connections are kept alive in the connection pool.
+   *
+   * @return the keep alive duration for idle connections
+   */
+  public Duration getConnectionKeepAlive() {
+    return connectionKeepAlive;
+  }
+
   /**
    * Return what is configured as the current shard.
    *
@@ -48,6 +107,34 @@ public class Config {
     return currentShard;
   }
 
+  /**
+   * Returns the number of requests per second that may be made to Discord's REST API.
+   *
+   * @return the global rate limit in requests per second
+   */
+  public int getGlobalRateLimit() {
+    return globalRateLimit;
+  }
+
+  /**
+   * Returns the rate limit shared with other instances that is applied to every REST request, if
+   * one is configured.
+   *
+   * @return the shared global rate limit, or empty if each client creates its own
+   */
+  public Optional<RateLimit> getGlobalRateLimiter() {
+    return Optional.ofNullable(globalRateLimiter);
+  }
+
+  /**
+   * Returns the guard against invalid requests shared with other instances, if one is configured.
+   *
+   * @return the shared invalid request guard, or empty if each client creates its own
+   */
+  public Optional<InvalidRequestGuard> getInvalidRequestGuard() {
+    return Optional.ofNullable(invalidRequestGuard);
+  }
+
   /**
    * Return the bitmask for the {@link GatewayIntent}s that are subscribed to.
    *
@@ -57,6 +144,43 @@ public class Config {
     return intents;
   }
 
+  /**
+   * Returns whether HTTP/2 should be preferred, so that requests are multiplexed over a single
+   * connection.
+   *
+   * @return true if HTTP/2 is preferred
+   */
+  public boolean isHttp2() {
+    return http2;
+  }
+
+  /**
+   * Returns the maximum number of idle connections to keep in the connection pool.
+   *
+   * @return the maximum number of idle connections
+   */
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  /**
+   * Returns the maximum number of asynchronous requests to execute concurrently.
+   *
+   * @return the maximum number of concurrent requests
+   */
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  /**
+   * Returns the maximum number of asynchronous requests to execute concurrently for each host.
+   *
+   * @return the maximum number of concurrent requests per host
+   */
+  public int getMaxRequestsPerHost() {
+    return maxRequestsPerHost;
+  }
+
   /**
    * Return what is configured as the number of shards.
    *
@@ -66,6 +190,78 @@ public class Config {
     return numberOfShards;
   }
 
+  /**
+   * Returns how long a REST request may wait for a rate limit to expire before failing.
+   *
+   * @return the maximum time to wait for a rate limit
+   */
+  public Duration getRateLimitMaxWait() {
+    return rateLimitMaxWait;
+  }
+
+  /**
+   * Returns how often gateway listener invocations are timed, as one in every this many payloads.
+   *
+   * @return the sample rate for listener timings, or zero if listeners are not timed
+   */
+  public int getListenerTimingSampleRate() {
+    return listenerTimingSampleRate;
+  }
+
+  /**
+   * Returns how long a gateway listener may run before the dispatch thread's stack is logged.
+   *
+   * @return the threshold for slow listeners, or zero if slow listeners are not watched for
+   */
+  public Duration getSlowListenerThreshold() {
+    return slowListenerThreshold;
+  }
+
+  /**
+   * Returns the {@link Metrics} that SmallD records metrics with.
+   *
+   * @return the metrics to record with
+   */
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the logger for gateway payloads and REST responses, if one is configured.
+   *
+   * @return the payload logger, or empty if none is configured
+   */
+  public Optional<PayloadLogger> getPayloadLogger() {
+    return Optional.ofNullable(payloadLogger);
+  }
+
+  /**
+   * Returns the journal that gateway payloads are recorded to, if one is configured.
+   *
+   * @return the gateway journal, or empty if none is configured
+   */
+  public Optional<GatewayJournal> getGatewayJournal() {
+    return Optional.ofNullable(gatewayJournal);
+  }
+
+  /**
+   * Returns the cache for responses to GET requests, if one is configured.
+   *
+   * @return the response cache, or empty if none is configured
+   */
+  public Optional<ResponseCache> getResponseCache() {
+    return Optional.ofNullable(responseCache);
+  }
+
+  /**
+   * Returns the policy for retrying failed REST requests, if one is configured.
+   *
+   * @return the retry policy, or empty if requests should not be retried
+   */
+  public Optional<RetryPolicy> getRetryPolicy() {
+    return Optional.ofNullable(retryPolicy);
+  }
+
   /**
    * Returns the Discord bot token that is configured.
    *
@@ -75,6 +271,15 @@ public class Config {
     return token;
   }
 
+  /**
+   * Returns the number of connections to open to the base url when connecting.
+   *
+   * @return the number of connections to warm up
+   */
+  public int getWarmUpConnections() {
+    return warmUpConnections;
+  }
+
   /**
    * Creates a {@link Builder} that can be used to create an instance.
    *
@@ -89,12 +294,32 @@ public class Config {
 
     private static final String V6_BASE_URL = "https://discord.com/api/v6";
 
+    private static final int DISCORD_GLOBAL_RATE_LIMIT = 50;
+
     private String baseUrl = V6_BASE_URL;
     private Clock clock = Clock.systemUTC();
+    private boolean coalesceGetRequests = false;
+    private Duration connectionKeepAlive = Duration.ofMinutes(5);
     private int currentShard = 0;
+    private int globalRateLimit = DISCORD_GLOBAL_RATE_LIMIT;
+    private RateLimit globalRateLimiter;
+    private boolean http2 = true;
+    private InvalidRequestGuard invalidRequestGuard;
+    private int maxIdleConnections = 5;
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 5;
+    private Metrics metrics = Metrics.noop();
     private int numberOfShards = 1;
+    private PayloadLogger payloadLogger;
+    private GatewayJournal gatewayJournal;
+    private Duration rateLimitMaxWait = Duration.ZERO;
     private String token;
     private int intents = GatewayIntent.UNPRIVILEGED;
+    private int listenerTimingSampleRate = 16;
+    private ResponseCache responseCache;
+    private RetryPolicy retryPolicy;
+    private Duration slowListenerThreshold = Duration.ofSeconds(1);
+    private int warmUpConnections = 0;
 
     private Builder() {}
 
@@ -121,6 +346,106 @@ public class Config {
       return this;
     }
 
+    /**
+     * Set whether concurrent identical GET requests should be merged into a single request. GET
+     * requests are identical if they have the same path and query parameters. If not set this will
+     * default to false.
+     *
+     * @param coalesceGetRequests true if GET requests should be coalesced
+     * @return this
+     */
+    public Builder setCoalesceGetRequests(boolean coalesceGetRequests) {
+      this.coalesceGetRequests = coalesceGetRequests;
+      return this;
+    }
+
+    /**
+     * Configure the connection pool. If not set this will default to keeping up to 5 idle
+     * connections alive for 5 minutes.
+     *
+     * @param maxIdleConnections the maximum number of idle connections to keep
+     * @param keepAlive how long to keep idle connections alive
+     * @return this
+     */
+    public Builder setConnectionPool(int maxIdleConnections, Duration keepAlive) {
+      this.maxIdleConnections = maxIdleConnections;
+      this.connectionKeepAlive = keepAlive;
+      return this;
+    }
+
+    /**
+     * Configure how many asynchronous requests may execute concurrently, such as those made to warm
+     * up connections. If not set this will default to 64 requests, with up to 5 per host.
+     *
+     * @param maxRequests the maximum number of concurrent requests
+     * @param maxRequestsPerHost the maximum number of concurrent requests per host
+     * @return this
+     */
+    public Builder setDispatcherConcurrency(int maxRequests, int maxRequestsPerHost) {
+      this.maxRequests = maxRequests;
+      this.maxRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
+    /**
+     * Set the number of requests per second that may be made to Discord's REST API. If not set this
+     * will default to 50, which is the global rate limit Discord applies to bots.
+     *
+     * <p>Each instance applies this limit separately. Discord applies the global rate limit per
+     * bot, so the instances for the shards of a bot should share a limit set with {@link
+     * #setGlobalRateLimiter(RateLimit)}.
+     *
+     * @param requestsPerSecond the number of requests allowed per second
+     * @return this
+     */
+    public Builder setGlobalRateLimit(int requestsPerSecond) {
+      this.globalRateLimit = requestsPerSecond;
+      return this;
+    }
+
+    /**
+     * Set the rate limit to apply to every REST request, in place of one created from {@link
+     * #setGlobalRateLimit(int)}. The same instance may be set in the config of each shard, so that
+     * together they stay within the rate limit Discord applies to the bot. For example:
+     *
+     * <pre>
+     * RateLimit global = new TokenBucketRateLimit(Clock.systemUTC(), 50, Duration.ofSeconds(1));
+     * </pre>
+     *
+     * @param globalRateLimiter the rate limit to apply to every REST request
+     * @return this
+     */
+    public Builder setGlobalRateLimiter(RateLimit globalRateLimiter) {
+      this.globalRateLimiter = globalRateLimiter;
+      return this;
+    }
+
+    /**
+     * Set whether HTTP/2 should be preferred. With HTTP/2 requests to Discord are multiplexed over
+     * a single connection. When false only HTTP/1.1 is used, and each concurrent request needs its
+     * own connection. If not set this will default to true.
+     *
+     * @param http2 true if HTTP/2 should be preferred
+     * @return this
+     */
+    public Builder setHttp2(boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    /**
+     * Set the guard that counts invalid requests, in place of one created for each client. Discord
+     * bans by IP address for too many invalid requests, so the same instance should be set in the
+     * config of every instance that makes requests from the same address.
+     *
+     * @param invalidRequestGuard the guard to count invalid requests with
+     * @return this
+     */
+    public Builder setInvalidRequestGuard(InvalidRequestGuard invalidRequestGuard) {
+      this.invalidRequestGuard = invalidRequestGuard;
+      return this;
+    }
+
     /**
      * Set the {@link GatewayIntent}s to subscribe to.
      *
@@ -132,6 +457,107 @@ public class Config {
       return this;
     }
 
+    /**
+     * Set how often gateway listener invocations are timed. Every listener is timed for one in
+     * every {@code sampleRate} payloads. If not set this will default to 16. Zero will disable the
+     * timing of listeners.
+     *
+     * @param sampleRate time listeners for one in this many payloads
+     * @return this
+     */
+    public Builder setListenerTimingSampleRate(int sampleRate) {
+      this.listenerTimingSampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * Set how long a gateway listener may run before a warning with the stack of the dispatch
+     * thread is logged. If not set this will default to one second. Zero will disable watching for
+     * slow listeners.
+     *
+     * @param threshold the time after which a listener is slow
+     * @return this
+     */
+    public Builder setSlowListenerThreshold(Duration threshold) {
+      this.slowListenerThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Set the {@link Metrics} to record gateway and REST metrics with. If not set metrics will not
+     * be recorded.
+     *
+     * @param metrics the metrics to record with
+     * @return this
+     */
+    public Builder setMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Set the logger for gateway payloads and REST responses. If not set payloads are only logged
+     * at TRACE level.
+     *
+     * @param payloadLogger the payload logger to use
+     * @return this
+     */
+    public Builder setPayloadLogger(PayloadLogger payloadLogger) {
+      this.payloadLogger = payloadLogger;
+      return this;
+    }
+
+    /**
+     * Set the journal that gateway payloads are recorded to. If not set payloads are not recorded.
+     * The journal is not closed when SmallD is closed, as it may be shared between shards, so it
+     * must be closed by the caller.
+     *
+     * @param gatewayJournal the gateway journal to record to
+     * @return this
+     */
+    public Builder setGatewayJournal(GatewayJournal gatewayJournal) {
+      this.gatewayJournal = gatewayJournal;
+      return this;
+    }
+
+    /**
+     * Set how long a REST request may wait for a rate limit to expire before failing with a {@link
+     * com.github.princesslana.smalld.ratelimit.RateLimitException}. Requests that are waiting for
+     * the same rate limit are sent in order of their {@link RequestPriority}, with requests that
+     * have waited longer ranking higher so that low priority requests are not starved. If not set
+     * this will default to zero, and requests that are rate limited fail immediately.
+     *
+     * @param maxWait the maximum time to wait for a rate limit
+     * @return this
+     */
+    public Builder setRateLimitMaxWait(Duration maxWait) {
+      this.rateLimitMaxWait = maxWait;
+      return this;
+    }
+
+    /**
+     * Set the cache to use for responses to GET requests. If not set responses will not be cached.
+     *
+     * @param responseCache the response cache to use
+     * @return this
+     */
+    public Builder setResponseCache(ResponseCache responseCache) {
+      this.responseCache = responseCache;
+      return this;
+    }
+
+    /**
+     * Set the policy for retrying REST requests that fail with a transient error. If not set
+     * requests will not be retried.
+     *
+     * @param retryPolicy the retry policy to use
+     * @return this
+     */
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
     /**
      * Configure the current shard and number of shards.
      *
@@ -156,6 +582,24 @@ public class Config {
       return this;
     }
 
+    /**
+     * Set the number of connections to open to the base url when connecting to Discord, so that the
+     * first requests made do not have to wait for connections to be established. Connections are
+     * opened in parallel with the request for the gateway url. If not set this will default to 0,
+     * which will not warm up any connections.
+     *
+     * <p>With HTTP/2 a single connection is usually sufficient. With HTTP/1.1 this should be set to
+     * the number of requests expected to be made concurrently, and the connection pool should be
+     * configured to keep at least as many idle connections.
+     *
+     * @param warmUpConnections the number of connections to warm up
+     * @return this
+     */
+    public Builder setWarmUpConnections(int warmUpConnections) {
+      this.warmUpConnections = warmUpConnections;
+      return this;
+    }
+
     /**
      * Build the {@code Config} instance.
      *
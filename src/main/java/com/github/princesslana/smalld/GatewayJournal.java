@@ -0,0 +1,514 @@
+package com.github.princesslana.smalld;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records gateway payloads, with the time they were received, to an append-only journal on disk.
+ *
+ * <p>The journal is a directory of segment files. Each segment is memory mapped and filled with
+ * records until the next record does not fit, at which point a new segment is started and the
+ * previous one is truncated to the records it holds. A record is the length of the payload in
+ * bytes, the time it was received in nanoseconds since the epoch, the shard it was received on, and
+ * the payload encoded as UTF-8.
+ *
+ * <p>Payloads are queued and written on a background thread, so recording costs the receiving
+ * thread no more than reading the clock. If the queue is full payloads are dropped rather than
+ * blocking the caller, and counted in {@link #getDroppedCount()}, as are payloads recorded after
+ * the journal has been closed. A journal may be shared by the shards of a bot, so {@link SmallD}
+ * does not close the journal it is configured with. The caller must close it once every instance
+ * recording to it has been closed, so that the last segment is flushed to disk.
+ *
+ * <p>Journals are read with {@link #read(Path)}, and may be replayed to a {@link SmallD} instance
+ * with a {@link GatewayReplayer}. A journal should be read once it has been closed. Records are
+ * written through a memory mapping without any ordering guarantee for other readers of the file, so
+ * a journal that is still being recorded may appear to hold partly written records.
+ */
+public class GatewayJournal implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GatewayJournal.class);
+
+  private static final int MAGIC = 0x534d4a31;
+
+  private static final int HEADER_SIZE = 4;
+
+  private static final int RECORD_HEADER_SIZE = 4 + 8 + 4;
+
+  private static final String SUFFIX = ".journal";
+
+  private static final Pattern SEGMENT_INDEX = Pattern.compile("0*\\d{1,18}");
+
+  private static final Entry CLOSE = new Entry(0, 0, "");
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  private final Clock clock;
+
+  private final BlockingQueue<Entry> queue;
+
+  private final LongAdder recorded = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private volatile Thread writer;
+
+  private volatile boolean closed = false;
+
+  private FileChannel channel;
+
+  private MappedByteBuffer segment;
+
+  private boolean started = false;
+
+  private long segmentIndex;
+
+  private boolean failed = false;
+
+  private GatewayJournal(Builder builder) {
+    this.directory = Objects.requireNonNull(builder.directory, "directory");
+    this.segmentSize = builder.segmentSize;
+    this.clock = builder.clock;
+    this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+  }
+
+  /**
+   * Record a payload that was received from the gateway.
+   *
+   * @param shard the shard the payload was received on
+   * @param payload the payload
+   */
+  public void record(int shard, String payload) {
+    if (payload.isEmpty()) {
+      return;
+    }
+
+    if (closed) {
+      dropped.increment();
+      return;
+    }
+
+    Instant now = clock.instant();
+    long timestamp = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    Entry entry = new Entry(timestamp, shard, payload);
+
+    if (queue.offer(entry)) {
+      if (writer == null) {
+        startWriter();
+      }
+
+      // if the journal was closed while this was being queued it may be behind the writer's close
+      // marker, or there may be no writer, so it would never be written
+      if (closed && queue.remove(entry)) {
+        dropped.increment();
+      }
+    } else {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Returns the number of payloads that have been written to the journal.
+   *
+   * @return the number of payloads written
+   */
+  public long getRecordedCount() {
+    return recorded.sum();
+  }
+
+  /**
+   * Returns the number of payloads that were dropped because the queue was full, the journal was
+   * closed, or the journal could not be written.
+   *
+   * @return the number of dropped payloads
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stop recording. Payloads that are already queued are written, and the current segment is
+   * flushed to disk, before this returns.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+
+    if (writer != null) {
+      try {
+        queue.put(CLOSE);
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      writer = null;
+    }
+
+    closeSegment();
+  }
+
+  private synchronized void startWriter() {
+    if (writer == null && !closed) {
+      writer = SmallD.DAEMON_THREAD_FACTORY.newThread(this::write);
+      writer.setName("smalld-gateway-journal");
+      writer.start();
+    }
+  }
+
+  private void write() {
+    try {
+      Entry e;
+      while ((e = queue.take()) != CLOSE) {
+        append(e);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void append(Entry e) {
+    if (failed) {
+      dropped.increment();
+      return;
+    }
+
+    byte[] bytes = e.payload.getBytes(StandardCharsets.UTF_8);
+    int size = RECORD_HEADER_SIZE + bytes.length;
+
+    try {
+      if (segment == null || segment.remaining() < size) {
+        nextSegment(size);
+      }
+    } catch (IOException ex) {
+      LOG.warn("Could not open gateway journal segment in {}, recording stopped", directory, ex);
+      closeSegment();
+      failed = true;
+      dropped.increment();
+      return;
+    }
+
+    // the length is written last, so that a record the writer did not finish reads as the end of
+    // the segment
+    int start = segment.position();
+    segment.position(start + 4);
+    segment.putLong(e.timestamp).putInt(e.shard).put(bytes);
+    segment.putInt(start, bytes.length);
+    recorded.increment();
+  }
+
+  private void nextSegment(int recordSize) throws IOException {
+    closeSegment();
+
+    if (!started) {
+      Files.createDirectories(directory);
+      segmentIndex = nextSegmentIndex(directory);
+      started = true;
+    }
+
+    Path file = directory.resolve(String.format("%020d%s", segmentIndex++, SUFFIX));
+    int size = Math.max(segmentSize, HEADER_SIZE + recordSize);
+
+    channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    segment.putInt(MAGIC);
+  }
+
+  private void closeSegment() {
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      if (segment != null) {
+        segment.force();
+        channel.truncate(segment.position());
+      }
+      channel.close();
+    } catch (IOException e) {
+      LOG.warn("Error closing gateway journal segment", e);
+    }
+    channel = null;
+    segment = null;
+  }
+
+  /**
+   * Read the payloads recorded in a journal, in the order they were recorded. Each segment is
+   * mapped in turn, and released when reading moves on to the next.
+   *
+   * @param directory the directory of the journal
+   * @return the payloads in the journal
+   * @throws UncheckedIOException if the journal can not be read
+   */
+  public static Stream<Entry> read(Path directory) {
+    List<Path> segments;
+    try {
+      segments = segments(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            new Reader(segments), Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  private static long nextSegmentIndex(Path directory) throws IOException {
+    // continue after the highest index rather than counting segments, as earlier segments may have
+    // been deleted
+    return segments(directory)
+            .stream()
+            .map(p -> p.getFileName().toString())
+            .map(n -> n.substring(0, n.length() - SUFFIX.length()))
+            .filter(n -> SEGMENT_INDEX.matcher(n).matches())
+            .mapToLong(Long::parseLong)
+            .max()
+            .orElse(-1)
+        + 1;
+  }
+
+  private static List<Path> segments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code GatewayJournal}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** A payload recorded in a journal. */
+  public static class Entry {
+    private final long timestamp;
+    private final int shard;
+    private final String payload;
+
+    Entry(long timestamp, int shard, String payload) {
+      this.timestamp = timestamp;
+      this.shard = shard;
+      this.payload = payload;
+    }
+
+    /**
+     * Returns the time the payload was received.
+     *
+     * @return when the payload was received
+     */
+    public Instant getTimestamp() {
+      return Instant.ofEpochSecond(0, timestamp);
+    }
+
+    /**
+     * Returns the time the payload was received, in nanoseconds since the epoch.
+     *
+     * @return when the payload was received
+     */
+    public long getTimestampNanos() {
+      return timestamp;
+    }
+
+    /**
+     * Returns the shard the payload was received on.
+     *
+     * @return the shard
+     */
+    public int getShard() {
+      return shard;
+    }
+
+    /**
+     * Returns the payload.
+     *
+     * @return the payload
+     */
+    public String getPayload() {
+      return payload;
+    }
+  }
+
+  /** Reads the records of each segment in turn. */
+  private static class Reader implements Iterator<Entry> {
+
+    private final Iterator<Path> segments;
+
+    private ByteBuffer segment;
+
+    private Entry next;
+
+    Reader(List<Path> segments) {
+      this.segments = new ArrayList<>(segments).iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null) {
+        if (segment != null) {
+          next = readRecord(segment);
+        }
+
+        if (next == null) {
+          // drop the mapping of a finished segment, so that it can be unmapped
+          segment = null;
+
+          if (!segments.hasNext()) {
+            return false;
+          }
+          segment = map(segments.next());
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public Entry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      Entry e = next;
+      next = null;
+      return e;
+    }
+
+    private static ByteBuffer map(Path file) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+          throw new SmallDException("Not a gateway journal segment: " + file);
+        }
+
+        return buffer;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private static Entry readRecord(ByteBuffer buffer) {
+      if (buffer.remaining() < RECORD_HEADER_SIZE) {
+        return null;
+      }
+
+      buffer.mark();
+      int length = buffer.getInt();
+
+      if (length <= 0 || buffer.remaining() < RECORD_HEADER_SIZE - 4 + length) {
+        // the unwritten remainder of a segment that was not closed, or an unfinished record
+        buffer.reset();
+        return null;
+      }
+
+      long timestamp = buffer.getLong();
+      int shard = buffer.getInt();
+
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+
+      return new Entry(timestamp, shard, new String(bytes, StandardCharsets.UTF_8));
+    }
+  }
+
+  /** {@code Builder} of {@code GatewayJournal} instances. */
+  public static class Builder {
+
+    private Path directory;
+    private int segmentSize = 64 * 1024 * 1024;
+    private int queueCapacity = 8192;
+    private Clock clock = Clock.systemUTC();
+
+    private Builder() {}
+
+    /**
+     * Set the directory the journal is written to. It is created if it does not exist. If it
+     * already contains a journal, new segments are added after the existing ones. This must be set.
+     *
+     * @param directory the directory to write the journal to
+     * @return this
+     */
+    public Builder setDirectory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /**
+     * Set the size of each segment file in bytes. A payload too large to fit in a segment of this
+     * size is written to a segment of its own. If not set this will default to 64MiB.
+     *
+     * @param segmentSize the size of a segment in bytes
+     * @return this
+     */
+    public Builder setSegmentSize(int segmentSize) {
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Set how many payloads may wait to be written before further payloads are dropped. If not set
+     * this will default to 8192.
+     *
+     * @param queueCapacity the maximum number of payloads waiting to be written
+     * @return this
+     */
+    public Builder setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Set the clock used to timestamp payloads. If not set this will default to the system clock.
+     *
+     * @param clock the clock to use
+     * @return this
+     */
+    public Builder setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Build the {@code GatewayJournal} instance.
+     *
+     * @return the built GatewayJournal instance
+     */
+    public GatewayJournal build() {
+      return new GatewayJournal(this);
+    }
+  }
+}
@@ -71,6 +71,92 @@ public class GatewayPayload {
     return s != null && s.isNumber() ? Optional.of(s.asLong()) : Optional.empty();
   }
 
+  /**
+   * Finds the value of a top level field without parsing the payload. String values are returned
+   * without their quotes and are not unescaped, so this is only suitable for fields such as "op"
+   * and "t" whose values do not need escaping.
+   *
+   * @param s the JSON payload
+   * @param name the name of the field
+   * @return the value of the field, or null if it is not present or is null
+   */
+  static String peek(String s, String name) {
+    int depth = 0;
+    boolean expectKey = false;
+
+    for (int i = 0; i < s.length(); i++) {
+      switch (s.charAt(i)) {
+        case '{':
+          depth++;
+          expectKey = depth == 1;
+          break;
+
+        case '[':
+          depth++;
+          break;
+
+        case '}':
+        case ']':
+          depth--;
+          break;
+
+        case ',':
+          expectKey = depth == 1;
+          break;
+
+        case '"':
+          int end = endOfString(s, i);
+
+          if (expectKey) {
+            expectKey = false;
+
+            if (end - i - 1 == name.length() && s.regionMatches(i + 1, name, 0, name.length())) {
+              return valueAt(s, s.indexOf(':', end) + 1);
+            }
+          }
+
+          i = end;
+          break;
+
+        default:
+          // not structural
+      }
+    }
+
+    return null;
+  }
+
+  private static int endOfString(String s, int start) {
+    for (int i = start + 1; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '"') {
+        return i;
+      }
+    }
+    return s.length();
+  }
+
+  private static String valueAt(String s, int start) {
+    int i = start;
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+
+    if (i < s.length() && s.charAt(i) == '"') {
+      return s.substring(i + 1, endOfString(s, i));
+    }
+
+    int end = i;
+    while (end < s.length() && ",}] \t\r\n".indexOf(s.charAt(end)) < 0) {
+      end++;
+    }
+
+    String value = s.substring(i, end);
+    return value.equals("null") ? null : value;
+  }
+
   /**
    * Parses a JSON string to create a GatewayPayload.
    *
@@ -0,0 +1,208 @@
+package com.github.princesslana.smalld;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Replays the payloads recorded by a {@link GatewayJournal} to the gateway payload listeners of a
+ * {@link SmallD} instance.
+ *
+ * <p>Payloads are handed to the same dispatch thread, and notify listeners in the same way, as
+ * payloads received from the gateway. They may be replayed with the delays between them as they
+ * were recorded, scaled by a speed, or as fast as the listeners can handle them.
+ *
+ * <p>By default only dispatch payloads are replayed. Replaying other payloads, such as HELLO or
+ * INVALID_SESSION, to an instance created with the default listeners would cause it to identify or
+ * reconnect. Replayed dispatch payloads do update the sequence number, so they should be replayed
+ * to an instance that is not connected to the gateway.
+ */
+public class GatewayReplayer {
+
+  private static final int MAX_PENDING = 1024;
+
+  private final Path directory;
+
+  private final double speed;
+
+  private final boolean dispatchOnly;
+
+  private final Integer shard;
+
+  private final Instant from;
+
+  private final Instant until;
+
+  private GatewayReplayer(Builder builder) {
+    this.directory = Objects.requireNonNull(builder.directory, "directory");
+    this.speed = builder.speed;
+    this.dispatchOnly = builder.dispatchOnly;
+    this.shard = builder.shard;
+    this.from = builder.from;
+    this.until = builder.until;
+  }
+
+  /**
+   * Replay the journal to a {@link SmallD} instance. This blocks until every payload has been
+   * handed to the instance, though listeners may not yet have been notified of the last of them.
+   *
+   * @param smalld the instance to replay payloads to
+   * @return the number of payloads replayed
+   * @throws InterruptedException if interrupted while waiting to replay a payload
+   */
+  public long replay(SmallD smalld) throws InterruptedException {
+    long replayed = 0;
+    long start = 0;
+    long first = 0;
+
+    try (Stream<GatewayJournal.Entry> entries = GatewayJournal.read(directory)) {
+      Iterator<GatewayJournal.Entry> it = entries.filter(this::isReplayed).iterator();
+
+      while (it.hasNext()) {
+        GatewayJournal.Entry e = it.next();
+
+        if (replayed == 0) {
+          start = System.nanoTime();
+          first = e.getTimestampNanos();
+        }
+
+        if (speed > 0) {
+          long due = start + (long) ((e.getTimestampNanos() - first) / speed);
+          long wait = due - System.nanoTime();
+          if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+          }
+        }
+
+        while (smalld.getPendingPayloadCount() >= MAX_PENDING) {
+          TimeUnit.MILLISECONDS.sleep(1);
+        }
+
+        smalld.receive(e.getPayload());
+        replayed++;
+      }
+    }
+
+    return replayed;
+  }
+
+  private boolean isReplayed(GatewayJournal.Entry e) {
+    if (shard != null && e.getShard() != shard) {
+      return false;
+    }
+
+    if (from != null && e.getTimestamp().isBefore(from)) {
+      return false;
+    }
+
+    if (until != null && !e.getTimestamp().isBefore(until)) {
+      return false;
+    }
+
+    return !dispatchOnly || "0".equals(GatewayPayload.peek(e.getPayload(), "op"));
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code GatewayReplayer}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** {@code Builder} of {@code GatewayReplayer} instances. */
+  public static class Builder {
+
+    private Path directory;
+    private double speed = 1;
+    private boolean dispatchOnly = true;
+    private Integer shard;
+    private Instant from;
+    private Instant until;
+
+    private Builder() {}
+
+    /**
+     * Set the directory of the journal to replay. This must be set.
+     *
+     * @param directory the directory the journal was recorded to
+     * @return this
+     */
+    public Builder setDirectory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /**
+     * Set how fast to replay payloads relative to how they were recorded, so that 2 replays at
+     * twice the original speed. Zero replays payloads as fast as the listeners can handle them. If
+     * not set this will default to 1, the original speed.
+     *
+     * @param speed the speed relative to the recording, or 0 for as fast as possible
+     * @return this
+     */
+    public Builder setSpeed(double speed) {
+      this.speed = speed;
+      return this;
+    }
+
+    /**
+     * Set whether only dispatch payloads are replayed. If not set this will default to true.
+     *
+     * @param dispatchOnly whether to replay only dispatch payloads
+     * @return this
+     */
+    public Builder setDispatchOnly(boolean dispatchOnly) {
+      this.dispatchOnly = dispatchOnly;
+      return this;
+    }
+
+    /**
+     * Set the shard to replay payloads from. If not set payloads from all shards are replayed.
+     *
+     * @param shard the shard to replay
+     * @return this
+     */
+    public Builder setShard(int shard) {
+      this.shard = shard;
+      return this;
+    }
+
+    /**
+     * Set the time to start replaying from. Payloads received before this are skipped. If not set
+     * the journal is replayed from the start.
+     *
+     * @param from the time of the first payload to replay
+     * @return this
+     */
+    public Builder setFrom(Instant from) {
+      this.from = from;
+      return this;
+    }
+
+    /**
+     * Set the time to stop replaying at. Payloads received at or after this are skipped. If not set
+     * the journal is replayed to the end.
+     *
+     * @param until the time after the last payload to replay
+     * @return this
+     */
+    public Builder setUntil(Instant until) {
+      this.until = until;
+      return this;
+    }
+
+    /**
+     * Build the {@code GatewayReplayer} instance.
+     *
+     * @return the built GatewayReplayer instance
+     */
+    public GatewayReplayer build() {
+      return new GatewayReplayer(this);
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package com.github.princesslana.smalld;
 
-import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
+import com.github.princesslana.smalld.metrics.Histogram;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -14,6 +14,9 @@ import java.util.function.Consumer;
  */
 public class Heartbeat implements Consumer<SmallD> {
 
+  private static final PayloadTemplate HEARTBEAT =
+      PayloadTemplate.compile("{\"op\":" + GatewayPayload.OP_HEARTBEAT + ",\"d\":${seq}}");
+
   private final ScheduledThreadPoolExecutor heartbeatExecutor;
 
   private final SequenceNumber sequenceNumber;
@@ -22,6 +25,8 @@ public class Heartbeat implements Consumer<SmallD> {
 
   private volatile boolean ackReceived = true;
 
+  private volatile long heartbeatSentAt;
+
   /**
    * Constructs an instance that will send heartbeats.
    *
@@ -36,6 +41,11 @@ public class Heartbeat implements Consumer<SmallD> {
 
   @Override
   public void accept(SmallD smalld) {
+    Histogram rtt =
+        smalld
+            .getMetrics()
+            .histogram("smalld.gateway.rtt", "shard", String.valueOf(smalld.getCurrentShard()));
+
     smalld.onGatewayPayload(
         s -> {
           GatewayPayload p = GatewayPayload.parse(s);
@@ -50,7 +60,7 @@ public class Heartbeat implements Consumer<SmallD> {
               break;
 
             case GatewayPayload.OP_HEARTBEAT_ACK:
-              onHeartbeatAck();
+              onHeartbeatAck(rtt);
               break;
           }
         });
@@ -87,15 +97,18 @@ public class Heartbeat implements Consumer<SmallD> {
     sendHeartbeat(smalld);
   }
 
-  private void onHeartbeatAck() {
+  private void onHeartbeatAck(Histogram rtt) {
     ackReceived = true;
+
+    long sentAt = heartbeatSentAt;
+    if (sentAt != 0) {
+      heartbeatSentAt = 0;
+      rtt.record(System.nanoTime() - sentAt);
+    }
   }
 
   private void sendHeartbeat(SmallD smalld) {
-    smalld.sendGatewayPayload(
-        Json.object()
-            .add("op", GatewayPayload.OP_HEARTBEAT)
-            .add("d", sequenceNumber.getLastSeen().map(Json::value).orElse(Json.NULL))
-            .toString());
+    heartbeatSentAt = System.nanoTime();
+    smalld.sendGatewayPayload(HEARTBEAT.render(sequenceNumber.getLastSeen().orElse(null)));
   }
 }
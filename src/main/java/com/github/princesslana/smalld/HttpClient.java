@@ -1,14 +1,31 @@
 package com.github.princesslana.smalld;
 
+import com.github.princesslana.smalld.jfr.JfrEvents;
+import com.github.princesslana.smalld.ratelimit.InvalidRequestGuard;
+import com.github.princesslana.smalld.ratelimit.RateLimit;
+import com.github.princesslana.smalld.ratelimit.RateLimitBucket;
 import com.github.princesslana.smalld.ratelimit.RateLimitInterceptor;
+import com.github.princesslana.smalld.ratelimit.TokenBucketRateLimit;
 import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.UnaryOperator;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
 import okhttp3.HttpUrl;
-import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocket;
@@ -24,13 +41,64 @@ import org.slf4j.LoggerFactory;
  * provided to shut down OkHttp's non-daemon threads allowing for a clean shutdown. {@code
  * HttpClient} can be reused after {@link #close()} is called, as a new {@link OkHttpClient}
  * instance will be created.
+ *
+ * <p>The proactive global rate limit is created from the {@link Config}, unless a limit to share
+ * with other instances is configured with {@link Config.Builder#setGlobalRateLimiter}, as should be
+ * done for the shards of a bot since Discord applies the global rate limit per bot. Invalid
+ * requests are counted by an {@link InvalidRequestGuard}, which should likewise be shared with
+ * {@link Config.Builder#setInvalidRequestGuard} by all instances making requests from the same IP
+ * address, as Discord bans by IP address for too many invalid requests. Requests for the gateway
+ * url are considered essential and are never slowed or refused because of invalid requests.
+ *
+ * <p>The base url is parsed once, and the encoded form of each path segment other than ids is
+ * cached, so that building a request does not re-parse or re-encode the parts of the url that
+ * rarely change. The authorization and user agent headers are attached when the request is built.
+ *
+ * <p>A request's {@link RequestOptions} may give it a timeout, a deadline, or a {@link
+ * Cancellation}. The deadline is applied to the OkHttp call as a whole, so it includes any time
+ * spent waiting for rate limits and retrying.
+ *
+ * <p>If a {@link RetryPolicy} is configured requests that fail with a transient error are retried.
+ * Each attempt is subject to rate limiting.
+ *
+ * <p>The dispatcher, connection pool, and protocols used by the {@link OkHttpClient} are taken from
+ * the {@link Config}. If configured, connections can be opened ahead of the first requests with
+ * {@link #warmUp()}.
+ *
+ * <p>If configured, concurrent GET requests for the same path and query parameters are coalesced
+ * into a single request with a {@link RequestCoalescer}. A request with a deadline or cancellation
+ * is never sent on behalf of other requests, though it may wait for one that is already in flight.
+ * Responses to GET requests are cached if a {@link ResponseCache} is configured.
  */
 public class HttpClient implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpClient.class);
 
+  private static final Callback WARM_UP_CALLBACK =
+      new Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+          LOG.debug("Connection warm up failed", e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+          response.close();
+        }
+      };
+
+  private static final int MAX_CACHED_SEGMENTS = 1024;
+
+  private static final Map<String, String> ENCODED_SEGMENTS = new ConcurrentHashMap<>();
+
   private final Config config;
-  private final String userAgent;
+  private final HttpUrl baseUrl;
+  private final Headers headers;
+  private final RateLimit globalRateLimit;
+  private final InvalidRequestGuard invalidRequestGuard;
+  private final RequestCoalescer coalescer;
+  private final PayloadLogger payloadLogger;
+  private final RetryInterceptor retryInterceptor;
 
   private OkHttpClient client;
 
@@ -41,7 +109,25 @@ public class HttpClient implements AutoCloseable {
    */
   public HttpClient(Config config) {
     this.config = config;
-    this.userAgent = loadUserAgent();
+    this.baseUrl = HttpUrl.get(config.getBaseUrl());
+    this.headers =
+        Headers.of("Authorization", "Bot " + config.getToken(), "User-Agent", loadUserAgent());
+    this.globalRateLimit =
+        config
+            .getGlobalRateLimiter()
+            .orElseGet(
+                () ->
+                    new TokenBucketRateLimit(
+                        config.getClock(), config.getGlobalRateLimit(), Duration.ofSeconds(1)));
+    this.invalidRequestGuard = config.getInvalidRequestGuard().orElseGet(InvalidRequestGuard::new);
+    this.coalescer =
+        config.isCoalesceGetRequests() ? new RequestCoalescer(config.getClock()) : null;
+    this.payloadLogger = config.getPayloadLogger().orElse(null);
+    this.retryInterceptor =
+        config.getRetryPolicy().map(p -> new RetryInterceptor(p, config.getClock())).orElse(null);
+
+    invalidRequestGuard.registerGauge(
+        config.getMetrics(), config.getClock(), "shard", String.valueOf(config.getCurrentShard()));
   }
 
   private String loadUserAgent() {
@@ -57,19 +143,99 @@ public class HttpClient implements AutoCloseable {
 
   private synchronized OkHttpClient getClient() {
     if (client == null) {
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(config.getMaxRequests());
+      dispatcher.setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+
+      OkHttpClient.Builder builder = new OkHttpClient.Builder();
+
+      // the same interceptor is used by every client built, so its retry budget is kept when the
+      // client is rebuilt after being closed
+      if (retryInterceptor != null) {
+        builder.addInterceptor(retryInterceptor);
+      }
+
       client =
-          new OkHttpClient.Builder()
-              .addInterceptor(new RateLimitInterceptor(config.getClock()))
-              .addInterceptor(addHeader("Authorization", () -> "Bot " + config.getToken()))
-              .addInterceptor(addHeader("User-Agent", () -> userAgent))
+          builder
+              .dispatcher(dispatcher)
+              .connectionPool(
+                  new ConnectionPool(
+                      config.getMaxIdleConnections(),
+                      config.getConnectionKeepAlive().toMillis(),
+                      TimeUnit.MILLISECONDS))
+              .protocols(
+                  config.isHttp2()
+                      ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                      : Collections.singletonList(Protocol.HTTP_1_1))
+              .addInterceptor(
+                  RateLimitInterceptor.builder()
+                      .setClock(config.getClock())
+                      .setBaseUrl(baseUrl)
+                      .setGlobalRateLimit(globalRateLimit)
+                      .setInvalidRequestGuard(invalidRequestGuard, HttpClient::isEssential)
+                      .setMaxWait(config.getRateLimitMaxWait())
+                      .setMetrics(config.getMetrics())
+                      .build())
               .build();
     }
     return client;
   }
 
+  /**
+   * Opens the configured number of connections to the base url in the background, so that they are
+   * available in the connection pool for the first requests that are made. This returns without
+   * waiting for the connections to be established.
+   *
+   * <p>Connections are opened with unauthenticated {@code HEAD} requests for the gateway url. These
+   * are not rate limited by this client and do not count against the bot's rate limits.
+   */
+  public void warmUp() {
+    int connections = config.getWarmUpConnections();
+
+    if (connections <= 0) {
+      return;
+    }
+
+    OkHttpClient.Builder warmUpBuilder = getClient().newBuilder();
+    warmUpBuilder.interceptors().clear();
+    OkHttpClient warmUpClient = warmUpBuilder.build();
+
+    Request request =
+        new Request.Builder()
+            .url(baseUrl.newBuilder().addPathSegment("gateway").build())
+            .head()
+            .header("User-Agent", headers.get("User-Agent"))
+            .build();
+
+    for (int i = 0; i < connections; i++) {
+      warmUpClient.newCall(request).enqueue(WARM_UP_CALLBACK);
+    }
+  }
+
+  /**
+   * Returns the number of invalid requests that may be made before Discord would ban us. This is
+   * also reported as the {@code smalld.rest.invalid_requests.remaining} gauge, which is registered
+   * once for each {@link InvalidRequestGuard}, tagged with the shard of the first instance using
+   * it.
+   *
+   * @return the number of invalid requests remaining
+   */
+  public long getInvalidRequestBudget() {
+    return invalidRequestGuard.getRemaining(config.getClock().instant());
+  }
+
+  /**
+   * Returns the {@link RequestCoalescer} used for GET requests, if coalescing is configured.
+   *
+   * @return the coalescer for GET requests, or empty if coalescing is not configured
+   */
+  public Optional<RequestCoalescer> getRequestCoalescer() {
+    return Optional.ofNullable(coalescer);
+  }
+
   /**
    * Creates a {@link WebSocket} with the given request, sending events to the provided {@link
-   * WebSocketListener}.
+   * WebSocketListener}. The authorization and user agent headers are added to the request.
    *
    * @param request Request to create WebSocket
    * @param listener listener to notify of WebSocket events
@@ -77,7 +243,13 @@ public class HttpClient implements AutoCloseable {
    * @see OkHttpClient#newWebSocket(Request, WebSocketListener)
    */
   public WebSocket newWebSocket(Request request, WebSocketListener listener) {
-    return getClient().newWebSocket(request, listener);
+    Request.Builder builder = request.newBuilder();
+
+    for (int i = 0; i < headers.size(); i++) {
+      builder.header(headers.name(i), headers.value(i));
+    }
+
+    return getClient().newWebSocket(builder.build(), listener);
   }
 
   /**
@@ -100,35 +272,245 @@ public class HttpClient implements AutoCloseable {
    */
   public String send(
       String path, UnaryOperator<Request.Builder> build, Map<String, Object> parameters) {
-    HttpUrl.Builder urlBuilder = HttpUrl.get(config.getBaseUrl()).newBuilder().addPathSegment(path);
+    Request request = resolveDeadline(build.apply(newRequest(path, parameters)).build());
+
+    return request.method().equals("GET") ? sendGet(path, request) : sendMutation(path, request);
+  }
+
+  Request.Builder newRequest(String path, Map<String, Object> parameters) {
+    HttpUrl.Builder urlBuilder = baseUrl.newBuilder();
+
+    int start = 0;
+    while (start < path.length()) {
+      int end = path.indexOf('/', start);
+      if (end == -1) {
+        end = path.length();
+      }
+
+      if (end > start) {
+        urlBuilder.addEncodedPathSegment(encodeSegment(path.substring(start, end)));
+      }
+
+      start = end + 1;
+    }
 
     parameters.forEach(
         (string, object) -> urlBuilder.addQueryParameter(string, String.valueOf(object)));
 
-    Request.Builder builder = new Request.Builder().url(urlBuilder.build());
+    return new Request.Builder().url(urlBuilder.build()).headers(headers);
+  }
+
+  private static String encodeSegment(String segment) {
+    if (isId(segment)) {
+      return segment;
+    }
+
+    String encoded = ENCODED_SEGMENTS.get(segment);
 
-    return send(build.apply(builder).build());
+    if (encoded == null) {
+      encoded =
+          new HttpUrl.Builder()
+              .scheme("http")
+              .host("localhost")
+              .addPathSegment(segment)
+              .build()
+              .encodedPath()
+              .substring(1);
+
+      if (ENCODED_SEGMENTS.size() < MAX_CACHED_SEGMENTS) {
+        ENCODED_SEGMENTS.put(segment, encoded);
+      }
+    }
+
+    return encoded;
+  }
+
+  private static boolean isId(String segment) {
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String sendGet(String path, Request request) {
+    Optional<ResponseCache> cache = config.getResponseCache();
+    String query = request.url().encodedQuery();
+
+    Optional<String> cached = cache.flatMap(c -> c.get(path, query, config.getClock().instant()));
+
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+
+    long generation = cache.map(ResponseCache::getGeneration).orElse(0L);
+
+    String body =
+        coalescer != null
+            ? coalescer.execute(request.url().toString(), getOptions(request), () -> send(request))
+            : send(request);
+
+    cache.ifPresent(c -> c.put(path, query, body, config.getClock().instant(), generation));
+
+    return body;
+  }
+
+  private String sendMutation(String path, Request request) {
+    try {
+      return send(request);
+    } finally {
+      config.getResponseCache().ifPresent(c -> c.invalidateAfterMutation(path));
+    }
+  }
+
+  /**
+   * Sends a request build with the builder to the given path, passing the response body to the
+   * handler as it is received. This behaves as {@link #send(String, UnaryOperator, Map)}, except
+   * that a successful response body is not read into a {@code String}. Responses to requests sent
+   * with this method are never coalesced or cached.
+   *
+   * @param <T> the type of result produced by the handler
+   * @param path path to send the request to
+   * @param build UnaryOperator to allow building of the request
+   * @param parameters the query string parameters
+   * @param handler the handler that will consume the body of a successful response
+   * @return the result of the handler
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public <T> T send(
+      String path,
+      UnaryOperator<Request.Builder> build,
+      Map<String, Object> parameters,
+      ResponseHandler<T> handler) {
+    Request request = resolveDeadline(build.apply(newRequest(path, parameters)).build());
+
+    try {
+      return execute(
+          request,
+          response -> {
+            LOG.debug("HTTP Response: [{} {}] (streamed)", response.code(), response.message());
+
+            try (Reader body = response.body().charStream()) {
+              return handler.handle(body);
+            }
+          });
+    } finally {
+      if (!request.method().equals("GET")) {
+        config.getResponseCache().ifPresent(c -> c.invalidateAfterMutation(path));
+      }
+    }
   }
 
   private String send(Request request) {
-    try (Response response = getClient().newCall(request).execute()) {
-      int code = response.code();
-      String status = response.message();
-      String body = response.body().string();
-
-      LOG.debug("HTTP Response: [{} {}] {}", code, status, body);
-
-      if (response.code() >= 500) {
-        throw new HttpException.ServerException(code, status, body);
-      } else if (response.code() >= 400) {
-        throw new HttpException.ClientException(code, status, body);
-      } else if (!response.isSuccessful()) {
-        throw new HttpException(code, status, body);
+    return execute(
+        request,
+        response -> {
+          String body = response.body().string();
+          logResponse(response, body);
+          return body;
+        });
+  }
+
+  private void logResponse(Response response, String body) {
+    LOG.debug(
+        "HTTP Response: [{} {}] ({} chars)", response.code(), response.message(), body.length());
+    LOG.trace("HTTP Response: [{} {}] {}", response.code(), response.message(), body);
+
+    if (payloadLogger != null) {
+      Request request = response.request();
+      payloadLogger.response(
+          config.getCurrentShard(),
+          request.method(),
+          request.url().encodedPath(),
+          response.code(),
+          body);
+    }
+  }
+
+  private static RequestOptions getOptions(Request request) {
+    RequestOptions options = request.tag(RequestOptions.class);
+    return options == null ? RequestOptions.defaults() : options;
+  }
+
+  private Request resolveDeadline(Request request) {
+    RequestOptions options = request.tag(RequestOptions.class);
+
+    return options == null || !options.getTimeout().isPresent()
+        ? request
+        : request
+            .newBuilder()
+            .tag(RequestOptions.class, options.resolveDeadline(config.getClock().instant()))
+            .build();
+  }
+
+  private <T> T execute(Request request, ResponseReader<T> reader) {
+    RequestOptions options = request.tag(RequestOptions.class);
+    Call call = getClient().newCall(request);
+    Runnable stopCancelling = () -> {};
+
+    if (options != null) {
+      Instant now = config.getClock().instant();
+
+      if (options.isCancelled(now)) {
+        throw new RequestCancelledException("Request cancelled before it was sent");
+      }
+
+      options
+          .getDeadline()
+          .ifPresent(
+              d ->
+                  call.timeout()
+                      .timeout(
+                          Math.max(1, Duration.between(now, d).toMillis()), TimeUnit.MILLISECONDS));
+
+      stopCancelling =
+          options.getCancellation().map(c -> c.onCancel(call::cancel)).orElse(() -> {});
+    }
+
+    Object event = JfrEvents.beginRestCall();
+    int responseCode = -1;
+
+    try (Response response = call.execute()) {
+      responseCode = response.code();
+
+      if (!response.isSuccessful()) {
+        int code = response.code();
+        String status = response.message();
+        String body = response.body().string();
+
+        logResponse(response, body);
+
+        if (code >= 500) {
+          throw new HttpException.ServerException(code, status, body);
+        } else if (code >= 400) {
+          throw new HttpException.ClientException(code, status, body);
+        } else {
+          throw new HttpException(code, status, body);
+        }
       }
 
-      return body;
+      return reader.read(response);
     } catch (IOException e) {
+      if (options != null && options.isCancelled(config.getClock().instant())) {
+        throw new RequestCancelledException("Request cancelled", e);
+      }
       throw new SmallDException(e);
+    } finally {
+      stopCancelling.run();
+
+      if (event != null) {
+        JfrEvents.endRestCall(
+            event,
+            request.method(),
+            RateLimitBucket.from(request, baseUrl).getRoute(),
+            responseCode);
+      }
     }
   }
 
@@ -141,7 +523,17 @@ public class HttpClient implements AutoCloseable {
     }
   }
 
-  private static final Interceptor addHeader(String name, Supplier<String> valueSupplier) {
-    return c -> c.proceed(c.request().newBuilder().header(name, valueSupplier.get()).build());
+  /**
+   * Reads the result from a successful {@link Response}.
+   *
+   * @param <T> the type of the result
+   */
+  @FunctionalInterface
+  private interface ResponseReader<T> {
+    T read(Response response) throws IOException;
+  }
+
+  private static boolean isEssential(Request request) {
+    return request.url().encodedPath().endsWith("/gateway/bot");
   }
 }
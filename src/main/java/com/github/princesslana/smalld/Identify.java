@@ -1,6 +1,5 @@
 package com.github.princesslana.smalld;
 
-import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -11,6 +10,21 @@ import java.util.function.Consumer;
  */
 public class Identify implements Consumer<SmallD> {
 
+  private static final PayloadTemplate IDENTIFY =
+      PayloadTemplate.compile(
+          "{\"op\":"
+              + GatewayPayload.OP_IDENTIFY
+              + ",\"d\":{\"token\":${token}"
+              + ",\"properties\":{\"$os\":${os},\"$device\":\"SmallD\",\"$browser\":\"SmallD\"}"
+              + ",\"compress\":false,\"intents\":${intents}"
+              + ",\"shard\":[${shard},${shards}]}}");
+
+  private static final PayloadTemplate RESUME =
+      PayloadTemplate.compile(
+          "{\"op\":"
+              + GatewayPayload.OP_RESUME
+              + ",\"d\":{\"token\":${token},\"session_id\":${session_id},\"seq\":${seq}}}");
+
   private final SequenceNumber sequenceNumber;
 
   private String sessionId;
@@ -58,37 +72,23 @@ public class Identify implements Consumer<SmallD> {
   private void onHello(SmallD smalld) {
     Long seq = sequenceNumber.getLastSeen().orElse(null);
 
-    JsonObject payload =
+    String payload =
         seq == null || sessionId == null ? identify(smalld) : resume(smalld, seq, sessionId);
 
-    smalld.sendGatewayPayload(payload.toString());
+    smalld.sendGatewayPayload(payload);
   }
 
-  private JsonObject identify(SmallD smalld) {
-    JsonObject properties =
-        Json.object()
-            .add("$os", System.getProperty("os.name"))
-            .add("$device", "SmallD")
-            .add("$browser", "SmallD");
-
-    JsonObject d =
-        Json.object()
-            .add("token", smalld.getToken())
-            .add("properties", properties)
-            .add("compress", false)
-            .add("intents", smalld.getIntents())
-            .add(
-                "shard",
-                Json.array().add(smalld.getCurrentShard()).add(smalld.getNumberOfShards()));
-
-    return Json.object().add("op", GatewayPayload.OP_IDENTIFY).add("d", d);
+  private String identify(SmallD smalld) {
+    return IDENTIFY.render(
+        smalld.getToken(),
+        System.getProperty("os.name"),
+        smalld.getIntents(),
+        smalld.getCurrentShard(),
+        smalld.getNumberOfShards());
   }
 
-  private JsonObject resume(SmallD smalld, Long seq, String session) {
-    JsonObject d =
-        Json.object().add("token", smalld.getToken()).add("session_id", session).add("seq", seq);
-
-    return Json.object().add("op", GatewayPayload.OP_RESUME).add("d", d);
+  private String resume(SmallD smalld, Long seq, String session) {
+    return RESUME.render(smalld.getToken(), session, seq);
   }
 
   private void onReady(JsonObject d) {
@@ -104,7 +104,7 @@ public class Identify implements Consumer<SmallD> {
       Thread.currentThread().interrupt();
     }
 
-    smalld.sendGatewayPayload(identify(smalld).toString());
+    smalld.sendGatewayPayload(identify(smalld));
   }
 
   private void onReconnect(SmallD smalld) {
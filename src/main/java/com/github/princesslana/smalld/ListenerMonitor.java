@@ -0,0 +1,213 @@
+package com.github.princesslana.smalld;
+
+import com.github.princesslana.smalld.jfr.JfrEvents;
+import com.github.princesslana.smalld.metrics.BucketedHistogram;
+import com.github.princesslana.smalld.metrics.Counter;
+import com.github.princesslana.smalld.metrics.Histogram;
+import com.github.princesslana.smalld.metrics.Metrics;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Invokes gateway payload listeners, timing a sample of invocations per listener and watching for
+ * listeners that stall the dispatch thread.
+ *
+ * <p>Invocations are timed for one in every {@code sampleRate} payloads, so that the cost of
+ * reading the clock is not paid for every listener on every payload. The watchdog does not read the
+ * clock on the dispatch thread at all. It checks periodically whether the same invocation is still
+ * running, and when one has been running for longer than the threshold it logs the stack of the
+ * dispatch thread once.
+ */
+class ListenerMonitor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ListenerMonitor.class);
+
+  private static final ScheduledExecutorService WATCHDOG =
+      Executors.newSingleThreadScheduledExecutor(SmallD.DAEMON_THREAD_FACTORY);
+
+  private static final long MIN_WATCHDOG_PERIOD_MILLIS = 10;
+
+  private final Metrics metrics;
+
+  private final String shard;
+
+  private final int sampleRate;
+
+  private final Duration slowThreshold;
+
+  private final Counter slowInvocations;
+
+  private final Map<String, BucketedHistogram> latencies = new ConcurrentHashMap<>();
+
+  private int unsampledPayloads = 0;
+
+  private volatile Thread dispatchThread;
+
+  private volatile Listener<?> current;
+
+  private volatile long invocation = 0;
+
+  private long watchedInvocation = -1;
+
+  private long watchedSince;
+
+  private boolean reported;
+
+  private ScheduledFuture<?> watchdog;
+
+  ListenerMonitor(Config config) {
+    this.metrics = config.getMetrics();
+    this.shard = String.valueOf(config.getCurrentShard());
+    this.sampleRate = config.getListenerTimingSampleRate();
+    this.slowThreshold = config.getSlowListenerThreshold();
+    this.slowInvocations = metrics.counter("smalld.gateway.listener.slow", "shard", shard);
+  }
+
+  <T> Listener<T> listener(String name, Consumer<T> consumer) {
+    BucketedHistogram latency = latencies.computeIfAbsent(name, n -> new BucketedHistogram());
+    Histogram metric =
+        metrics.histogram("smalld.gateway.listener.invocation", "shard", shard, "listener", name);
+
+    return new Listener<>(name, consumer, latency, metric);
+  }
+
+  <T> void notify(List<Listener<T>> listeners, T payload) {
+    if (dispatchThread != Thread.currentThread()) {
+      dispatchThread = Thread.currentThread();
+    }
+
+    boolean sample = isSampled();
+
+    try {
+      for (Listener<T> l : listeners) {
+        current = l;
+        invocation++;
+
+        Object event = JfrEvents.beginListener();
+        long start = sample ? System.nanoTime() : 0;
+
+        try {
+          l.consumer.accept(payload);
+        } finally {
+          JfrEvents.endListener(event, l.name);
+        }
+
+        if (sample) {
+          l.record(System.nanoTime() - start);
+        }
+      }
+    } finally {
+      current = null;
+    }
+  }
+
+  Map<String, BucketedHistogram> getLatencies() {
+    return Collections.unmodifiableMap(latencies);
+  }
+
+  synchronized void start() {
+    if (watchdog != null || slowThreshold.isZero() || slowThreshold.isNegative()) {
+      return;
+    }
+
+    long period = Math.max(MIN_WATCHDOG_PERIOD_MILLIS, slowThreshold.toMillis() / 2);
+
+    watchdog = WATCHDOG.scheduleAtFixedRate(this::check, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  synchronized void stop() {
+    if (watchdog != null) {
+      watchdog.cancel(false);
+      watchdog = null;
+    }
+  }
+
+  private boolean isSampled() {
+    if (sampleRate <= 0) {
+      return false;
+    }
+
+    if (++unsampledPayloads >= sampleRate) {
+      unsampledPayloads = 0;
+      return true;
+    }
+
+    return false;
+  }
+
+  private synchronized void check() {
+    Listener<?> running = current;
+    long now = System.nanoTime();
+
+    if (running == null) {
+      watchedInvocation = -1;
+      return;
+    }
+
+    long inv = invocation;
+
+    if (inv != watchedInvocation) {
+      watchedInvocation = inv;
+      watchedSince = now;
+      reported = false;
+      return;
+    }
+
+    if (!reported && now - watchedSince >= slowThreshold.toNanos()) {
+      reported = true;
+      slowInvocations.increment();
+      LOG.warn(
+          "Gateway listener {} on shard {} has been running for more than {}ms:{}",
+          running.name,
+          shard,
+          TimeUnit.NANOSECONDS.toMillis(now - watchedSince),
+          formatStack(dispatchThread));
+    }
+  }
+
+  private static String formatStack(Thread thread) {
+    if (thread == null) {
+      return "";
+    }
+
+    StringBuilder stack = new StringBuilder();
+    for (StackTraceElement e : thread.getStackTrace()) {
+      stack.append(System.lineSeparator()).append("\tat ").append(e);
+    }
+    return stack.toString();
+  }
+
+  /**
+   * A listener and the latencies of its sampled invocations.
+   *
+   * @param <T> the type of payload the listener receives
+   */
+  static class Listener<T> {
+    private final String name;
+    private final Consumer<T> consumer;
+    private final BucketedHistogram latency;
+    private final Histogram metric;
+
+    Listener(String name, Consumer<T> consumer, BucketedHistogram latency, Histogram metric) {
+      this.name = name;
+      this.consumer = consumer;
+      this.latency = latency;
+      this.metric = metric;
+    }
+
+    private void record(long nanos) {
+      latency.record(nanos);
+      metric.record(nanos);
+    }
+  }
+}
@@ -6,7 +6,10 @@ import okhttp3.WebSocketListener;
 import okio.ByteString;
 import org.slf4j.Logger;
 
-/** A {@link WebSocketListener} that logs all events received. */
+/**
+ * A {@link WebSocketListener} that logs all events received. The size of each message is logged at
+ * DEBUG level, and the content of text messages at TRACE level.
+ */
 public class LoggingWebSocketListener extends WebSocketListener {
 
   private final Logger log;
@@ -51,7 +54,8 @@ public class LoggingWebSocketListener extends WebSocketListener {
 
   @Override
   public void onMessage(WebSocket ws, String text) {
-    log.debug("WebSocket Message (String): {}", text);
+    log.debug("WebSocket Message (String): {} chars", text.length());
+    log.trace("WebSocket Message (String): {}", text);
     wrapped.onMessage(ws, text);
   }
 
@@ -0,0 +1,359 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches message deletes into calls to Discord's bulk delete endpoint.
+ *
+ * <p>Deletes are collected per channel. A channel's deletes are sent when the batch window has
+ * passed since the first delete was collected, or as soon as 100 deletes have been collected. A
+ * batch of two or more messages is sent to {@code POST
+ * /channels/{channel.id}/messages/bulk-delete}. A batch with a single message, and any message
+ * older than Discord allows to be bulk deleted, is deleted with {@code DELETE
+ * /channels/{channel.id}/messages/{message.id}}.
+ *
+ * <p>Each delete has its own result. Deletes of the same message that are collected in the same
+ * batch are sent once, and share the result of that request. Deletes that are sent in the same bulk
+ * delete call succeed or fail together. Deletes that are refused because of a rate limit are sent
+ * again once it has expired, up to five attempts, after which they fail with the {@link
+ * RateLimitException}.
+ *
+ * <p>Each batcher has its own threads, which are released when it is closed. Closing sends the
+ * deletes that have been collected without waiting for their window to pass. Deletes waiting for a
+ * rate limit to expire, and deletes made after closing, fail with a {@link SmallDException}.
+ */
+public class MessageDeleteBatcher implements AutoCloseable {
+
+  private static final int MIN_BULK_DELETE = 2;
+
+  private static final int MAX_BULK_DELETE = 100;
+
+  private static final Duration MAX_BULK_DELETE_AGE = Duration.ofDays(14).minusMinutes(1);
+
+  private static final long DISCORD_EPOCH_MILLIS = 1420070400000L;
+
+  private static final int MAX_RATE_LIMITED_ATTEMPTS = 5;
+
+  private final SmallD smalld;
+  private final Duration window;
+  private final RequestOptions options;
+  private final Clock clock;
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(SmallD.DAEMON_THREAD_FACTORY);
+
+  private final ExecutorService sendExecutor =
+      Executors.newCachedThreadPool(SmallD.DAEMON_THREAD_FACTORY);
+
+  private final Map<String, List<PendingDelete>> pending = new HashMap<>();
+
+  private final Set<List<PendingDelete>> retrying =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private boolean closed = false;
+
+  private MessageDeleteBatcher(Builder builder) {
+    smalld = builder.smalld;
+    window = builder.window;
+    options = builder.options;
+    clock = builder.clock;
+  }
+
+  /**
+   * Delete a message. The message is deleted when the batch for its channel is sent.
+   *
+   * @param channelId the id of the channel the message is in
+   * @param messageId the id of the message
+   * @return a future that completes when the message has been deleted
+   */
+  public CompletableFuture<Void> delete(String channelId, String messageId) {
+    PendingDelete delete = new PendingDelete(messageId);
+    List<PendingDelete> full = null;
+
+    synchronized (this) {
+      if (closed) {
+        delete.result.completeExceptionally(
+            new SmallDException("MessageDeleteBatcher has been closed"));
+        return delete.result;
+      }
+
+      List<PendingDelete> batch = pending.get(channelId);
+
+      if (batch == null) {
+        batch = new ArrayList<>();
+        pending.put(channelId, batch);
+
+        List<PendingDelete> scheduled = batch;
+        scheduler.schedule(
+            () -> flush(channelId, scheduled), window.toMillis(), TimeUnit.MILLISECONDS);
+      }
+
+      batch.add(delete);
+
+      if (batch.size() >= MAX_BULK_DELETE) {
+        pending.remove(channelId);
+        full = batch;
+      }
+    }
+
+    if (full != null) {
+      sendLater(channelId, full);
+    }
+
+    return delete.result;
+  }
+
+  /**
+   * Stop batching. Deletes that have been collected are sent now, and the batcher's threads finish
+   * once they have been sent. Deletes waiting for a rate limit to expire fail.
+   */
+  @Override
+  public void close() {
+    Map<String, List<PendingDelete>> unsent;
+    List<List<PendingDelete>> abandoned;
+
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      unsent = new HashMap<>(pending);
+      pending.clear();
+      abandoned = new ArrayList<>(retrying);
+      retrying.clear();
+    }
+
+    scheduler.shutdownNow();
+    unsent.forEach(this::sendLater);
+    sendExecutor.shutdown();
+
+    SmallDException closedException =
+        new SmallDException("MessageDeleteBatcher was closed while waiting for a rate limit");
+    abandoned.forEach(deletes -> fail(deletes, closedException));
+  }
+
+  private void flush(String channelId, List<PendingDelete> batch) {
+    synchronized (this) {
+      if (!pending.remove(channelId, batch)) {
+        return;
+      }
+    }
+
+    sendLater(channelId, batch);
+  }
+
+  private void sendLater(String channelId, List<PendingDelete> batch) {
+    try {
+      sendExecutor.execute(() -> send(channelId, batch));
+    } catch (RejectedExecutionException e) {
+      fail(batch, new SmallDException("MessageDeleteBatcher has been closed", e));
+    }
+  }
+
+  private void send(String channelId, List<PendingDelete> batch) {
+    Instant oldest = clock.instant().minus(MAX_BULK_DELETE_AGE);
+
+    Map<String, List<PendingDelete>> byMessage = new LinkedHashMap<>();
+    for (PendingDelete delete : batch) {
+      byMessage.computeIfAbsent(delete.messageId, id -> new ArrayList<>()).add(delete);
+    }
+
+    List<String> bulk = new ArrayList<>();
+    List<String> single = new ArrayList<>();
+
+    for (String messageId : byMessage.keySet()) {
+      (isBulkDeletable(messageId, oldest) ? bulk : single).add(messageId);
+    }
+
+    if (bulk.size() < MIN_BULK_DELETE) {
+      single.addAll(bulk);
+      bulk.clear();
+    }
+
+    if (!bulk.isEmpty()) {
+      List<PendingDelete> deletes = new ArrayList<>();
+      bulk.forEach(id -> deletes.addAll(byMessage.get(id)));
+      sendBulk(channelId, bulk, deletes);
+    }
+
+    single.forEach(id -> sendSingle(channelId, id, byMessage.get(id)));
+  }
+
+  private void sendBulk(String channelId, List<String> messageIds, List<PendingDelete> deletes) {
+    JsonArray messages = Json.array();
+    messageIds.forEach(messages::add);
+
+    try {
+      smalld.post(
+          "/channels/" + channelId + "/messages/bulk-delete",
+          Json.object().add("messages", messages).toString(),
+          Collections.emptyMap(),
+          options);
+      deletes.forEach(d -> d.result.complete(null));
+    } catch (RateLimitException e) {
+      retryAfter(e, channelId, deletes);
+    } catch (RuntimeException e) {
+      fail(deletes, e);
+    }
+  }
+
+  private void sendSingle(String channelId, String messageId, List<PendingDelete> deletes) {
+    try {
+      smalld.delete("/channels/" + channelId + "/messages/" + messageId, options);
+      deletes.forEach(d -> d.result.complete(null));
+    } catch (RateLimitException e) {
+      retryAfter(e, channelId, deletes);
+    } catch (RuntimeException e) {
+      fail(deletes, e);
+    }
+  }
+
+  private void retryAfter(RateLimitException e, String channelId, List<PendingDelete> deletes) {
+    List<PendingDelete> retry = new ArrayList<>();
+
+    for (PendingDelete delete : deletes) {
+      if (++delete.rateLimitedAttempts >= MAX_RATE_LIMITED_ATTEMPTS) {
+        delete.result.completeExceptionally(e);
+      } else {
+        retry.add(delete);
+      }
+    }
+
+    if (retry.isEmpty()) {
+      return;
+    }
+
+    long delay = Math.max(0, Duration.between(clock.instant(), e.getExpiry()).toMillis());
+
+    synchronized (this) {
+      if (!closed) {
+        retrying.add(retry);
+        scheduler.schedule(
+            () -> {
+              synchronized (this) {
+                if (!retrying.remove(retry)) {
+                  return;
+                }
+              }
+              sendLater(channelId, retry);
+            },
+            delay,
+            TimeUnit.MILLISECONDS);
+        return;
+      }
+    }
+
+    fail(retry, e);
+  }
+
+  private static void fail(List<PendingDelete> deletes, Throwable e) {
+    deletes.forEach(d -> d.result.completeExceptionally(e));
+  }
+
+  private static boolean isBulkDeletable(String messageId, Instant oldest) {
+    try {
+      long createdAt = (Long.parseUnsignedLong(messageId) >>> 22) + DISCORD_EPOCH_MILLIS;
+      return createdAt > oldest.toEpochMilli();
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create a {@code MessageDeleteBatcher}.
+   *
+   * @param smalld the SmallD instance to make requests with
+   * @return a {@link Builder} that can build a {@code MessageDeleteBatcher}
+   */
+  public static Builder builder(SmallD smalld) {
+    return new Builder(smalld);
+  }
+
+  /** A message waiting to be deleted, and the result of deleting it. */
+  private static class PendingDelete {
+    private final String messageId;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private int rateLimitedAttempts = 0;
+
+    PendingDelete(String messageId) {
+      this.messageId = messageId;
+    }
+  }
+
+  /** {@code Builder} of {@code MessageDeleteBatcher} instances. */
+  public static class Builder {
+
+    private final SmallD smalld;
+    private Duration window = Duration.ofMillis(250);
+    private RequestOptions options = RequestOptions.defaults();
+    private Clock clock = Clock.systemUTC();
+
+    private Builder(SmallD smalld) {
+      this.smalld = smalld;
+    }
+
+    /**
+     * Set how long to collect deletes for a channel before sending them. If not set this will
+     * default to 250ms.
+     *
+     * @param window the time to collect deletes for
+     * @return this
+     */
+    public Builder setWindow(Duration window) {
+      this.window = window;
+      return this;
+    }
+
+    /**
+     * Set the options for the delete requests, such as their {@link RequestPriority}. If not set
+     * the default options are used.
+     *
+     * @param options the options for delete requests
+     * @return this
+     */
+    public Builder setRequestOptions(RequestOptions options) {
+      this.options = options;
+      return this;
+    }
+
+    /**
+     * Set the {@link Clock} used to determine whether a message is too old to bulk delete.
+     *
+     * @param clock the Clock to use
+     * @return this
+     */
+    public Builder setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Build the {@code MessageDeleteBatcher} instance.
+     *
+     * @return the built MessageDeleteBatcher instance
+     */
+    public MessageDeleteBatcher build() {
+      return new MessageDeleteBatcher(this);
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the items of a paginated Discord endpoint, such as guild members, channel messages,
+ * or reactions.
+ *
+ * <p>Pages are requested with the {@code limit} query parameter and either the {@code after} or
+ * {@code before} query parameter, which is set from the furthest id in that direction that has been
+ * received. Iteration is lazy, but the next page is requested in the background as soon as the
+ * current page has been received, so that it is usually available by the time the current page has
+ * been processed.
+ *
+ * <p>If a page request is rate limited it is retried after the rate limit expires, so that paging
+ * stays within the limits of the route's rate limit bucket.
+ */
+public class Paginator implements Iterable<JsonObject> {
+
+  private static final Executor PREFETCH_EXECUTOR =
+      Executors.newCachedThreadPool(SmallD.DAEMON_THREAD_FACTORY);
+
+  private static final int MAX_RATE_LIMITED_ATTEMPTS = 5;
+
+  private final SmallD smalld;
+  private final String path;
+  private final Map<String, Object> parameters;
+  private final Direction direction;
+  private final int limit;
+  private final String start;
+  private final Function<JsonObject, String> idOf;
+  private final Clock clock;
+
+  private Paginator(Builder builder) {
+    smalld = builder.smalld;
+    path = builder.path;
+    parameters = new HashMap<>(builder.parameters);
+    direction = builder.direction;
+    limit = builder.limit;
+    start = builder.start;
+    idOf = builder.idOf;
+    clock = builder.clock;
+  }
+
+  @Override
+  public Iterator<JsonObject> iterator() {
+    return new PageIterator();
+  }
+
+  /**
+   * Returns a sequential {@link Stream} of the items.
+   *
+   * @return a stream of the items
+   */
+  public Stream<JsonObject> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  private CompletableFuture<Page> fetch(String cursor) {
+    return CompletableFuture.supplyAsync(() -> fetchPage(cursor), PREFETCH_EXECUTOR);
+  }
+
+  private Page fetchPage(String cursor) {
+    Map<String, Object> params = new HashMap<>(parameters);
+    params.put("limit", limit);
+    if (cursor != null) {
+      params.put(direction.getParameter(), cursor);
+    }
+
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return toPage(smalld.get(path, params, Json::parse).asArray());
+      } catch (RateLimitException e) {
+        if (attempt >= MAX_RATE_LIMITED_ATTEMPTS) {
+          throw e;
+        }
+        sleepUntilExpiry(e);
+      }
+    }
+  }
+
+  private Page toPage(JsonArray array) {
+    List<JsonObject> items = new ArrayList<>(array.size());
+    for (JsonValue v : array) {
+      items.add(v.asObject());
+    }
+
+    String cursor = items.stream().map(idOf).max(direction.getCursorOrder()).orElse(null);
+
+    return new Page(items, items.size() >= limit ? cursor : null);
+  }
+
+  private void sleepUntilExpiry(RateLimitException e) {
+    try {
+      Thread.sleep(Math.max(0, Duration.between(clock.instant(), e.getExpiry()).toMillis()));
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new SmallDException(ie);
+    }
+  }
+
+  private static Page await(CompletableFuture<Page> page) {
+    try {
+      return page.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SmallDException(e.getCause());
+    }
+  }
+
+  private static int compareSnowflakes(String lhs, String rhs) {
+    return Long.compareUnsigned(Long.parseUnsignedLong(lhs), Long.parseUnsignedLong(rhs));
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create a {@code Paginator} for the given path.
+   *
+   * @param smalld the SmallD instance to make requests with
+   * @param path the path of the paginated endpoint
+   * @return a {@link Builder} that can build a {@code Paginator}
+   */
+  public static Builder builder(SmallD smalld, String path) {
+    return new Builder(smalld, path);
+  }
+
+  /** The direction in which to page through items. */
+  public enum Direction {
+    /** Page forwards using the {@code after} parameter. */
+    AFTER("after", Paginator::compareSnowflakes),
+
+    /** Page backwards using the {@code before} parameter. */
+    BEFORE("before", (lhs, rhs) -> compareSnowflakes(rhs, lhs));
+
+    private final String parameter;
+
+    private final Comparator<String> cursorOrder;
+
+    private Direction(String parameter, Comparator<String> cursorOrder) {
+      this.parameter = parameter;
+      this.cursorOrder = cursorOrder;
+    }
+
+    private String getParameter() {
+      return parameter;
+    }
+
+    private Comparator<String> getCursorOrder() {
+      return cursorOrder;
+    }
+  }
+
+  /** A page of items, and the cursor for the next page if there is one. */
+  private static class Page {
+    private final List<JsonObject> items;
+    private final String nextCursor;
+
+    Page(List<JsonObject> items, String nextCursor) {
+      this.items = items;
+      this.nextCursor = nextCursor;
+    }
+  }
+
+  /** Iterates over items, requesting the next page when the current page is received. */
+  private class PageIterator implements Iterator<JsonObject> {
+
+    private Iterator<JsonObject> current = Collections.emptyIterator();
+
+    private CompletableFuture<Page> next = fetch(start);
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (next == null) {
+          return false;
+        }
+
+        Page page = await(next);
+        next = page.nextCursor == null ? null : fetch(page.nextCursor);
+        current = page.items.iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public JsonObject next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+  }
+
+  /** {@code Builder} of {@code Paginator} instances. */
+  public static class Builder {
+
+    private final SmallD smalld;
+    private final String path;
+    private Map<String, Object> parameters = Collections.emptyMap();
+    private Direction direction = Direction.AFTER;
+    private int limit = 100;
+    private String start;
+    private Function<JsonObject, String> idOf = item -> item.getString("id", null);
+    private Clock clock = Clock.systemUTC();
+
+    private Builder(SmallD smalld, String path) {
+      this.smalld = smalld;
+      this.path = path;
+    }
+
+    /**
+     * Set additional query string parameters to send with each request.
+     *
+     * @param parameters the query string parameters
+     * @return this
+     */
+    public Builder setParameters(Map<String, Object> parameters) {
+      this.parameters = parameters;
+      return this;
+    }
+
+    /**
+     * Set the direction to page in. If not set this will default to {@link Direction#AFTER}.
+     *
+     * @param direction the direction to page in
+     * @return this
+     */
+    public Builder setDirection(Direction direction) {
+      this.direction = direction;
+      return this;
+    }
+
+    /**
+     * Set the number of items to request per page. If not set this will default to 100.
+     *
+     * @param limit the number of items per page
+     * @return this
+     */
+    public Builder setLimit(int limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    /**
+     * Set the id to start paging from. If not set paging will start from the beginning, or from the
+     * most recent item when paging {@link Direction#BEFORE}.
+     *
+     * @param start the id to start paging from
+     * @return this
+     */
+    public Builder setStart(String start) {
+      this.start = start;
+      return this;
+    }
+
+    /**
+     * Set how to retrieve the id of an item. If not set the {@code id} field of the item is used.
+     * For guild members this should be set to retrieve the id of the member's user.
+     *
+     * @param idOf function to retrieve the id of an item
+     * @return this
+     */
+    public Builder setIdOf(Function<JsonObject, String> idOf) {
+      this.idOf = idOf;
+      return this;
+    }
+
+    /**
+     * Set the {@link Clock} used when waiting for rate limits to expire.
+     *
+     * @param clock the Clock to use
+     * @return this
+     */
+    public Builder setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Build the {@code Paginator} instance.
+     *
+     * @return the built Paginator instance
+     */
+    public Paginator build() {
+      return new Paginator(this);
+    }
+  }
+}
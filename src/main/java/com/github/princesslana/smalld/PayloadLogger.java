@@ -0,0 +1,365 @@
+package com.github.princesslana.smalld;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs gateway payloads and REST responses cheaply enough to be left enabled in production.
+ *
+ * <p>Logging is enabled per shard, and may be enabled and disabled while running. Payloads from
+ * shards that are not enabled cost a single bit lookup. For enabled shards payloads are sampled at
+ * a rate that may be configured per event type, where the type is the {@code t} of dispatch
+ * payloads, {@code OP_<op>} for other gateway payloads, and {@code REST} for REST responses. The
+ * type of a gateway payload is only read from it if a rate has been configured for a gateway type.
+ *
+ * <p>Payloads that are sampled are truncated to a maximum length and queued, and are formatted and
+ * written to the log on a background thread. The value of any {@code token} field, such as the bot
+ * token in IDENTIFY and RESUME payloads or the token of a webhook, is redacted before it is queued.
+ * If the queue is full payloads are dropped rather than blocking the caller, and counted in {@link
+ * #getDroppedCount()}.
+ */
+public class PayloadLogger implements AutoCloseable {
+
+  /** Type used for sampling REST responses. */
+  public static final String REST = "REST";
+
+  private static final String RECEIVED = "Gateway Received";
+
+  private static final String SENT = "Gateway Sent";
+
+  private static final String RESPONSE = "HTTP Response";
+
+  // the closing quote is optional, as truncation may have cut the value short
+  private static final Pattern TOKEN = Pattern.compile("(\"token\"\\s*:\\s*)\"[^\"]*\"?");
+
+  private static final String REDACTED = "$1\"[REDACTED]\"";
+
+  private final Logger log;
+
+  private final int maxLength;
+
+  private final double defaultSampleRate;
+
+  private final Map<String, Double> sampleRates;
+
+  private final boolean hasGatewaySampleRates;
+
+  private final BlockingQueue<Entry> queue;
+
+  private final LongAdder dropped = new LongAdder();
+
+  private volatile BitSet enabledShards = new BitSet();
+
+  private volatile boolean allShardsEnabled;
+
+  private volatile Thread writer;
+
+  private volatile boolean closed = false;
+
+  private PayloadLogger(Builder builder) {
+    this.log = builder.log;
+    this.maxLength = builder.maxLength;
+    this.defaultSampleRate = builder.defaultSampleRate;
+    this.sampleRates = new HashMap<>(builder.sampleRates);
+    this.hasGatewaySampleRates = sampleRates.keySet().stream().anyMatch(t -> !REST.equals(t));
+    this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+    this.allShardsEnabled = builder.allShardsEnabled;
+  }
+
+  /**
+   * Log a payload that was received from the gateway, if sampled.
+   *
+   * @param shard the shard the payload was received on
+   * @param payload the payload
+   */
+  public void received(int shard, String payload) {
+    if (isEnabled(shard)) {
+      logGateway(RECEIVED, shard, payload);
+    }
+  }
+
+  /**
+   * Log a payload that was sent to the gateway, if sampled.
+   *
+   * @param shard the shard the payload was sent on
+   * @param payload the payload
+   */
+  public void sent(int shard, String payload) {
+    if (isEnabled(shard)) {
+      logGateway(SENT, shard, payload);
+    }
+  }
+
+  /**
+   * Log the body of a REST response, if sampled.
+   *
+   * @param shard the shard of the instance that made the request
+   * @param method the HTTP method of the request
+   * @param path the path of the request
+   * @param code the HTTP status code of the response
+   * @param body the body of the response
+   */
+  public void response(int shard, String method, String path, int code, String body) {
+    if (isEnabled(shard) && isSampled(REST)) {
+      enqueue(RESPONSE + " [" + method + " " + path + " " + code + "]", shard, body);
+    }
+  }
+
+  /**
+   * Returns whether payloads are logged for a shard.
+   *
+   * @param shard the shard
+   * @return whether payloads for the shard are logged
+   */
+  public boolean isEnabled(int shard) {
+    return !closed && (allShardsEnabled || enabledShards.get(shard));
+  }
+
+  /**
+   * Start logging payloads for a shard.
+   *
+   * @param shard the shard
+   */
+  public synchronized void enable(int shard) {
+    BitSet shards = (BitSet) enabledShards.clone();
+    shards.set(shard);
+    enabledShards = shards;
+  }
+
+  /**
+   * Stop logging payloads for a shard. This has no effect on shards while logging is enabled for
+   * all shards.
+   *
+   * @param shard the shard
+   */
+  public synchronized void disable(int shard) {
+    BitSet shards = (BitSet) enabledShards.clone();
+    shards.clear(shard);
+    enabledShards = shards;
+  }
+
+  /**
+   * Start or stop logging payloads for all shards. When stopped, payloads are logged only for the
+   * shards that have been enabled individually.
+   *
+   * @param enabled whether to log payloads for all shards
+   */
+  public void setAllShardsEnabled(boolean enabled) {
+    allShardsEnabled = enabled;
+  }
+
+  /**
+   * Returns the number of sampled payloads that were dropped because the queue was full.
+   *
+   * @return the number of dropped payloads
+   */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stop logging. Payloads are no longer sampled, the background thread is stopped, and payloads
+   * that are still queued are not logged.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+
+    if (writer != null) {
+      writer.interrupt();
+      writer = null;
+    }
+    queue.clear();
+  }
+
+  private void logGateway(String label, int shard, String payload) {
+    if (hasGatewaySampleRates ? isSampled(getType(payload)) : isSampled(defaultSampleRate)) {
+      enqueue(label, shard, payload);
+    }
+  }
+
+  private static String getType(String payload) {
+    String t = GatewayPayload.peek(payload, "t");
+    return t == null ? "OP_" + GatewayPayload.peek(payload, "op") : t;
+  }
+
+  private boolean isSampled(String type) {
+    return isSampled(sampleRates.getOrDefault(type, defaultSampleRate));
+  }
+
+  private static boolean isSampled(double rate) {
+    return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  private void enqueue(String label, int shard, String payload) {
+    String text =
+        payload == null || payload.length() <= maxLength
+            ? payload
+            : payload.substring(0, maxLength);
+    int omitted = payload == null ? 0 : payload.length() - text.length();
+
+    if (text != null && text.contains("\"token\"")) {
+      text = TOKEN.matcher(text).replaceAll(REDACTED);
+    }
+
+    if (queue.offer(new Entry(label, shard, text, omitted))) {
+      if (writer == null && !closed) {
+        startWriter();
+      }
+    } else {
+      dropped.increment();
+    }
+  }
+
+  private synchronized void startWriter() {
+    if (writer == null && !closed) {
+      writer = SmallD.DAEMON_THREAD_FACTORY.newThread(this::write);
+      writer.setName("smalld-payload-logger");
+      writer.start();
+    }
+  }
+
+  private void write() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Entry e = queue.take();
+
+        if (e.omitted > 0) {
+          log.info("{} (shard {}): {}... ({} more chars)", e.label, e.shard, e.text, e.omitted);
+        } else {
+          log.info("{} (shard {}): {}", e.label, e.shard, e.text);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code PayloadLogger}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** A sampled payload waiting to be written to the log. */
+  private static class Entry {
+    private final String label;
+    private final int shard;
+    private final String text;
+    private final int omitted;
+
+    Entry(String label, int shard, String text, int omitted) {
+      this.label = label;
+      this.shard = shard;
+      this.text = text;
+      this.omitted = omitted;
+    }
+  }
+
+  /** {@code Builder} of {@code PayloadLogger} instances. */
+  public static class Builder {
+
+    private Logger log = LoggerFactory.getLogger(PayloadLogger.class);
+    private int maxLength = 512;
+    private double defaultSampleRate = 1;
+    private final Map<String, Double> sampleRates = new HashMap<>();
+    private int queueCapacity = 1024;
+    private boolean allShardsEnabled = false;
+
+    private Builder() {}
+
+    /**
+     * Set the logger that payloads are written to. Payloads are written at INFO level. If not set
+     * the logger for {@code PayloadLogger} is used.
+     *
+     * @param log the logger to write to
+     * @return this
+     */
+    public Builder setLogger(Logger log) {
+      this.log = log;
+      return this;
+    }
+
+    /**
+     * Set the number of characters of a payload to log. Longer payloads are truncated. If not set
+     * this will default to 512.
+     *
+     * @param maxLength the maximum number of characters to log
+     * @return this
+     */
+    public Builder setMaxLength(int maxLength) {
+      this.maxLength = maxLength;
+      return this;
+    }
+
+    /**
+     * Set the proportion of payloads to log for types without a specific rate. If not set this will
+     * default to 1, logging every payload.
+     *
+     * @param rate the proportion of payloads to log, between 0 and 1
+     * @return this
+     */
+    public Builder setDefaultSampleRate(double rate) {
+      this.defaultSampleRate = rate;
+      return this;
+    }
+
+    /**
+     * Set the proportion of payloads of a type to log. The type is the {@code t} of a dispatch
+     * payload, such as {@code PRESENCE_UPDATE}, {@code OP_<op>} for other gateway payloads, such as
+     * {@code OP_11} for heartbeat acks, or {@link PayloadLogger#REST} for REST responses.
+     *
+     * @param type the type of payload
+     * @param rate the proportion of payloads to log, between 0 and 1
+     * @return this
+     */
+    public Builder setSampleRate(String type, double rate) {
+      sampleRates.put(type, rate);
+      return this;
+    }
+
+    /**
+     * Set how many sampled payloads may wait to be written before further payloads are dropped. If
+     * not set this will default to 1024.
+     *
+     * @param queueCapacity the maximum number of payloads waiting to be written
+     * @return this
+     */
+    public Builder setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Set whether payloads are initially logged for all shards. If not set payloads are only logged
+     * for shards that are enabled with {@link PayloadLogger#enable(int)}.
+     *
+     * @param allShardsEnabled whether to log payloads for all shards
+     * @return this
+     */
+    public Builder setAllShardsEnabled(boolean allShardsEnabled) {
+      this.allShardsEnabled = allShardsEnabled;
+      return this;
+    }
+
+    /**
+     * Build the {@code PayloadLogger} instance.
+     *
+     * @return the built PayloadLogger instance
+     */
+    public PayloadLogger build() {
+      return new PayloadLogger(this);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.JsonValue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A JSON payload with static parts that are encoded once, and placeholders for values that change
+ * each time it is sent.
+ *
+ * <p>Placeholders are written as {@code ${name}} in place of a JSON value. The name is only for
+ * readability; values are provided to {@link #render(Object...)} in the order the placeholders
+ * appear. For example:
+ *
+ * <pre>{@code
+ * PayloadTemplate heartbeat = PayloadTemplate.compile("{\"op\":1,\"d\":${seq}}");
+ * String payload = heartbeat.render(42L);
+ * }</pre>
+ *
+ * <p>Rendering writes the static parts and values directly to a single buffer, without building a
+ * JSON tree. Instances are immutable and may be shared between threads.
+ */
+public final class PayloadTemplate {
+
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]*)}");
+
+  private static final int VALUE_SIZE_ESTIMATE = 24;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final String[] literals;
+
+  private final String[] names;
+
+  private final int renderSizeEstimate;
+
+  private PayloadTemplate(List<String> literals, List<String> names) {
+    this.literals = literals.toArray(new String[0]);
+    this.names = names.toArray(new String[0]);
+
+    int size = names.size() * VALUE_SIZE_ESTIMATE;
+    for (String literal : this.literals) {
+      size += literal.length();
+    }
+    this.renderSizeEstimate = size;
+  }
+
+  /**
+   * Returns the number of placeholders in this template.
+   *
+   * @return the number of placeholders
+   */
+  public int getPlaceholderCount() {
+    return names.length;
+  }
+
+  /**
+   * Render the payload, replacing each placeholder with the JSON encoding of a value.
+   *
+   * <p>Values may be {@code null}, a {@link String}, a {@link Number}, a {@link Boolean}, or a
+   * {@link JsonValue}.
+   *
+   * @param values the values for the placeholders, in the order they appear in the template
+   * @return the rendered payload
+   * @throws IllegalArgumentException if the number of values does not match the number of
+   *     placeholders, or a value is not of a supported type
+   */
+  public String render(Object... values) {
+    if (values.length != names.length) {
+      throw new IllegalArgumentException(
+          "Expected " + names.length + " values, but got " + values.length);
+    }
+
+    StringBuilder out = new StringBuilder(renderSizeEstimate);
+
+    out.append(literals[0]);
+    for (int i = 0; i < values.length; i++) {
+      appendValue(out, names[i], values[i]);
+      out.append(literals[i + 1]);
+    }
+
+    return out.toString();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder out = new StringBuilder(literals[0]);
+    for (int i = 0; i < names.length; i++) {
+      out.append("${").append(names[i]).append('}').append(literals[i + 1]);
+    }
+    return out.toString();
+  }
+
+  private static void appendValue(StringBuilder out, String name, Object value) {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof String) {
+      appendString(out, (String) value);
+    } else if (value instanceof Long
+        || value instanceof Integer
+        || value instanceof Short
+        || value instanceof Byte) {
+      out.append(((Number) value).longValue());
+    } else if (value instanceof Number || value instanceof Boolean || value instanceof JsonValue) {
+      out.append(value.toString());
+    } else {
+      throw new IllegalArgumentException(
+          "Unsupported value for ${" + name + "}: " + value.getClass().getName());
+    }
+  }
+
+  private static void appendString(StringBuilder out, String value) {
+    out.append('"');
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        case '\u2028':
+        case '\u2029':
+          appendUnicodeEscape(out, c);
+          break;
+        default:
+          if (c < 0x20) {
+            appendUnicodeEscape(out, c);
+          } else {
+            out.append(c);
+          }
+      }
+    }
+
+    out.append('"');
+  }
+
+  private static void appendUnicodeEscape(StringBuilder out, char c) {
+    out.append("\\u")
+        .append(HEX_DIGITS[(c >> 12) & 0xf])
+        .append(HEX_DIGITS[(c >> 8) & 0xf])
+        .append(HEX_DIGITS[(c >> 4) & 0xf])
+        .append(HEX_DIGITS[c & 0xf]);
+  }
+
+  /**
+   * Compile a template from its JSON source.
+   *
+   * @param template JSON with {@code ${name}} placeholders in place of values
+   * @return the compiled template
+   */
+  public static PayloadTemplate compile(String template) {
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+
+    Matcher m = PLACEHOLDER.matcher(template);
+    int start = 0;
+
+    while (m.find()) {
+      literals.add(template.substring(start, m.start()));
+      names.add(m.group(1));
+      start = m.end();
+    }
+
+    literals.add(template.substring(start));
+
+    return new PayloadTemplate(literals, names);
+  }
+}
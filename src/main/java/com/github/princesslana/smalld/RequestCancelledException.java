@@ -0,0 +1,27 @@
+package com.github.princesslana.smalld;
+
+/**
+ * Exception thrown when a REST request was cancelled with a {@link Cancellation}, or could not be
+ * completed before its deadline.
+ */
+public class RequestCancelledException extends SmallDException {
+
+  /**
+   * Constructs an instance with the given message.
+   *
+   * @param msg the detail message
+   */
+  public RequestCancelledException(String msg) {
+    super(msg);
+  }
+
+  /**
+   * Constructs an instance with the given message and cause.
+   *
+   * @param msg the detail message
+   * @param cause the cause
+   */
+  public RequestCancelledException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
+}
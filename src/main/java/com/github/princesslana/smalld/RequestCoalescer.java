@@ -0,0 +1,197 @@
+package com.github.princesslana.smalld;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Merges concurrent identical requests into a single request.
+ *
+ * <p>The first caller for a key executes the request. Any caller that arrives with the same key
+ * while that request is in flight waits for it and receives the same result, or the same exception
+ * if it fails. Once the request completes the next caller for that key will execute a new request.
+ *
+ * <p>A request with a deadline or {@link Cancellation} in its {@link RequestOptions} may fail
+ * because of them, which should not fail other callers. So such a request is never executed on
+ * behalf of other callers. It may still wait for an identical request that is already in flight, in
+ * which case it stops waiting when its own deadline passes or it is cancelled, without affecting
+ * the request it was waiting for.
+ */
+public class RequestCoalescer {
+
+  private final Clock clock;
+
+  private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder requests = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  /** Constructs an instance that uses the system clock to check deadlines. */
+  public RequestCoalescer() {
+    this(Clock.systemUTC());
+  }
+
+  /**
+   * Constructs an instance using the provided source of time to check deadlines.
+   *
+   * @param clock the clock to fetch the current time from
+   */
+  public RequestCoalescer(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Executes the request, or waits for an identical request that is already in flight.
+   *
+   * @param key identifies requests that are identical
+   * @param request executes the request
+   * @return the result of the request
+   */
+  public String execute(String key, Supplier<String> request) {
+    requests.increment();
+
+    CompletableFuture<String> result = new CompletableFuture<>();
+    CompletableFuture<String> existing = inFlight.putIfAbsent(key, result);
+
+    if (existing != null) {
+      coalesced.increment();
+      return await(existing);
+    }
+
+    try {
+      String body = request.get();
+      result.complete(body);
+      return body;
+    } catch (RuntimeException | Error e) {
+      result.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, result);
+    }
+  }
+
+  /**
+   * Executes the request, or waits for an identical request that is already in flight, subject to
+   * the deadline and cancellation of the given options.
+   *
+   * @param key identifies requests that are identical
+   * @param options the options of the request
+   * @param request executes the request
+   * @return the result of the request
+   * @throws RequestCancelledException if the request is cancelled or misses its deadline while
+   *     waiting for an identical request
+   */
+  public String execute(String key, RequestOptions options, Supplier<String> request) {
+    Optional<Instant> deadline = options.getDeadline();
+    Optional<Cancellation> cancellation = options.getCancellation();
+
+    if (!deadline.isPresent() && !cancellation.isPresent()) {
+      return execute(key, request);
+    }
+
+    requests.increment();
+
+    CompletableFuture<String> existing = inFlight.get(key);
+
+    if (existing == null) {
+      return request.get();
+    }
+
+    coalesced.increment();
+
+    if (options.isCancelled(clock.instant())) {
+      throw new RequestCancelledException("Request cancelled before it was sent");
+    }
+
+    // a dependent future, so that giving up on it leaves the shared request untouched
+    CompletableFuture<String> result = existing.thenApply(body -> body);
+
+    Runnable stopCancelling =
+        cancellation
+            .map(
+                c ->
+                    c.onCancel(
+                        () ->
+                            result.completeExceptionally(
+                                new RequestCancelledException("Request cancelled"))))
+            .orElse(() -> {});
+
+    try {
+      if (deadline.isPresent()) {
+        long millis = Duration.between(clock.instant(), deadline.get()).toMillis();
+        return result.get(Math.max(1, millis), TimeUnit.MILLISECONDS);
+      } else {
+        return result.get();
+      }
+    } catch (TimeoutException e) {
+      throw new RequestCancelledException("Request missed its deadline", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SmallDException(e);
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    } finally {
+      stopCancelling.run();
+    }
+  }
+
+  /**
+   * Returns the number of requests that have been made through this coalescer.
+   *
+   * @return the number of requests
+   */
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  /**
+   * Returns the number of requests that were served by an identical request already in flight.
+   *
+   * @return the number of coalesced requests
+   */
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  /**
+   * Returns the proportion of requests that were served by an identical request already in flight.
+   *
+   * @return the hit rate, between 0 and 1
+   */
+  public double getHitRate() {
+    long total = getRequestCount();
+    return total == 0 ? 0 : (double) getCoalescedCount() / total;
+  }
+
+  private static String await(CompletableFuture<String> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw unwrap(e.getCause());
+    }
+  }
+
+  private static RuntimeException unwrap(Throwable cause) {
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new SmallDException(cause);
+  }
+}
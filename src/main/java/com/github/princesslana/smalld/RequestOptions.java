@@ -0,0 +1,221 @@
+package com.github.princesslana.smalld;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Options that apply to a single REST request.
+ *
+ * <p>Options are attached to the OkHttp request as a tag, so that they are available to the
+ * interceptors that send it. A timeout is converted to a deadline when the request is sent, so the
+ * same options may be used for many requests.
+ */
+public class RequestOptions {
+
+  private static final RequestOptions DEFAULTS = builder().build();
+
+  private final boolean idempotent;
+  private final RequestPriority priority;
+  private final Duration timeout;
+  private final Instant deadline;
+  private final Cancellation cancellation;
+
+  private RequestOptions(Builder builder) {
+    idempotent = builder.idempotent;
+    priority = builder.priority;
+    timeout = builder.timeout;
+    deadline = builder.deadline;
+    cancellation = builder.cancellation;
+  }
+
+  /**
+   * Returns whether the request has been marked as safe to repeat. Requests that use {@code GET},
+   * {@code PUT}, or {@code DELETE} are always considered safe to repeat.
+   *
+   * @return true if the request is marked as idempotent
+   */
+  public boolean isIdempotent() {
+    return idempotent;
+  }
+
+  /**
+   * Returns the priority of the request.
+   *
+   * @return the priority of the request
+   */
+  public RequestPriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Returns the time, measured from when the request is sent, within which the request must
+   * complete.
+   *
+   * @return the timeout, or empty if there is none
+   */
+  public Optional<Duration> getTimeout() {
+    return Optional.ofNullable(timeout);
+  }
+
+  /**
+   * Returns the time by which the request must complete.
+   *
+   * @return the deadline, or empty if there is none
+   */
+  public Optional<Instant> getDeadline() {
+    return Optional.ofNullable(deadline);
+  }
+
+  /**
+   * Returns the handle with which the request can be cancelled.
+   *
+   * @return the cancellation handle, or empty if there is none
+   */
+  public Optional<Cancellation> getCancellation() {
+    return Optional.ofNullable(cancellation);
+  }
+
+  /**
+   * Returns whether the request has been cancelled or has missed its deadline.
+   *
+   * @param now the current time
+   * @return true if the request should no longer be sent
+   */
+  public boolean isCancelled(Instant now) {
+    return (cancellation != null && cancellation.isCancelled())
+        || (deadline != null && !now.isBefore(deadline));
+  }
+
+  /**
+   * Returns options with the timeout converted to a deadline relative to the given time. If there
+   * is both a deadline and a timeout the earlier of the two is used.
+   *
+   * @param now the time at which the request is sent
+   * @return options with a deadline and no timeout
+   */
+  RequestOptions resolveDeadline(Instant now) {
+    if (timeout == null) {
+      return this;
+    }
+
+    Instant fromTimeout = now.plus(timeout);
+
+    return toBuilder()
+        .setTimeout(null)
+        .setDeadline(deadline == null || fromTimeout.isBefore(deadline) ? fromTimeout : deadline)
+        .build();
+  }
+
+  private Builder toBuilder() {
+    return builder()
+        .setIdempotent(idempotent)
+        .setPriority(priority)
+        .setTimeout(timeout)
+        .setDeadline(deadline)
+        .setCancellation(cancellation);
+  }
+
+  /**
+   * Returns options with all values set to their defaults.
+   *
+   * @return the default options
+   */
+  public static RequestOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code RequestOptions}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** {@code Builder} of {@code RequestOptions} instances. */
+  public static class Builder {
+
+    private boolean idempotent = false;
+    private RequestPriority priority = RequestPriority.NORMAL;
+    private Duration timeout;
+    private Instant deadline;
+    private Cancellation cancellation;
+
+    private Builder() {}
+
+    /**
+     * Mark the request as safe to repeat, so that it may be retried by the configured {@link
+     * RetryPolicy}. This should only be set for a {@code POST} or {@code PATCH} request if sending
+     * it more than once has the same effect as sending it once. If not set this will default to
+     * false.
+     *
+     * @param idempotent true if the request is safe to repeat
+     * @return this
+     */
+    public Builder setIdempotent(boolean idempotent) {
+      this.idempotent = idempotent;
+      return this;
+    }
+
+    /**
+     * Set the priority of the request. If not set this will default to {@link
+     * RequestPriority#NORMAL}.
+     *
+     * @param priority the priority of the request
+     * @return this
+     */
+    public Builder setPriority(RequestPriority priority) {
+      this.priority = priority;
+      return this;
+    }
+
+    /**
+     * Set the time, measured from when the request is sent, within which the request must complete.
+     * This includes any time spent waiting for rate limits and retrying. A request that cannot be
+     * sent before its deadline is dropped rather than being sent late. If not set there is no
+     * timeout.
+     *
+     * @param timeout the timeout for the request
+     * @return this
+     */
+    public Builder setTimeout(Duration timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+     * Set the time by which the request must complete. This behaves as {@link
+     * #setTimeout(Duration)}, but with an absolute time. If not set there is no deadline.
+     *
+     * @param deadline the deadline for the request
+     * @return this
+     */
+    public Builder setDeadline(Instant deadline) {
+      this.deadline = deadline;
+      return this;
+    }
+
+    /**
+     * Set a handle with which the request can be cancelled. If not set the request can not be
+     * cancelled.
+     *
+     * @param cancellation the cancellation handle
+     * @return this
+     */
+    public Builder setCancellation(Cancellation cancellation) {
+      this.cancellation = cancellation;
+      return this;
+    }
+
+    /**
+     * Build the {@code RequestOptions} instance.
+     *
+     * @return the built RequestOptions instance
+     */
+    public RequestOptions build() {
+      return new RequestOptions(this);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.github.princesslana.smalld;
+
+/**
+ * The priority of a REST request. When requests are waiting for the same rate limit, higher
+ * priority requests are sent first.
+ *
+ * <p>Requests only wait for rate limits if {@link Config.Builder#setRateLimitMaxWait} has been
+ * configured. Otherwise a request that is rate limited fails immediately, whatever its priority.
+ */
+public enum RequestPriority {
+  /** A request for a user-visible action, such as a reply to a command. */
+  INTERACTIVE,
+
+  /** The priority of requests that have not been given a priority. */
+  NORMAL,
+
+  /** A request for bulk or maintenance work that is not waited on by a user. */
+  BACKGROUND;
+}
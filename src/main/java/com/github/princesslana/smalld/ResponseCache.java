@@ -0,0 +1,502 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A cache of responses to GET requests, keyed by path and query string.
+ *
+ * <p>The cache holds at most a configured number of entries, evicting the least recently used entry
+ * when full. Each entry expires after a time to live that may be configured per route. Nothing is
+ * cached unless a time to live has been set for its route, or a default time to live has been set.
+ *
+ * <p>Entries are invalidated when {@link HttpClient} sends a mutating request to the same path, or
+ * to a path beneath it. When used as a {@code Consumer<SmallD>} entries are also invalidated when
+ * an {@code _UPDATE} or {@code _DELETE} event for a resource that may be cached is received from
+ * the gateway. Message updates and deletes also invalidate the message list of their channel, but
+ * new messages do not, so a cached message list may not include messages created within its time to
+ * live. Paths are compared with a single leading {@code /} and no trailing {@code /}, so {@code
+ * guilds/1} and {@code /guilds/1/} refer to the same entry.
+ *
+ * <p>A response to a request that was sent before an invalidation of its path may be stale, so it
+ * is not cached. Requests note the {@link #getGeneration() generation} of the cache before they are
+ * sent and pass it to {@link #put(String, String, String, Instant, long)}. The most recent
+ * invalidations are remembered to check against, and if a request has been outlived by more of them
+ * its response is not cached.
+ */
+public class ResponseCache implements Consumer<SmallD> {
+
+  private static final Set<String> INVALIDATING_EVENTS =
+      new HashSet<>(
+          Arrays.asList(
+              "GUILD_UPDATE",
+              "GUILD_DELETE",
+              "GUILD_ROLE_UPDATE",
+              "GUILD_ROLE_DELETE",
+              "GUILD_EMOJIS_UPDATE",
+              "GUILD_MEMBER_UPDATE",
+              "CHANNEL_UPDATE",
+              "CHANNEL_DELETE",
+              "MESSAGE_UPDATE",
+              "MESSAGE_DELETE",
+              "MESSAGE_DELETE_BULK",
+              "WEBHOOKS_UPDATE",
+              "APPLICATION_COMMAND_UPDATE",
+              "APPLICATION_COMMAND_DELETE",
+              "USER_UPDATE"));
+
+  private static final int INVALIDATION_LOG_SIZE = 256;
+
+  private final Duration defaultTtl;
+
+  private final List<Route> routes;
+
+  private final Map<String, CachedResponse> entries;
+
+  private long hits = 0;
+
+  private long misses = 0;
+
+  private long evictions = 0;
+
+  private long generation = 0;
+
+  private final Invalidation[] invalidations = new Invalidation[INVALIDATION_LOG_SIZE];
+
+  private ResponseCache(Builder builder) {
+    this.defaultTtl = builder.defaultTtl;
+    this.routes = new ArrayList<>(builder.routes);
+
+    int maximumSize = builder.maximumSize;
+
+    this.entries =
+        new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            boolean evict = size() > maximumSize;
+            if (evict) {
+              evictions++;
+            }
+            return evict;
+          }
+        };
+  }
+
+  @Override
+  public void accept(SmallD smalld) {
+    smalld.onGatewayPayload(
+        s -> {
+          String t = GatewayPayload.peek(s, "t");
+
+          if (t != null && INVALIDATING_EVENTS.contains(t)) {
+            onUpdate(t, GatewayPayload.parse(s).getD());
+          }
+        });
+  }
+
+  /**
+   * Returns the cached response for a path and query string, if present and not expired.
+   *
+   * @param path the path of the request
+   * @param query the encoded query string of the request, or null if there is none
+   * @param now the current time
+   * @return the cached response body, or empty if there is none
+   */
+  public synchronized Optional<String> get(String path, String query, Instant now) {
+    String key = toKey(normalize(path), query);
+    CachedResponse entry = entries.get(key);
+
+    if (entry != null && now.isBefore(entry.expiry)) {
+      hits++;
+      return Optional.of(entry.body);
+    }
+
+    if (entry != null) {
+      entries.remove(key);
+    }
+
+    misses++;
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the current generation of the cache, which is advanced by every invalidation. This
+   * should be noted before a request is sent and passed to {@link #put(String, String, String,
+   * Instant, long)} with its response.
+   *
+   * @return the current generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Caches a response for a path and query string.
+   *
+   * @param path the path of the request
+   * @param query the encoded query string of the request, or null if there is none
+   * @param body the response body
+   * @param now the current time
+   */
+  public synchronized void put(String path, String query, String body, Instant now) {
+    put(path, query, body, now, generation);
+  }
+
+  /**
+   * Caches a response for a path and query string, unless the path has been invalidated since the
+   * request was sent.
+   *
+   * @param path the path of the request
+   * @param query the encoded query string of the request, or null if there is none
+   * @param body the response body
+   * @param now the current time
+   * @param sentAt the {@link #getGeneration() generation} of the cache when the request was sent
+   */
+  public synchronized void put(String path, String query, String body, Instant now, long sentAt) {
+    String normalized = normalize(path);
+    Duration ttl = getTtl(normalized);
+
+    if (!ttl.isZero() && !ttl.isNegative() && !isInvalidatedSince(normalized, sentAt)) {
+      entries.put(toKey(normalized, query), new CachedResponse(normalized, body, now.plus(ttl)));
+    }
+  }
+
+  /**
+   * Removes all cached responses for a path, or any path beneath it.
+   *
+   * @param path the path to invalidate
+   */
+  public synchronized void invalidate(String path) {
+    String normalized = normalize(path);
+
+    log(new Invalidation(normalized, true));
+    removeIf(e -> isBeneath(e.path, normalized));
+  }
+
+  /**
+   * Removes cached responses after a mutating request to a path. This will remove responses for the
+   * path, any path beneath it, and the collection the path belongs to.
+   *
+   * @param path the path that a mutating request was sent to
+   */
+  public synchronized void invalidateAfterMutation(String path) {
+    String normalized = normalize(path);
+    String parent = normalized.substring(0, Math.max(0, normalized.lastIndexOf('/')));
+
+    log(new Invalidation(normalized, true));
+    log(new Invalidation(parent, false));
+    removeIf(e -> isBeneath(e.path, normalized) || e.path.equals(parent));
+  }
+
+  private synchronized void invalidateExactly(String path) {
+    String normalized = normalize(path);
+
+    log(new Invalidation(normalized, false));
+    removeIf(e -> e.path.equals(normalized));
+  }
+
+  /**
+   * Returns the number of requests that were served from the cache.
+   *
+   * @return the number of cache hits
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of requests that could not be served from the cache.
+   *
+   * @return the number of cache misses
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of entries that were evicted to keep the cache within its maximum size.
+   *
+   * @return the number of evictions
+   */
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of entries currently cached.
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private void log(Invalidation invalidation) {
+    invalidations[(int) (generation++ % INVALIDATION_LOG_SIZE)] = invalidation;
+  }
+
+  private boolean isInvalidatedSince(String path, long sentAt) {
+    if (generation - sentAt > INVALIDATION_LOG_SIZE) {
+      // outlived the log, so we can not tell which paths were invalidated
+      return true;
+    }
+
+    for (long g = sentAt; g < generation; g++) {
+      if (invalidations[(int) (g % INVALIDATION_LOG_SIZE)].covers(path)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean isBeneath(String path, String ancestor) {
+    return path.startsWith(ancestor)
+        && (path.length() == ancestor.length() || path.charAt(ancestor.length()) == '/');
+  }
+
+  private void removeIf(Predicate<CachedResponse> predicate) {
+    Iterator<CachedResponse> it = entries.values().iterator();
+
+    while (it.hasNext()) {
+      if (predicate.test(it.next())) {
+        it.remove();
+      }
+    }
+  }
+
+  private Duration getTtl(String path) {
+    return routes
+        .stream()
+        .filter(r -> r.pattern.matcher(path).matches())
+        .map(r -> r.ttl)
+        .findFirst()
+        .orElse(defaultTtl);
+  }
+
+  private void onUpdate(String t, JsonObject d) {
+    String id = getString(d, "id");
+    String guildId = getString(d, "guild_id");
+    String channelId = getString(d, "channel_id");
+
+    switch (t) {
+      case "GUILD_UPDATE":
+      case "GUILD_DELETE":
+        invalidateAll("/guilds/" + id);
+        break;
+
+      case "GUILD_ROLE_UPDATE":
+      case "GUILD_ROLE_DELETE":
+        invalidateAll("/guilds/" + guildId + "/roles");
+        break;
+
+      case "GUILD_EMOJIS_UPDATE":
+        invalidateAll("/guilds/" + guildId + "/emojis");
+        break;
+
+      case "GUILD_MEMBER_UPDATE":
+        JsonValue user = d.get("user");
+        String userId = user != null && user.isObject() ? getString(user.asObject(), "id") : null;
+        invalidateAll("/guilds/" + guildId + "/members/" + userId);
+        break;
+
+      case "CHANNEL_UPDATE":
+      case "CHANNEL_DELETE":
+        invalidateAll("/channels/" + id, "/guilds/" + guildId + "/channels");
+        break;
+
+      case "MESSAGE_UPDATE":
+      case "MESSAGE_DELETE":
+        invalidateAll("/channels/" + channelId + "/messages/" + id);
+        invalidateMessageList(channelId);
+        break;
+
+      case "MESSAGE_DELETE_BULK":
+        JsonValue ids = d.get("ids");
+        if (ids != null && ids.isArray()) {
+          ids.asArray()
+              .forEach(
+                  v -> {
+                    if (v.isString()) {
+                      invalidateAll("/channels/" + channelId + "/messages/" + v.asString());
+                    }
+                  });
+        }
+        invalidateMessageList(channelId);
+        break;
+
+      case "WEBHOOKS_UPDATE":
+        invalidateAll("/channels/" + channelId + "/webhooks");
+        break;
+
+      case "APPLICATION_COMMAND_UPDATE":
+      case "APPLICATION_COMMAND_DELETE":
+        String applicationId = getString(d, "application_id");
+        invalidateAll(
+            "/applications/" + applicationId + "/commands",
+            "/applications/" + applicationId + "/guilds/" + guildId + "/commands");
+        break;
+
+      case "USER_UPDATE":
+        invalidateAll("/users/@me");
+        break;
+
+      default:
+        // no cacheable resource for this event
+    }
+  }
+
+  private void invalidateMessageList(String channelId) {
+    if (channelId != null) {
+      invalidateExactly("/channels/" + channelId + "/messages");
+    }
+  }
+
+  private void invalidateAll(String... paths) {
+    Stream.of(paths).filter(p -> !p.contains("/null")).forEach(this::invalidate);
+  }
+
+  private static String getString(JsonObject json, String name) {
+    JsonValue value = json.get(name);
+    return value != null && value.isString() ? value.asString() : null;
+  }
+
+  private static String normalize(String path) {
+    int end = path.length();
+    while (end > 0 && path.charAt(end - 1) == '/') {
+      end--;
+    }
+
+    int start = 0;
+    while (start < end && path.charAt(start) == '/') {
+      start++;
+    }
+
+    return "/" + path.substring(start, end);
+  }
+
+  private static String toKey(String path, String query) {
+    return query == null ? path : path + "?" + query;
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code ResponseCache}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** A cached response and the time at which it expires. */
+  private static class CachedResponse {
+    private final String path;
+    private final String body;
+    private final Instant expiry;
+
+    CachedResponse(String path, String body, Instant expiry) {
+      this.path = path;
+      this.body = body;
+      this.expiry = expiry;
+    }
+  }
+
+  /** A path that was invalidated, and whether the paths beneath it were also invalidated. */
+  private static class Invalidation {
+    private final String path;
+    private final boolean andBeneath;
+
+    Invalidation(String path, boolean andBeneath) {
+      this.path = path;
+      this.andBeneath = andBeneath;
+    }
+
+    boolean covers(String other) {
+      return andBeneath ? isBeneath(other, path) : other.equals(path);
+    }
+  }
+
+  /** A time to live for paths that match a pattern. */
+  private static class Route {
+    private final Pattern pattern;
+    private final Duration ttl;
+
+    Route(Pattern pattern, Duration ttl) {
+      this.pattern = pattern;
+      this.ttl = ttl;
+    }
+  }
+
+  /** {@code Builder} of {@code ResponseCache} instances. */
+  public static class Builder {
+
+    private int maximumSize = 1000;
+    private Duration defaultTtl = Duration.ZERO;
+    private final List<Route> routes = new ArrayList<>();
+
+    private Builder() {}
+
+    /**
+     * Set the maximum number of responses to cache. If not set this will default to 1000.
+     *
+     * @param maximumSize the maximum number of responses to cache
+     * @return this
+     */
+    public Builder setMaximumSize(int maximumSize) {
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Set the time to live for responses on routes without a specific time to live. If not set this
+     * will default to zero, so that only routes with a time to live set with {@link #setTtl(String,
+     * Duration)} are cached. A time to live of zero will disable caching for those routes.
+     *
+     * @param ttl the default time to live
+     * @return this
+     */
+    public Builder setDefaultTtl(Duration ttl) {
+      this.defaultTtl = ttl;
+      return this;
+    }
+
+    /**
+     * Set the time to live for responses on paths that match a regular expression. Paths are
+     * matched with a leading {@code /}, such as {@code /guilds/\d+/roles}. Where more than one
+     * expression matches a path the time to live that was set first is used. A time to live of zero
+     * will disable caching for matching paths.
+     *
+     * @param pathRegex regular expression for the paths
+     * @param ttl the time to live
+     * @return this
+     */
+    public Builder setTtl(String pathRegex, Duration ttl) {
+      routes.add(new Route(Pattern.compile(pathRegex), ttl));
+      return this;
+    }
+
+    /**
+     * Build the {@code ResponseCache} instance.
+     *
+     * @return the built ResponseCache instance
+     */
+    public ResponseCache build() {
+      return new ResponseCache(this);
+    }
+  }
+}
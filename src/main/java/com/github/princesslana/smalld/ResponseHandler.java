@@ -0,0 +1,26 @@
+package com.github.princesslana.smalld;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Consumes the body of a HTTP response as it is received, rather than after it has been read into a
+ * {@code String}.
+ *
+ * <p>The {@link Reader} is only valid for the duration of the call to {@link #handle(Reader)} and
+ * will be closed once it returns.
+ *
+ * @param <T> the type of the result produced from the response body
+ */
+@FunctionalInterface
+public interface ResponseHandler<T> {
+
+  /**
+   * Handle the body of a successful HTTP response.
+   *
+   * @param body a reader over the response body
+   * @return the result of handling the response body
+   * @throws IOException if there is an error reading the response body
+   */
+  T handle(Reader body) throws IOException;
+}
@@ -0,0 +1,162 @@
+package com.github.princesslana.smalld;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OkHttp {@link Interceptor} that retries requests according to a {@link RetryPolicy}.
+ *
+ * <p>This should be added before any rate limiting interceptor, so that every attempt is subject to
+ * the rate limits. A request that is refused because of a rate limit is not retried. A request is
+ * not retried if it has been cancelled, or if it would miss its deadline while backing off.
+ */
+class RetryInterceptor implements Interceptor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RetryInterceptor.class);
+
+  private final RetryPolicy policy;
+
+  private final Clock clock;
+
+  private final int timeoutMillis;
+
+  private double budget;
+
+  /**
+   * Constructs an instance that retries requests according to the given policy.
+   *
+   * @param policy the policy to retry requests with
+   * @param clock the clock to fetch the current time from
+   */
+  RetryInterceptor(RetryPolicy policy, Clock clock) {
+    this.policy = policy;
+    this.clock = clock;
+    this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, policy.getAttemptTimeout().toMillis());
+    this.budget = policy.getMaxRetries();
+  }
+
+  @Override
+  public Response intercept(Interceptor.Chain chain) throws IOException {
+    Request request = chain.request();
+    boolean retryable = isRetryable(request);
+
+    deposit();
+
+    Chain attemptChain =
+        timeoutMillis > 0
+            ? chain
+                .withConnectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .withReadTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .withWriteTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            : chain;
+
+    for (int attempt = 1; ; attempt++) {
+      boolean canRetry = retryable && attempt < policy.getMaxAttempts();
+
+      Response response;
+      try {
+        response = attemptChain.proceed(request);
+      } catch (IOException e) {
+        long delay = getBackoff(attempt);
+
+        if (!canRetry || chain.call().isCanceled() || !canRetryAfter(request, delay)) {
+          throw e;
+        }
+        LOG.debug(
+            "Retrying {} {} after attempt {} failed", request.method(), request.url(), attempt, e);
+        sleep(delay);
+        continue;
+      }
+
+      long delay = getBackoff(attempt);
+
+      if (!canRetry || !isRetryable(response) || !canRetryAfter(request, delay)) {
+        return response;
+      }
+
+      LOG.debug(
+          "Retrying {} {} after attempt {} had response {}",
+          request.method(),
+          request.url(),
+          attempt,
+          response.code());
+      response.close();
+      sleep(delay);
+    }
+  }
+
+  private boolean canRetryAfter(Request request, long delayMillis) {
+    RequestOptions options = request.tag(RequestOptions.class);
+
+    if (options != null
+        && options.isCancelled(clock.instant().plus(Duration.ofMillis(delayMillis)))) {
+      return false;
+    }
+
+    return withdraw();
+  }
+
+  private synchronized void deposit() {
+    budget = Math.min(policy.getMaxRetries(), budget + policy.getBudgetRatio());
+  }
+
+  private synchronized boolean withdraw() {
+    if (budget < 1) {
+      return false;
+    }
+    budget -= 1;
+    return true;
+  }
+
+  private long getBackoff(int attempt) {
+    long ceiling =
+        Math.min(
+            policy.getMaxDelay().toMillis(),
+            policy.getBaseDelay().toMillis() << Math.min(attempt - 1, 30));
+
+    return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+  }
+
+  private void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private static boolean isRetryable(Request request) {
+    switch (request.method()) {
+      case "GET":
+      case "HEAD":
+      case "PUT":
+      case "DELETE":
+        return true;
+      default:
+        RequestOptions options = request.tag(RequestOptions.class);
+        return options != null && options.isIdempotent();
+    }
+  }
+
+  private static boolean isRetryable(Response response) {
+    switch (response.code()) {
+      case 500:
+      case 502:
+      case 503:
+      case 504:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.github.princesslana.smalld;
+
+import java.time.Duration;
+
+/**
+ * Policy for retrying REST requests that fail with a transient error.
+ *
+ * <p>A request is retried if it fails with an {@link java.io.IOException}, such as a connection
+ * failure or timeout, or with a HTTP 500, 502, 503, or 504 response. Only requests that are safe to
+ * repeat are retried. These are {@code GET}, {@code PUT}, and {@code DELETE} requests, and any
+ * request marked as idempotent with {@link RequestOptions}.
+ *
+ * <p>Retries are delayed by an exponential backoff with full jitter. So that retries do not add too
+ * much load when Discord is having problems, retries are limited to a proportion of all requests
+ * made by a retry budget, which allows short bursts of retries up to a maximum.
+ */
+public class RetryPolicy {
+
+  private final int maxAttempts;
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+  private final double budgetRatio;
+  private final int maxRetries;
+  private final Duration attemptTimeout;
+
+  private RetryPolicy(Builder builder) {
+    maxAttempts = builder.maxAttempts;
+    baseDelay = builder.baseDelay;
+    maxDelay = builder.maxDelay;
+    budgetRatio = builder.budgetRatio;
+    maxRetries = builder.maxRetries;
+    attemptTimeout = builder.attemptTimeout;
+  }
+
+  /**
+   * Returns the maximum number of attempts, including the first, to make for a request.
+   *
+   * @return the maximum number of attempts
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Returns the delay from which the backoff before a retry is calculated.
+   *
+   * @return the base delay
+   */
+  public Duration getBaseDelay() {
+    return baseDelay;
+  }
+
+  /**
+   * Returns the maximum backoff before a retry.
+   *
+   * @return the maximum delay
+   */
+  public Duration getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Returns the number of retries allowed per request made.
+   *
+   * @return the ratio of retries to requests
+   */
+  public double getBudgetRatio() {
+    return budgetRatio;
+  }
+
+  /**
+   * Returns the most retries the budget can hold, and so the most retries that can be made in a
+   * burst.
+   *
+   * @return the maximum number of retries in the budget
+   */
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Returns the connect, read, and write timeout for each attempt, or zero if the client's defaults
+   * are used.
+   *
+   * @return the timeout for each attempt
+   */
+  public Duration getAttemptTimeout() {
+    return attemptTimeout;
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code RetryPolicy}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** {@code Builder} of {@code RetryPolicy} instances. */
+  public static class Builder {
+
+    private int maxAttempts = 3;
+    private Duration baseDelay = Duration.ofMillis(100);
+    private Duration maxDelay = Duration.ofSeconds(2);
+    private double budgetRatio = 0.1;
+    private int maxRetries = 10;
+    private Duration attemptTimeout = Duration.ZERO;
+
+    private Builder() {}
+
+    /**
+     * Set the maximum number of attempts, including the first, to make for a request. If not set
+     * this will default to 3.
+     *
+     * @param maxAttempts the maximum number of attempts
+     * @return this
+     */
+    public Builder setMaxAttempts(int maxAttempts) {
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Set the backoff before retries. The backoff before the nth retry is a random duration between
+     * zero and {@code baseDelay * 2^(n-1)}, capped at {@code maxDelay}. If not set this will
+     * default to a base delay of 100ms and a maximum delay of 2 seconds.
+     *
+     * @param baseDelay the delay from which the backoff is calculated
+     * @param maxDelay the maximum backoff
+     * @return this
+     */
+    public Builder setBackoff(Duration baseDelay, Duration maxDelay) {
+      this.baseDelay = baseDelay;
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    /**
+     * Set the retry budget. The budget starts full, holding {@code maxRetries}. Each request made
+     * adds {@code ratio} to the budget, but never beyond {@code maxRetries}, and each retry uses
+     * one. A request is not retried when the budget holds less than one retry. So {@code ratio}
+     * limits the sustained proportion of retries to requests, and {@code maxRetries} limits how
+     * many retries can be made in a burst. If not set this will default to a ratio of 0.1 and 10
+     * maximum retries.
+     *
+     * @param ratio the number of retries allowed per request
+     * @param maxRetries the most retries the budget can hold
+     * @return this
+     */
+    public Builder setBudget(double ratio, int maxRetries) {
+      this.budgetRatio = ratio;
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Set the connect, read, and write timeout for each attempt, so that an attempt that stalls can
+     * be retried. If not set, or set to zero, the client's default timeouts are used.
+     *
+     * @param attemptTimeout the timeout for each attempt
+     * @return this
+     */
+    public Builder setAttemptTimeout(Duration attemptTimeout) {
+      this.attemptTimeout = attemptTimeout;
+      return this;
+    }
+
+    /**
+     * Build the {@code RetryPolicy} instance.
+     *
+     * @return the built RetryPolicy instance
+     */
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -2,6 +2,14 @@ package com.github.princesslana.smalld;
 
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.ParseException;
+import com.github.princesslana.smalld.jfr.JfrEvents;
+import com.github.princesslana.smalld.metrics.BucketedHistogram;
+import com.github.princesslana.smalld.metrics.Counter;
+import com.github.princesslana.smalld.metrics.Histogram;
+import com.github.princesslana.smalld.metrics.Metrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -9,11 +17,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import okhttp3.MediaType;
@@ -23,6 +33,8 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
+import okio.BufferedSink;
+import okio.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,11 +71,28 @@ public class SmallD implements AutoCloseable {
 
   private final HttpClient http;
 
-  private final List<Consumer<String>> gatewayPayloadListeners = new ArrayList<>();
+  private final List<ListenerMonitor.Listener<String>> gatewayPayloadListeners = new ArrayList<>();
+
+  private final List<ListenerMonitor.Listener<ByteString>> gatewayPayloadBytesListeners =
+      new ArrayList<>();
 
   private final ExecutorService onGatewayPayloadExecutor =
       Executors.newSingleThreadExecutor(DAEMON_THREAD_FACTORY);
 
+  private final AtomicInteger pendingPayloads = new AtomicInteger();
+
+  private final Metrics metrics;
+
+  private final Histogram listenerLatency;
+
+  private final Map<String, Counter> eventCounters = new ConcurrentHashMap<>();
+
+  private final ListenerMonitor listenerMonitor;
+
+  private final PayloadLogger payloadLogger;
+
+  private final GatewayJournal journal;
+
   private CountDownLatch closeGate;
 
   private WebSocket gatewayWebSocket;
@@ -96,6 +125,17 @@ public class SmallD implements AutoCloseable {
   public SmallD(Config config, HttpClient http) {
     this.config = config;
     this.http = http;
+
+    String shard = String.valueOf(config.getCurrentShard());
+
+    this.metrics = config.getMetrics();
+    this.listenerLatency = metrics.histogram("smalld.gateway.listener.latency", "shard", shard);
+
+    metrics.gauge("smalld.gateway.dispatch.queue", pendingPayloads::get, "shard", shard);
+
+    this.listenerMonitor = new ListenerMonitor(config);
+    this.payloadLogger = config.getPayloadLogger().orElse(null);
+    this.journal = config.getGatewayJournal().orElse(null);
   }
 
   /**
@@ -134,7 +174,18 @@ public class SmallD implements AutoCloseable {
     return config.getIntents();
   }
 
+  /**
+   * Return the {@link Metrics} that are recorded with.
+   *
+   * @return the metrics in use
+   */
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
   private void connect() {
+    http.warmUp();
+
     String gatewayUrl = getGatewayUrl();
 
     Request request = new Request.Builder().url(gatewayUrl).build();
@@ -143,7 +194,33 @@ public class SmallD implements AutoCloseable {
         new WebSocketListener() {
           @Override
           public void onMessage(WebSocket ws, String text) {
-            onGatewayPayloadExecutor.execute(() -> notifyListeners(text));
+            if (JfrEvents.isGatewayFrameEnabled()) {
+              recordFrame(text);
+            }
+
+            if (payloadLogger != null) {
+              payloadLogger.received(getCurrentShard(), text);
+            }
+
+            if (journal != null) {
+              journal.record(getCurrentShard(), text);
+            }
+
+            receive(text);
+          }
+
+          @Override
+          public void onMessage(WebSocket ws, ByteString bytes) {
+            if (JfrEvents.isGatewayFrameEnabled()) {
+              JfrEvents.gatewayFrame(-1, null, bytes.size());
+            }
+
+            pendingPayloads.incrementAndGet();
+            onGatewayPayloadExecutor.execute(
+                () -> {
+                  pendingPayloads.decrementAndGet();
+                  notifyBytesListeners(bytes);
+                });
           }
 
           @Override
@@ -197,12 +274,14 @@ public class SmallD implements AutoCloseable {
   /** Close the connection, clean up resources, and stop running. */
   public void close() {
     running = false;
+    listenerMonitor.stop();
     reconnect();
   }
 
   /** Run until closed. */
   public void run() {
     running = true;
+    listenerMonitor.start();
     while (running) {
       try {
         connect();
@@ -230,27 +309,171 @@ public class SmallD implements AutoCloseable {
    * @param consumer the listener to be called when a payload is received.
    */
   public void onGatewayPayload(Consumer<String> consumer) {
-    gatewayPayloadListeners.add(consumer);
+    onGatewayPayload(nameOf(consumer), consumer);
+  }
+
+  /**
+   * Add a named listener for payloads received from the Discord gateway. The name identifies the
+   * listener in its timings and in warnings about slow listeners. Listeners added without a name
+   * are named after their class.
+   *
+   * @param name the name of the listener
+   * @param consumer the listener to be called when a payload is received.
+   * @see #onGatewayPayload(Consumer)
+   */
+  public void onGatewayPayload(String name, Consumer<String> consumer) {
+    gatewayPayloadListeners.add(listenerMonitor.listener(name, consumer));
+  }
+
+  /**
+   * Add a listener for payloads received from the Discord gateway as bytes.
+   *
+   * <p>Payloads received in binary frames are passed to the listener as received, and are not
+   * passed to listeners added with {@link #onGatewayPayload(Consumer)}. Payloads received in text
+   * frames have already been decoded by the time they are received, so they are encoded as UTF-8
+   * before being passed to the listener. Listeners are executed on the same thread as those added
+   * with {@link #onGatewayPayload(Consumer)}.
+   *
+   * @param consumer the listener to be called when a payload is received.
+   */
+  public void onGatewayPayloadBytes(Consumer<ByteString> consumer) {
+    gatewayPayloadBytesListeners.add(listenerMonitor.listener(nameOf(consumer), consumer));
+  }
+
+  /**
+   * Return the latencies of sampled listener invocations, by listener name. Latencies are in
+   * nanoseconds. Listeners that share a name share a histogram.
+   *
+   * @return the latencies of listeners
+   * @see Config.Builder#setListenerTimingSampleRate(int)
+   */
+  public Map<String, BucketedHistogram> getListenerLatencies() {
+    return listenerMonitor.getLatencies();
+  }
+
+  private static String nameOf(Consumer<?> consumer) {
+    String name = consumer.getClass().getName();
+    int lambda = name.indexOf("$$Lambda");
+    return lambda < 0 ? name : name.substring(0, lambda);
+  }
+
+  // visible for GatewayReplayer, which hands payloads to the dispatch thread as they are received
+  void receive(String text) {
+    pendingPayloads.incrementAndGet();
+    onGatewayPayloadExecutor.execute(
+        () -> {
+          pendingPayloads.decrementAndGet();
+          notifyListeners(text);
+        });
+  }
+
+  int getPendingPayloadCount() {
+    return pendingPayloads.get();
+  }
+
+  // visible for benchmarks
+  void notifyListeners(String text) {
+    if (metrics.isEnabled()) {
+      countEvent(text);
+    }
+
+    long start = System.nanoTime();
+    try {
+      listenerMonitor.notify(gatewayPayloadListeners, text);
+
+      if (!gatewayPayloadBytesListeners.isEmpty()) {
+        listenerMonitor.notify(gatewayPayloadBytesListeners, ByteString.encodeUtf8(text));
+      }
+    } catch (Exception e) {
+      LOG.warn("Exception thrown when notifying listeners of gateway payload", e);
+    } finally {
+      listenerLatency.record(System.nanoTime() - start);
+    }
   }
 
-  private void notifyListeners(String text) {
+  private void notifyBytesListeners(ByteString bytes) {
+    long start = System.nanoTime();
     try {
-      gatewayPayloadListeners.forEach(l -> l.accept(text));
+      listenerMonitor.notify(gatewayPayloadBytesListeners, bytes);
     } catch (Exception e) {
       LOG.warn("Exception thrown when notifying listeners of gateway payload", e);
+    } finally {
+      listenerLatency.record(System.nanoTime() - start);
+    }
+  }
+
+  private static void recordFrame(String text) {
+    String op = GatewayPayload.peek(text, "op");
+
+    try {
+      JfrEvents.gatewayFrame(
+          op == null ? -1 : Integer.parseInt(op), GatewayPayload.peek(text, "t"), text.length());
+    } catch (NumberFormatException e) {
+      JfrEvents.gatewayFrame(-1, null, text.length());
     }
   }
 
+  private void countEvent(String text) {
+    String t = GatewayPayload.peek(text, "t");
+    String type = t == null ? "OP_" + GatewayPayload.peek(text, "op") : t;
+
+    eventCounters
+        .computeIfAbsent(
+            type,
+            k ->
+                metrics.counter(
+                    "smalld.gateway.events", "shard", String.valueOf(getCurrentShard()), "type", k))
+        .increment();
+  }
+
   /**
    * Send a payload to the Discord gateway.
    *
    * @param text the payload to send
    */
   public void sendGatewayPayload(String text) {
-    LOG.debug("Gateway Send: {}", text);
+    LOG.trace("Gateway Send: {}", text);
+
+    if (payloadLogger != null) {
+      payloadLogger.sent(getCurrentShard(), text);
+    }
+
     gatewayWebSocket.send(text);
   }
 
+  /**
+   * Send a UTF-8 encoded payload to the Discord gateway.
+   *
+   * <p>The gateway expects JSON payloads in text frames, and OkHttp only sends text frames from a
+   * {@code String}, so the payload is decoded before it is sent.
+   *
+   * @param payload the payload to send
+   */
+  public void sendGatewayPayload(ByteString payload) {
+    sendGatewayPayload(payload.utf8());
+  }
+
+  /**
+   * Send a UTF-8 encoded payload to the Discord gateway.
+   *
+   * @param payload the payload to send
+   * @see #sendGatewayPayload(ByteString)
+   */
+  public void sendGatewayPayload(byte[] payload) {
+    sendGatewayPayload(new String(payload, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Send a UTF-8 encoded payload to the Discord gateway. The payload is read from the buffer's
+   * position to its limit, without changing its position.
+   *
+   * @param payload the payload to send
+   * @see #sendGatewayPayload(ByteString)
+   */
+  public void sendGatewayPayload(ByteBuffer payload) {
+    sendGatewayPayload(StandardCharsets.UTF_8.decode(payload.duplicate()).toString());
+  }
+
   /**
    * Make a HTTP GET request to a Discord REST endpoint.
    *
@@ -290,9 +513,84 @@ public class SmallD implements AutoCloseable {
    * @throws HttpException for any non 2xx/4xx/5xx ressponse
    */
   public String get(String path, Map<String, Object> parameters) {
+    return get(path, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP GET request to a Discord REST endpoint, with options for this request.
+   *
+   * <p>The path provided should start with {@code /} and will be appended to the base URL that has
+   * been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param parameters the query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String get(String path, Map<String, Object> parameters, RequestOptions options) {
     LOG.debug("HTTP GET {}, {}", path, parameters);
 
-    return http.send(path, Request.Builder::get, parameters);
+    return http.send(path, b -> withOptions(b.get(), options), parameters);
+  }
+
+  /**
+   * Make a HTTP GET request to a Discord REST endpoint, passing the response body to the handler as
+   * it is received.
+   *
+   * <p>This is useful for large responses, as the body is not read into a {@code String} first. The
+   * path provided should start with {@code /} and will be appended to the base URL that has been
+   * configured.
+   *
+   * @param <T> the type of result produced by the handler
+   * @param path the path to make the request to
+   * @param handler the handler that will consume the response body
+   * @return the result of the handler
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public <T> T get(String path, ResponseHandler<T> handler) {
+    return get(path, Collections.emptyMap(), handler);
+  }
+
+  /**
+   * Make a HTTP GET request to a Discord REST endpoint, passing the response body to the handler as
+   * it is received.
+   *
+   * <p>This is useful for large responses, as the body is not read into a {@code String} first. The
+   * path provided should start with {@code /} and will be appended to the base URL that has been
+   * configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param <T> the type of result produced by the handler
+   * @param path the path to make the request to
+   * @param parameters the query string parameters
+   * @param handler the handler that will consume the response body
+   * @return the result of the handler
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public <T> T get(String path, Map<String, Object> parameters, ResponseHandler<T> handler) {
+    LOG.debug("HTTP GET {}, {} (streamed)", path, parameters);
+
+    return http.send(path, Request.Builder::get, parameters, handler);
   }
 
   /**
@@ -301,7 +599,8 @@ public class SmallD implements AutoCloseable {
    *
    * <p>If no attachments are provided the request will be send with a content type of
    * application/json. If attachments are present the content type will be multipart/form-data and
-   * the json payload is included in the part named {@code payload_json}.
+   * the json payload is included in the part named {@code payload_json}. Attachments are {@link
+   * Attachment#release() released} once the request has completed.
    *
    * @param path the path to make the request to
    * @param payload the body to be sent with the request
@@ -323,7 +622,8 @@ public class SmallD implements AutoCloseable {
    *
    * <p>If no attachments are provided the request will be send with a content type of
    * application/json. If attachments are present the content type will be multipart/form-data and
-   * the json payload is included in the part named {@code payload_json}.
+   * the json payload is included in the part named {@code payload_json}. Attachments are {@link
+   * Attachment#release() released} once the request has completed.
    *
    * <p>When calling this method you should provide a map of query parameters where the {@code
    * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
@@ -342,29 +642,69 @@ public class SmallD implements AutoCloseable {
    */
   public String post(
       String path, String payload, Map<String, Object> parameters, Attachment... attachments) {
+    return post(path, payload, parameters, RequestOptions.defaults(), attachments);
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with options for this request. The path
+   * provided should start with {@code /} and will be appended to the base URL that has been
+   * configured.
+   *
+   * <p>If no attachments are provided the request will be send with a content type of
+   * application/json. If attachments are present the content type will be multipart/form-data and
+   * the json payload is included in the part named {@code payload_json}. Attachments are {@link
+   * Attachment#release() released} once the request has completed.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the body to be sent with the request
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @param attachments attachments for a multipart request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(
+      String path,
+      String payload,
+      Map<String, Object> parameters,
+      RequestOptions options,
+      Attachment... attachments) {
     LOG.debug("HTTP POST {}: {}, {}", path, payload, parameters);
 
     boolean isMultipart = attachments.length > 0;
 
     return isMultipart
-        ? postMultipart(path, payload, attachments)
-        : http.send(path, b -> b.post(jsonBody(payload)), parameters);
+        ? postMultipart(path, payload, options, attachments)
+        : http.send(path, b -> withOptions(b.post(jsonBody(payload)), options), parameters);
   }
 
-  private String postMultipart(String path, String payload, Attachment... attachments) {
+  private String postMultipart(
+      String path, String payload, RequestOptions options, Attachment... attachments) {
     MultipartBody.Builder builder =
         new MultipartBody.Builder()
             .setType(MultipartBody.FORM)
             .addFormDataPart("payload_json", payload);
 
     for (Attachment a : attachments) {
-      builder.addFormDataPart(
-          "file",
-          a.getFilename(),
-          RequestBody.create(MediaType.get(a.getMimeType()), a.getBytes()));
+      builder.addFormDataPart("file", a.getFilename(), a.toRequestBody());
     }
 
-    return http.send(path, b -> b.post(builder.build()), Collections.emptyMap());
+    try {
+      return http.send(
+          path, b -> withOptions(b.post(builder.build()), options), Collections.emptyMap());
+    } finally {
+      for (Attachment a : attachments) {
+        a.release();
+      }
+    }
   }
 
   /**
@@ -407,9 +747,35 @@ public class SmallD implements AutoCloseable {
    * @throws HttpException for any non 2xx/4xx/5xx ressponse
    */
   public String put(String path, String payload, Map<String, Object> parameters) {
+    return put(path, payload, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with options for this request.
+   *
+   * <p>The request will be send with a content type of application/json. The path provided should
+   * start with {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the body to be sent with the request
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(
+      String path, String payload, Map<String, Object> parameters, RequestOptions options) {
     LOG.debug("HTTP PUT {}: {}, {}", path, payload, parameters);
 
-    return http.send(path, b -> b.put(jsonBody(payload)), parameters);
+    return http.send(path, b -> withOptions(b.put(jsonBody(payload)), options), parameters);
   }
 
   /**
@@ -428,18 +794,18 @@ public class SmallD implements AutoCloseable {
    * @throws HttpException for any non 2xx/4xx/5xx ressponse
    */
   public String patch(String path, String payload) {
-    LOG.debug("HTTP PATCH {}: {}", path, payload);
-
-    return http.send(path, b -> b.patch(jsonBody(payload)), Collections.emptyMap());
+    return patch(path, payload, RequestOptions.defaults());
   }
 
   /**
-   * Make a HTTP DELETE request to a Discord REST endpoint.
+   * Make a HTTP PATCH request to a Discord REST endpoint, with options for this request.
    *
    * <p>The request will be send with a content type of application/json. The path provided should
    * start with {@code /} and will be appended to the base URL that has been configured.
    *
    * @param path the path to make the request to
+   * @param payload the body to be sent with the request
+   * @param options the options for this request
    * @return the body of the HTTP response
    * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
    *     limited
@@ -447,51 +813,723 @@ public class SmallD implements AutoCloseable {
    * @throws HttpException.ServerException is there was a HTTP 5xx response
    * @throws HttpException for any non 2xx/4xx/5xx ressponse
    */
-  public String delete(String path) {
-    LOG.debug("HTTP DELETE {}", path);
-
-    return http.send(path, Request.Builder::delete, Collections.emptyMap());
-  }
-
-  private String getGatewayUrl() {
-    try {
-      String url = Json.parse(get("/gateway/bot")).asObject().getString("url", null);
-
-      if (url == null) {
-        throw new SmallDException("No URL in /gateway/bot request");
-      }
+  public String patch(String path, String payload, RequestOptions options) {
+    LOG.debug("HTTP PATCH {}: {}", path, payload);
 
-      return url;
-    } catch (ParseException e) {
-      throw new SmallDException(e);
-    }
+    return http.send(
+        path, b -> withOptions(b.patch(jsonBody(payload)), options), Collections.emptyMap());
   }
 
-  private RequestBody jsonBody(String content) {
-    return RequestBody.create(JSON, content);
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with the payload provided as a byte array.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(String path, byte[] payload) {
+    return post(path, payload, Collections.emptyMap());
   }
 
   /**
-   * Creates an instance that will authenticate using the given token.
+   * Make a HTTP POST request to a Discord REST endpoint, with the payload provided as a byte array.
    *
-   * <p>{@code create} will construct a SmallD instance and add helpers that will handle identifying
-   * and heartbeating with the Discord gateway.
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
    *
-   * @param token the token to authenticate with
-   * @return the created SmallD instance
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
    */
-  public static SmallD create(String token) {
-    return create(Config.builder().setToken(token).build());
+  public String post(String path, byte[] payload, Map<String, Object> parameters) {
+    return post(path, payload, parameters, RequestOptions.defaults());
   }
 
   /**
-   * Creates an instance with the given {@link Config}.
+   * Make a HTTP POST request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a byte array.
    *
-   * <p>{@code create} will construct a SmallD instance and add helpers that will handle identifying
-   * and heartbeating with the Discord gateway.
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
    *
-   * @param config the config to use
-   * @return the created SmallD instance
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(
+      String path, byte[] payload, Map<String, Object> parameters, RequestOptions options) {
+    return send("POST", path, jsonBody(payload), parameters, options);
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(String path, ByteBuffer payload) {
+    return post(path, payload, Collections.emptyMap());
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @param parameters query string parameters
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(String path, ByteBuffer payload, Map<String, Object> parameters) {
+    return post(path, payload, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a {@link ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(
+      String path, ByteBuffer payload, Map<String, Object> parameters, RequestOptions options) {
+    return send("POST", path, jsonBody(payload), parameters, options);
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(String path, ByteString payload) {
+    return post(path, payload, Collections.emptyMap());
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(String path, ByteString payload, Map<String, Object> parameters) {
+    return post(path, payload, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP POST request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a {@link ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String post(
+      String path, ByteString payload, Map<String, Object> parameters, RequestOptions options) {
+    return send("POST", path, jsonBody(payload), parameters, options);
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with the payload provided as a byte array.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(String path, byte[] payload) {
+    return put(path, payload, Collections.emptyMap());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with the payload provided as a byte array.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(String path, byte[] payload, Map<String, Object> parameters) {
+    return put(path, payload, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a byte array.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(
+      String path, byte[] payload, Map<String, Object> parameters, RequestOptions options) {
+    return send("PUT", path, jsonBody(payload), parameters, options);
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(String path, ByteBuffer payload) {
+    return put(path, payload, Collections.emptyMap());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @param parameters query string parameters
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(String path, ByteBuffer payload, Map<String, Object> parameters) {
+    return put(path, payload, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a {@link ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(
+      String path, ByteBuffer payload, Map<String, Object> parameters, RequestOptions options) {
+    return send("PUT", path, jsonBody(payload), parameters, options);
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(String path, ByteString payload) {
+    return put(path, payload, Collections.emptyMap());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(String path, ByteString payload, Map<String, Object> parameters) {
+    return put(path, payload, parameters, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PUT request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a {@link ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * <p>When calling this method you should provide a map of query parameters where the {@code
+   * Object} is a {@link java.lang.String} or can be transformed into a {@link java.lang.String}
+   * with {@link String#valueOf(Object)}.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param parameters query string parameters
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String put(
+      String path, ByteString payload, Map<String, Object> parameters, RequestOptions options) {
+    return send("PUT", path, jsonBody(payload), parameters, options);
+  }
+
+  /**
+   * Make a HTTP PATCH request to a Discord REST endpoint, with the payload provided as a byte
+   * array.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String patch(String path, byte[] payload) {
+    return patch(path, payload, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PATCH request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a byte array.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String patch(String path, byte[] payload, RequestOptions options) {
+    return send("PATCH", path, jsonBody(payload), Collections.emptyMap(), options);
+  }
+
+  /**
+   * Make a HTTP PATCH request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String patch(String path, ByteBuffer payload) {
+    return patch(path, payload, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PATCH request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a {@link ByteBuffer}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request, from its position to its
+   *     limit
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String patch(String path, ByteBuffer payload, RequestOptions options) {
+    return send("PATCH", path, jsonBody(payload), Collections.emptyMap(), options);
+  }
+
+  /**
+   * Make a HTTP PATCH request to a Discord REST endpoint, with the payload provided as a {@link
+   * ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String patch(String path, ByteString payload) {
+    return patch(path, payload, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP PATCH request to a Discord REST endpoint, with options for this request and the
+   * payload provided as a {@link ByteString}.
+   *
+   * <p>The request will be send with a content type of application/json. The payload is sent as is,
+   * without being decoded or copied into a {@code String}. The path provided should start with
+   * {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @param payload the UTF-8 encoded body to be sent with the request
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String patch(String path, ByteString payload, RequestOptions options) {
+    return send("PATCH", path, jsonBody(payload), Collections.emptyMap(), options);
+  }
+
+  private String send(
+      String method,
+      String path,
+      RequestBody body,
+      Map<String, Object> parameters,
+      RequestOptions options) {
+    try {
+      LOG.debug("HTTP {} {}: ({} bytes), {}", method, path, body.contentLength(), parameters);
+    } catch (IOException e) {
+      LOG.debug("HTTP {} {}, {}", method, path, parameters);
+    }
+
+    return http.send(path, b -> withOptions(b.method(method, body), options), parameters);
+  }
+
+  /**
+   * Make a HTTP DELETE request to a Discord REST endpoint.
+   *
+   * <p>The request will be send with a content type of application/json. The path provided should
+   * start with {@code /} and will be appended to the base URL that has been configured.
+   *
+   * @param path the path to make the request to
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String delete(String path) {
+    return delete(path, RequestOptions.defaults());
+  }
+
+  /**
+   * Make a HTTP DELETE request to a Discord REST endpoint, with options for this request.
+   *
+   * <p>The path provided should start with {@code /} and will be appended to the base URL that has
+   * been configured.
+   *
+   * @param path the path to make the request to
+   * @param options the options for this request
+   * @return the body of the HTTP response
+   * @throws com.github.princesslana.smalld.ratelimit.RateLimitException if the request was rate
+   *     limited
+   * @throws HttpException.ClientException if there was a HTTP 4xx response
+   * @throws HttpException.ServerException is there was a HTTP 5xx response
+   * @throws HttpException for any non 2xx/4xx/5xx ressponse
+   */
+  public String delete(String path, RequestOptions options) {
+    LOG.debug("HTTP DELETE {}", path);
+
+    return http.send(path, b -> withOptions(b.delete(), options), Collections.emptyMap());
+  }
+
+  private String getGatewayUrl() {
+    try {
+      String url = Json.parse(get("/gateway/bot")).asObject().getString("url", null);
+
+      if (url == null) {
+        throw new SmallDException("No URL in /gateway/bot request");
+      }
+
+      return url;
+    } catch (ParseException e) {
+      throw new SmallDException(e);
+    }
+  }
+
+  private static Request.Builder withOptions(Request.Builder builder, RequestOptions options) {
+    return builder.tag(RequestOptions.class, options);
+  }
+
+  private RequestBody jsonBody(String content) {
+    return RequestBody.create(JSON, content);
+  }
+
+  private static RequestBody jsonBody(byte[] content) {
+    return RequestBody.create(JSON, content);
+  }
+
+  private static RequestBody jsonBody(ByteString content) {
+    return RequestBody.create(JSON, content);
+  }
+
+  private static RequestBody jsonBody(ByteBuffer content) {
+    ByteBuffer body = content.asReadOnlyBuffer();
+
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return JSON;
+      }
+
+      @Override
+      public long contentLength() {
+        return body.remaining();
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(body.duplicate());
+      }
+    };
+  }
+
+  /**
+   * Creates an instance that will authenticate using the given token.
+   *
+   * <p>{@code create} will construct a SmallD instance and add helpers that will handle identifying
+   * and heartbeating with the Discord gateway.
+   *
+   * @param token the token to authenticate with
+   * @return the created SmallD instance
+   */
+  public static SmallD create(String token) {
+    return create(Config.builder().setToken(token).build());
+  }
+
+  /**
+   * Creates an instance with the given {@link Config}.
+   *
+   * <p>{@code create} will construct a SmallD instance and add helpers that will handle identifying
+   * and heartbeating with the Discord gateway. If a {@link ResponseCache} is configured it will be
+   * added so that it is invalidated by gateway events.
+   *
+   * @param config the config to use
+   * @return the created SmallD instance
    */
   public static SmallD create(Config config) {
     SmallD smalld = new SmallD(config);
@@ -502,6 +1540,8 @@ public class SmallD implements AutoCloseable {
 
     Stream.of(seq, identify, heartbeat).forEach(c -> c.accept(smalld));
 
+    config.getResponseCache().ifPresent(c -> c.accept(smalld));
+
     return smalld;
   }
 
@@ -0,0 +1,103 @@
+package com.github.princesslana.smalld.jfr;
+
+import com.github.princesslana.smalld.ratelimit.RateLimitBucket;
+
+/**
+ * Emits Java Flight Recorder events for SmallD activity.
+ *
+ * <p>This is the Java 8 implementation, which does nothing. On Java 11 and later the multi-release
+ * jar provides an implementation with the same methods that emits {@code jdk.jfr} events under the
+ * {@code SmallD} category.
+ *
+ * <p>Events with a duration are started with a {@code begin} method, which returns a token, and
+ * finished by passing that token to the matching {@code end} method. The token is {@code null} when
+ * the event is not enabled, so when nothing is recording the cost is a call that returns null and a
+ * null check.
+ */
+public final class JfrEvents {
+
+  private JfrEvents() {}
+
+  /**
+   * Returns whether gateway frame events are being recorded. Callers should check this before doing
+   * any work to find the fields of the event.
+   *
+   * @return whether gateway frame events are recorded
+   */
+  public static boolean isGatewayFrameEnabled() {
+    return false;
+  }
+
+  /**
+   * Record the receipt of a gateway frame.
+   *
+   * @param op the op of the payload, or -1 if not known
+   * @param t the event type of the payload, or null if there is none
+   * @param size the size of the frame, in characters for text frames and bytes for binary frames
+   */
+  public static void gatewayFrame(int op, String t, long size) {
+    // not recorded on Java 8
+  }
+
+  /**
+   * Begin recording the execution of a gateway listener.
+   *
+   * @return a token to pass to {@link #endListener(Object, String)}, or null if not recording
+   */
+  public static Object beginListener() {
+    return null;
+  }
+
+  /**
+   * Finish recording the execution of a gateway listener.
+   *
+   * @param token the token returned by {@link #beginListener()}
+   * @param listener the name of the listener
+   */
+  public static void endListener(Object token, String listener) {
+    // not recorded on Java 8
+  }
+
+  /**
+   * Begin recording a REST call.
+   *
+   * @return a token to pass to {@link #endRestCall(Object, String, String, int)}, or null if not
+   *     recording
+   */
+  public static Object beginRestCall() {
+    return null;
+  }
+
+  /**
+   * Finish recording a REST call.
+   *
+   * @param token the token returned by {@link #beginRestCall()}
+   * @param method the HTTP method
+   * @param route the route of the request, as given by {@link RateLimitBucket#getRoute()}
+   * @param status the HTTP status of the response, or -1 if there was no response
+   */
+  public static void endRestCall(Object token, String method, String route, int status) {
+    // not recorded on Java 8
+  }
+
+  /**
+   * Begin recording the time a REST request waits for rate limits.
+   *
+   * @return a token to pass to {@link #endRateLimitWait(Object, String, boolean)}, or null if not
+   *     recording
+   */
+  public static Object beginRateLimitWait() {
+    return null;
+  }
+
+  /**
+   * Finish recording the time a REST request waited for rate limits.
+   *
+   * @param token the token returned by {@link #beginRateLimitWait()}
+   * @param route the route of the request, as given by {@link RateLimitBucket#getRoute()}
+   * @param rejected whether the request was refused because of a rate limit
+   */
+  public static void endRateLimitWait(Object token, String route, boolean rejected) {
+    // not recorded on Java 8
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * Java Flight Recorder events for gateway, listener, and REST activity.
+ *
+ * <p>On Java 8 the methods in this package do nothing. On Java 11 and later they are replaced,
+ * through a multi-release jar, by implementations that emit {@code jdk.jfr} events.
+ */
+package com.github.princesslana.smalld.jfr;
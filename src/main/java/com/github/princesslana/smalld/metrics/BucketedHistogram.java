@@ -0,0 +1,117 @@
+package com.github.princesslana.smalld.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Histogram} that counts values in buckets whose bounds are powers of two.
+ *
+ * <p>Recording a value is lock free and does not allocate. Percentiles are approximate: the value
+ * reported for a percentile is the upper bound of the bucket it falls in, which is at most twice
+ * the true value, and never more than the maximum recorded value. Negative values are counted as
+ * zero.
+ */
+public class BucketedHistogram implements Histogram {
+
+  private static final int BUCKETS = Long.SIZE;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder sum = new LongAdder();
+
+  private final AtomicLong max = new AtomicLong();
+
+  @Override
+  public void record(long value) {
+    long v = Math.max(0, value);
+
+    counts.incrementAndGet(bucketOf(v));
+    count.increment();
+    sum.add(v);
+
+    long current = max.get();
+    while (v > current && !max.compareAndSet(current, v)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of values recorded.
+   *
+   * @return the number of values
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the sum of the values recorded.
+   *
+   * @return the sum of the values
+   */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * Returns the largest value recorded, or zero if none have been recorded.
+   *
+   * @return the largest value
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the mean of the values recorded, or zero if none have been recorded.
+   *
+   * @return the mean value
+   */
+  public double getMean() {
+    long n = getCount();
+    return n == 0 ? 0 : (double) getSum() / n;
+  }
+
+  /**
+   * Returns an approximation of the value at a percentile, or zero if no values have been recorded.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the approximate value at the percentile
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+    long seen = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), getMax());
+      }
+    }
+
+    return getMax();
+  }
+
+  private static int bucketOf(long value) {
+    return Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(value));
+  }
+
+  private static long upperBoundOf(int bucket) {
+    return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+}
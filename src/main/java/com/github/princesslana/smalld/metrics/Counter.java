@@ -0,0 +1,17 @@
+package com.github.princesslana.smalld.metrics;
+
+/** A count of occurrences, such as the number of events received. */
+public interface Counter {
+
+  /** Increment the count by one. */
+  default void increment() {
+    increment(1);
+  }
+
+  /**
+   * Increment the count by an amount.
+   *
+   * @param amount the amount to increment by
+   */
+  void increment(long amount);
+}
@@ -0,0 +1,15 @@
+package com.github.princesslana.smalld.metrics;
+
+/**
+ * A distribution of recorded values, such as latencies. Latencies are recorded in nanoseconds and
+ * sizes in bytes.
+ */
+public interface Histogram {
+
+  /**
+   * Record a value.
+   *
+   * @param value the value to record
+   */
+  void record(long value);
+}
@@ -0,0 +1,100 @@
+package com.github.princesslana.smalld.metrics;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link Metrics} that are held in memory and can be read back by name and tags. This is intended
+ * for tests and for simple reporting, such as periodically logging the values of interest.
+ */
+public class InMemoryMetrics implements Metrics {
+
+  private final Map<String, AdderCounter> counters = new ConcurrentHashMap<>();
+
+  private final Map<String, BucketedHistogram> histograms = new ConcurrentHashMap<>();
+
+  private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+  @Override
+  public Counter counter(String name, String... tags) {
+    return counters.computeIfAbsent(toKey(name, tags), k -> new AdderCounter());
+  }
+
+  @Override
+  public Histogram histogram(String name, String... tags) {
+    return histograms.computeIfAbsent(toKey(name, tags), k -> new BucketedHistogram());
+  }
+
+  @Override
+  public void gauge(String name, LongSupplier value, String... tags) {
+    gauges.put(toKey(name, tags), value);
+  }
+
+  /**
+   * Returns the current count of a counter, or zero if it has not been used.
+   *
+   * @param name the name of the counter
+   * @param tags alternating tag keys and values
+   * @return the count
+   */
+  public long getCount(String name, String... tags) {
+    AdderCounter counter = counters.get(toKey(name, tags));
+    return counter == null ? 0 : counter.count.sum();
+  }
+
+  /**
+   * Returns a histogram, if it has been used.
+   *
+   * @param name the name of the histogram
+   * @param tags alternating tag keys and values
+   * @return the histogram, or empty if it has not been used
+   */
+  public Optional<BucketedHistogram> getHistogram(String name, String... tags) {
+    return Optional.ofNullable(histograms.get(toKey(name, tags)));
+  }
+
+  /**
+   * Returns the current value of a gauge, if it has been registered.
+   *
+   * @param name the name of the gauge
+   * @param tags alternating tag keys and values
+   * @return the value of the gauge, or empty if it has not been registered
+   */
+  public OptionalLong getGauge(String name, String... tags) {
+    LongSupplier gauge = gauges.get(toKey(name, tags));
+    return gauge == null ? OptionalLong.empty() : OptionalLong.of(gauge.getAsLong());
+  }
+
+  private static String toKey(String name, String... tags) {
+    if (tags.length % 2 != 0) {
+      throw new IllegalArgumentException("Tags must be given as key and value pairs");
+    }
+
+    if (tags.length == 0) {
+      return name;
+    }
+
+    StringBuilder key = new StringBuilder(name).append('{');
+    for (int i = 0; i < tags.length; i += 2) {
+      if (i > 0) {
+        key.append(',');
+      }
+      key.append(tags[i]).append('=').append(tags[i + 1]);
+    }
+    return key.append('}').toString();
+  }
+
+  /** A {@link Counter} backed by a {@link LongAdder}. */
+  private static class AdderCounter implements Counter {
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public void increment(long amount) {
+      count.add(amount);
+    }
+  }
+}
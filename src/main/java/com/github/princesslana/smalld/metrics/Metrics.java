@@ -0,0 +1,65 @@
+package com.github.princesslana.smalld.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Provides the counters, histograms, and gauges that SmallD records metrics with.
+ *
+ * <p>Metrics are identified by a name and optional tags. Tags are given as alternating keys and
+ * values, for example {@code counter("smalld.gateway.events", "type", "MESSAGE_CREATE")}. SmallD
+ * looks up a metric once and keeps it for the lifetime of the instance, or for each tag value where
+ * the tags vary, so implementations need not make lookup cheap. Recording a value happens on hot
+ * paths, such as receiving gateway events, and should not block or allocate.
+ *
+ * <p>By default the {@link #noop()} implementation is used, which records nothing. {@link
+ * InMemoryMetrics} is provided for tests and for simple reporting.
+ */
+public interface Metrics {
+
+  /**
+   * Returns the counter with the given name and tags.
+   *
+   * @param name the name of the counter
+   * @param tags alternating tag keys and values
+   * @return the counter
+   */
+  Counter counter(String name, String... tags);
+
+  /**
+   * Returns the histogram with the given name and tags.
+   *
+   * @param name the name of the histogram
+   * @param tags alternating tag keys and values
+   * @return the histogram
+   */
+  Histogram histogram(String name, String... tags);
+
+  /**
+   * Register a gauge with the given name and tags. The value is read when it is reported, rather
+   * than when it changes.
+   *
+   * @param name the name of the gauge
+   * @param value supplies the current value of the gauge
+   * @param tags alternating tag keys and values
+   */
+  void gauge(String name, LongSupplier value, String... tags);
+
+  /**
+   * Returns whether metrics are being recorded. Where measuring a value has a cost beyond recording
+   * it, such as inspecting a payload, SmallD skips the measurement if this is false.
+   *
+   * @return whether metrics are recorded
+   */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /**
+   * Returns a {@code Metrics} implementation that records nothing.
+   *
+   * @return metrics that records nothing
+   */
+  static Metrics noop() {
+    return NoopMetrics.INSTANCE;
+  }
+}
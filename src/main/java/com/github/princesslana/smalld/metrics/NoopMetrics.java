@@ -0,0 +1,38 @@
+package com.github.princesslana.smalld.metrics;
+
+import java.util.function.LongSupplier;
+
+/** {@link Metrics} that records nothing. */
+enum NoopMetrics implements Metrics, Counter, Histogram {
+  INSTANCE;
+
+  @Override
+  public Counter counter(String name, String... tags) {
+    return this;
+  }
+
+  @Override
+  public Histogram histogram(String name, String... tags) {
+    return this;
+  }
+
+  @Override
+  public void gauge(String name, LongSupplier value, String... tags) {
+    // nothing to register
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public void increment(long amount) {
+    // nothing to record
+  }
+
+  @Override
+  public void record(long value) {
+    // nothing to record
+  }
+}
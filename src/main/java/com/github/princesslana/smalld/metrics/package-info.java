@@ -0,0 +1,2 @@
+/** Metrics that are recorded by SmallD, and implementations with which to record them. */
+package com.github.princesslana.smalld.metrics;
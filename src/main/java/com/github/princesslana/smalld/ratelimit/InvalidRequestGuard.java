@@ -0,0 +1,175 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import com.github.princesslana.smalld.metrics.Metrics;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Guards against Discord banning us for making too many invalid requests.
+ *
+ * <p>Discord will temporarily ban an IP that makes too many requests resulting in a HTTP 401, 403,
+ * or 429 response. This guard counts such responses over a sliding window. Once half the limit has
+ * been used non-essential requests are slowed down, with the delay increasing as the limit is
+ * approached. Once ninety percent of the limit has been used non-essential requests are refused.
+ *
+ * <p>The counts are kept in a number of buckets that each cover a fraction of the window, so the
+ * window slides in steps of that size.
+ */
+public class InvalidRequestGuard {
+
+  private static final long DISCORD_LIMIT = 10_000;
+
+  private static final Duration DISCORD_WINDOW = Duration.ofMinutes(10);
+
+  private static final int BUCKETS = 60;
+
+  private static final double SLOW_DOWN_AT = 0.5;
+
+  private static final double REFUSE_AT = 0.9;
+
+  private static final Duration MAX_DELAY = Duration.ofSeconds(1);
+
+  private final long limit;
+
+  private final long bucketMillis;
+
+  private final long[] counts = new long[BUCKETS];
+
+  private final long[] bucketIds = new long[BUCKETS];
+
+  private volatile long lastRecordedMillis = Long.MIN_VALUE;
+
+  private final AtomicBoolean gaugeRegistered = new AtomicBoolean(false);
+
+  /** Constructs an instance using Discord's limit of 10,000 invalid requests per 10 minutes. */
+  public InvalidRequestGuard() {
+    this(DISCORD_LIMIT, DISCORD_WINDOW);
+  }
+
+  /**
+   * Constructs an instance that will guard against {@code limit} invalid requests within {@code
+   * window}.
+   *
+   * @param limit the number of invalid requests at which Discord will ban us
+   * @param window the window over which invalid requests are counted
+   */
+  public InvalidRequestGuard(long limit, Duration window) {
+    this.limit = limit;
+    this.bucketMillis = Math.max(1, window.toMillis() / BUCKETS);
+  }
+
+  /**
+   * Checks whether a non-essential request may be sent.
+   *
+   * @param now the current time
+   * @return how long the request should be delayed for before being sent
+   * @throws RateLimitException if the request should not be sent
+   */
+  public Duration acquire(Instant now) {
+    if (lastRecordedMillis < now.toEpochMilli() - bucketMillis * BUCKETS) {
+      return Duration.ZERO;
+    }
+
+    long count = getCount(now);
+
+    if (count >= limit * REFUSE_AT) {
+      throw new RateLimitException(getExpiry(now, (long) (limit * REFUSE_AT)));
+    }
+
+    double overSlowDown = (count - limit * SLOW_DOWN_AT) / (limit * (REFUSE_AT - SLOW_DOWN_AT));
+
+    return overSlowDown > 0
+        ? Duration.ofMillis((long) (MAX_DELAY.toMillis() * overSlowDown))
+        : Duration.ZERO;
+  }
+
+  /**
+   * Record an invalid request.
+   *
+   * @param now the time at which the invalid request was made
+   */
+  public synchronized void record(Instant now) {
+    long id = toBucketId(now);
+    int idx = (int) (id % BUCKETS);
+
+    if (bucketIds[idx] != id) {
+      bucketIds[idx] = id;
+      counts[idx] = 0;
+    }
+
+    counts[idx]++;
+    lastRecordedMillis = now.toEpochMilli();
+  }
+
+  /**
+   * Returns the number of invalid requests that have been recorded within the window.
+   *
+   * @param now the current time
+   * @return the number of invalid requests within the window
+   */
+  public synchronized long getCount(Instant now) {
+    long oldest = toBucketId(now) - BUCKETS;
+    long count = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      if (bucketIds[i] > oldest) {
+        count += counts[i];
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the number of invalid requests that can be made within the window before Discord would
+   * ban us.
+   *
+   * @param now the current time
+   * @return the number of invalid requests remaining
+   */
+  public long getRemaining(Instant now) {
+    return Math.max(0, limit - getCount(now));
+  }
+
+  /**
+   * Report the number of invalid requests remaining as the {@code
+   * smalld.rest.invalid_requests.remaining} gauge. The gauge is registered only by the first call,
+   * so clients sharing this guard do not replace each other's gauge, and it holds a reference only
+   * to this guard.
+   *
+   * @param metrics the metrics to register the gauge with
+   * @param clock the clock to fetch the current time from when the gauge is read
+   * @param tags alternating tag keys and values
+   */
+  public void registerGauge(Metrics metrics, Clock clock, String... tags) {
+    if (gaugeRegistered.compareAndSet(false, true)) {
+      metrics.gauge(
+          "smalld.rest.invalid_requests.remaining", () -> getRemaining(clock.instant()), tags);
+    }
+  }
+
+  private synchronized Instant getExpiry(Instant now, long threshold) {
+    long current = toBucketId(now);
+    long count = getCount(now);
+
+    for (long id = current - BUCKETS + 1; id <= current; id++) {
+      int idx = (int) (id % BUCKETS);
+
+      if (bucketIds[idx] == id) {
+        count -= counts[idx];
+      }
+
+      if (count < threshold) {
+        return Instant.ofEpochMilli((id + BUCKETS) * bucketMillis);
+      }
+    }
+
+    return Instant.ofEpochMilli((current + BUCKETS) * bucketMillis);
+  }
+
+  private long toBucketId(Instant instant) {
+    return instant.toEpochMilli() / bucketMillis;
+  }
+}
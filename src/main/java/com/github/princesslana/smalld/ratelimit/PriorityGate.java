@@ -0,0 +1,180 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import com.github.princesslana.smalld.RequestCancelledException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Orders requests that are waiting for a {@link RateLimit}.
+ *
+ * <p>Requests that are waiting are queued by rank, which is the time the request arrived adjusted
+ * by its priority. Only the request at the head of the queue may try to acquire a permit, so that
+ * when the rate limit expires the permits go to the highest ranked requests first. Because the rank
+ * is based on arrival time, a low priority request that has waited long enough will rank ahead of a
+ * high priority request that has just arrived, so that low priority requests are not starved.
+ *
+ * <p>When no request is waiting a permit is acquired without queueing, and without taking the
+ * gate's lock, so that requests that are not rate limited do not contend with each other. A request
+ * that arrives just as another starts to wait may take a permit ahead of it. A request that is
+ * cancelled while waiting is removed from the queue.
+ */
+class PriorityGate {
+
+  private final Clock clock;
+
+  private final PriorityQueue<Waiter> waiters =
+      new PriorityQueue<>(
+          Comparator.comparing((Waiter w) -> w.rank).thenComparingLong(w -> w.sequence));
+
+  private volatile int waiting = 0;
+
+  private long sequence = 0;
+
+  private Instant blockedUntil = Instant.EPOCH;
+
+  // changed only while the map entry holding this gate is locked, see RateLimitInterceptor
+  private int users = 0;
+
+  /**
+   * Constructs an instance using the provided source of time.
+   *
+   * @param clock the clock to fetch the current time from
+   */
+  PriorityGate(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Acquire a permit from the rate limit, waiting in rank order if it is not available.
+   *
+   * @param rateLimit the rate limit to acquire a permit from
+   * @param rank the rank of the request, earlier ranks acquire permits first
+   * @param waitUntil the time after which the request should no longer wait
+   * @param isCancelled whether the request has been cancelled
+   * @throws RateLimitException if a permit could not be acquired before {@code waitUntil}
+   * @throws RequestCancelledException if the request was cancelled while waiting
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  void acquire(RateLimit rateLimit, Instant rank, Instant waitUntil, BooleanSupplier isCancelled)
+      throws InterruptedIOException {
+    if (waiting == 0 && tryAcquireWithoutWaiting(rateLimit)) {
+      return;
+    }
+
+    acquireInOrder(rateLimit, rank, waitUntil, isCancelled);
+  }
+
+  private synchronized void acquireInOrder(
+      RateLimit rateLimit, Instant rank, Instant waitUntil, BooleanSupplier isCancelled)
+      throws InterruptedIOException {
+    if (waiters.isEmpty() && tryAcquire(rateLimit, waitUntil)) {
+      return;
+    }
+
+    Waiter waiter = new Waiter(rank, sequence++);
+    waiters.add(waiter);
+    waiting = waiters.size();
+
+    try {
+      while (true) {
+        if (isCancelled.getAsBoolean()) {
+          throw new RequestCancelledException("Request cancelled while waiting for rate limit");
+        }
+
+        Instant now = clock.instant();
+        Instant wakeAt;
+
+        if (waiters.peek() == waiter) {
+          if (tryAcquire(rateLimit, waitUntil)) {
+            return;
+          }
+          wakeAt = blockedUntil;
+        } else if (now.isBefore(waitUntil)) {
+          wakeAt = waitUntil;
+        } else {
+          throw new RateLimitException(blockedUntil.isAfter(now) ? blockedUntil : waitUntil);
+        }
+
+        wait(Math.max(1, Duration.between(now, wakeAt).toMillis()));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      waiters.remove(waiter);
+      waiting = waiters.size();
+      notifyAll();
+    }
+  }
+
+  /** Wake waiting requests, so that they check whether they have been cancelled. */
+  synchronized void wake() {
+    notifyAll();
+  }
+
+  /**
+   * Record that a request is about to use this gate.
+   *
+   * @return this
+   */
+  PriorityGate retain() {
+    users++;
+    return this;
+  }
+
+  /**
+   * Record that a request has finished using this gate.
+   *
+   * @return true if no request is using this gate any longer, so it may be discarded
+   */
+  boolean release() {
+    return --users == 0;
+  }
+
+  /**
+   * Returns the number of requests that are waiting.
+   *
+   * @return the number of waiting requests
+   */
+  int getWaitingCount() {
+    return waiting;
+  }
+
+  private static boolean tryAcquireWithoutWaiting(RateLimit rateLimit) {
+    try {
+      rateLimit.acquire();
+      return true;
+    } catch (RateLimitException e) {
+      return false;
+    }
+  }
+
+  private boolean tryAcquire(RateLimit rateLimit, Instant waitUntil) {
+    try {
+      rateLimit.acquire();
+      return true;
+    } catch (RateLimitException e) {
+      if (e.getExpiry().isAfter(waitUntil)) {
+        throw e;
+      }
+      blockedUntil = e.getExpiry();
+      return false;
+    }
+  }
+
+  /** A request waiting for a permit. */
+  private static class Waiter {
+    private final Instant rank;
+    private final long sequence;
+
+    Waiter(Instant rank, long sequence) {
+      this.rank = rank;
+      this.sequence = sequence;
+    }
+  }
+}
@@ -10,6 +10,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import okhttp3.HttpUrl;
 import okhttp3.Request;
 
 /**
@@ -23,10 +24,36 @@ public class RateLimitBucket {
   private static final Mapping DELETE_MESSAGE_MAPPING =
       Mapping.of("/channels/(\\d+)/messages/(\\d+)", "DELETE /channels/$1/messages/{message.id}");
 
+  private static final Pattern ID_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
   private String bucket;
 
-  private RateLimitBucket(String bucket) {
+  private String route;
+
+  private RateLimitBucket(String bucket, String route) {
     this.bucket = bucket;
+    this.route = route;
+  }
+
+  /**
+   * Returns the name of this bucket, which is the request path with any parameters that do not
+   * affect rate limiting replaced by a placeholder.
+   *
+   * @return the name of this bucket
+   */
+  public String getName() {
+    return bucket;
+  }
+
+  /**
+   * Returns the route of this bucket, which is the request path with all ids replaced by a
+   * placeholder. Unlike the name of the bucket there is only one route for each endpoint, so it is
+   * suitable for tagging metrics.
+   *
+   * @return the route of this bucket
+   */
+  public String getRoute() {
+    return route;
   }
 
   @Override
@@ -82,15 +109,12 @@ public class RateLimitBucket {
     Stream<Mapping> deleteMessage =
         method.equalsIgnoreCase("DELETE") ? Stream.of(DELETE_MESSAGE_MAPPING) : Stream.of();
 
-    String bucket =
-        Stream.concat(deleteMessage, MAPPINGS.stream())
-            .map(m -> m.replaceIn(path))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .findFirst()
-            .orElse(path);
-
-    return new RateLimitBucket(bucket);
+    return Stream.concat(deleteMessage, MAPPINGS.stream())
+        .map(m -> m.replaceIn(path))
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .findFirst()
+        .orElseGet(() -> new RateLimitBucket(path, ID_SEGMENT.matcher(path).replaceAll("/{id}")));
   }
 
   /**
@@ -103,21 +127,48 @@ public class RateLimitBucket {
     return from(request.method(), request.url().encodedPath());
   }
 
+  /**
+   * Creates a {@code RateLimitBucket} from a {@link Request} made relative to a base URL. The path
+   * of the base URL, such as {@code /api/v6}, is not considered when finding the bucket.
+   *
+   * @param request a HTTP request
+   * @param baseUrl the base URL the request was made relative to
+   * @return the {@code RateLimitBucket} for the given request
+   */
+  public static RateLimitBucket from(Request request, HttpUrl baseUrl) {
+    String path = request.url().encodedPath();
+    String basePath = baseUrl.encodedPath();
+
+    if (basePath.endsWith("/")) {
+      basePath = basePath.substring(0, basePath.length() - 1);
+    }
+
+    if (path.startsWith(basePath + "/")) {
+      path = path.substring(basePath.length());
+    }
+
+    return from(request.method(), path);
+  }
+
   /** A Mapping between a request path and a {@link RateLimitBucket}. */
   private static class Mapping {
 
     private final Pattern from;
     private final String to;
+    private final String route;
 
     public Mapping(Pattern from, String to) {
       this.from = from;
       this.to = to;
+      this.route = to.replaceAll("\\$\\d+", "{id}");
     }
 
-    public Optional<String> replaceIn(String path) {
+    public Optional<RateLimitBucket> replaceIn(String path) {
       Matcher m = from.matcher(path);
 
-      return m.matches() ? Optional.of(m.replaceAll(to)) : Optional.empty();
+      return m.matches()
+          ? Optional.of(new RateLimitBucket(m.replaceAll(to), route))
+          : Optional.empty();
     }
 
     public static Mapping of(String from, String to) {
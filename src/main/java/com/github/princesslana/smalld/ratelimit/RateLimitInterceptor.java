@@ -1,22 +1,91 @@
 package com.github.princesslana.smalld.ratelimit;
 
+import com.github.princesslana.smalld.RequestCancelledException;
+import com.github.princesslana.smalld.RequestOptions;
+import com.github.princesslana.smalld.RequestPriority;
+import com.github.princesslana.smalld.jfr.JfrEvents;
+import com.github.princesslana.smalld.metrics.Counter;
+import com.github.princesslana.smalld.metrics.Histogram;
+import com.github.princesslana.smalld.metrics.Metrics;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
-/** OkHttp {@link Interceptor} that enforces rate limits on HTTP requests. */
+/**
+ * OkHttp {@link Interceptor} that enforces rate limits on HTTP requests.
+ *
+ * <p>Expiry times are calculated from {@code X-RateLimit-Reset-After} where possible, as it is
+ * relative and so unaffected by any difference between our clock and Discord's. Where an absolute
+ * time from Discord must be used it is adjusted by an estimate of the offset between the clocks,
+ * which is maintained from the {@code Date} header of each response.
+ *
+ * <p>The global rate limit is enforced proactively by a {@link RateLimit} provided on construction,
+ * in addition to any global rate limit that Discord reports to us on a HTTP 429 response.
+ *
+ * <p>Invalid requests are counted by an {@link InvalidRequestGuard}, which will slow down and then
+ * refuse non-essential requests before Discord's limit on invalid requests is reached.
+ *
+ * <p>If a maximum wait is provided requests that are rate limited wait, up to that maximum, for the
+ * rate limit to expire rather than failing immediately. Waiting requests are ordered by their
+ * {@link RequestPriority}, which is taken from the {@link RequestOptions} tag of the request. Each
+ * step in priority is worth one second of waiting, so a request that has waited a second longer
+ * than one of the next higher priority will be sent before it.
+ *
+ * <p>A request that has been cancelled, or that has missed its deadline, is not sent and fails with
+ * a {@link RequestCancelledException}. A request that is waiting for a rate limit that will not
+ * expire before its deadline stops waiting and fails in the same way.
+ *
+ * <p>If {@link Metrics} are provided the time spent waiting for rate limits, requests refused
+ * because of a rate limit, HTTP 429 responses, and the latency of requests per route (see {@link
+ * RateLimitBucket#getRoute()}) are recorded.
+ */
 public class RateLimitInterceptor implements Interceptor {
 
+  private static final Duration PRIORITY_STEP = Duration.ofSeconds(1);
+
   private final Clock clock;
 
+  private final HttpUrl baseUrl;
+
+  private final ServerClockOffset serverClockOffset = new ServerClockOffset();
+
+  private final RateLimit proactiveGlobalRateLimit;
+
+  private final InvalidRequestGuard invalidRequestGuard;
+
+  private final Predicate<Request> isEssential;
+
+  private final Duration maxWait;
+
+  private final PriorityGate globalGate;
+
+  private final Map<RateLimitBucket, PriorityGate> resourceGates = new ConcurrentHashMap<>();
+
+  private final Metrics metrics;
+
+  private final Histogram waitTime;
+
+  private final Counter rejected;
+
+  private final Counter globalTooManyRequests;
+
+  private final Counter resourceTooManyRequests;
+
+  private final Map<String, Histogram> latencyByRoute = new ConcurrentHashMap<>();
+
   private RateLimit globalRateLimit = RateLimit.allowAll();
 
   private Map<RateLimitBucket, RateLimit> resourceRateLimit = new ConcurrentHashMap<>();
@@ -27,26 +96,81 @@ public class RateLimitInterceptor implements Interceptor {
    * @param clock the clock to fetch the current time from
    */
   public RateLimitInterceptor(Clock clock) {
-    this.clock = clock;
+    this(builder().setClock(clock));
+  }
+
+  private RateLimitInterceptor(Builder builder) {
+    this.clock = builder.clock;
+    this.baseUrl = builder.baseUrl;
+    this.proactiveGlobalRateLimit = builder.proactiveGlobalRateLimit;
+    this.invalidRequestGuard = builder.invalidRequestGuard;
+    this.isEssential = builder.isEssential;
+    this.maxWait = builder.maxWait;
+    this.globalGate = new PriorityGate(clock);
+    this.metrics = builder.metrics;
+    this.waitTime = metrics.histogram("smalld.ratelimit.wait");
+    this.rejected = metrics.counter("smalld.ratelimit.rejected");
+    this.globalTooManyRequests = metrics.counter("smalld.rest.429", "scope", "global");
+    this.resourceTooManyRequests = metrics.counter("smalld.rest.429", "scope", "resource");
   }
 
   @Override
   public Response intercept(Interceptor.Chain chain) throws IOException {
-    globalRateLimit.acquire();
-    getRateLimitForPath(chain.request()).acquire();
+    Request request = chain.request();
+    RequestOptions options = getOptions(request);
+    RateLimitBucket bucket =
+        baseUrl == null ? RateLimitBucket.from(request) : RateLimitBucket.from(request, baseUrl);
+
+    if (options.isCancelled(clock.instant())) {
+      throw new RequestCancelledException("Request cancelled before it was sent");
+    }
+
+    if (!isEssential.test(request)) {
+      guardInvalidRequests();
+    }
 
-    Response response = chain.proceed(chain.request());
+    Object waitEvent = JfrEvents.beginRateLimitWait();
+    long acquireStart = System.nanoTime();
+    boolean isRejected = false;
+    try {
+      acquire(bucket, options);
+    } catch (RateLimitException e) {
+      isRejected = true;
+      rejected.increment();
+      throw e;
+    } finally {
+      waitTime.record(System.nanoTime() - acquireStart);
 
-    getRateLimit(response).ifPresent(rl -> setRateLimitForPath(chain.request(), rl));
+      if (waitEvent != null) {
+        JfrEvents.endRateLimitWait(waitEvent, bucket.getRoute(), isRejected);
+      }
+    }
+
+    Instant sentAt = clock.instant();
+    long sendStart = System.nanoTime();
+
+    Response response = chain.proceed(request);
+
+    recordLatency(bucket, System.nanoTime() - sendStart);
+
+    getResponseDate(response).ifPresent(d -> serverClockOffset.update(d, clock.instant()));
+
+    if (isInvalidRequest(response)) {
+      invalidRequestGuard.record(clock.instant());
+    }
+
+    getRateLimit(response, sentAt).ifPresent(rl -> setRateLimit(bucket, rl));
 
     if (response.code() == 429) {
-      getRateLimitExpiry(response)
+      getRateLimitExpiry(response, sentAt)
           .ifPresent(
               expiryAt -> {
                 if (isGlobalRateLimit(response)) {
+                  globalTooManyRequests.increment();
                   globalRateLimit = RateLimit.denyUntil(clock, expiryAt);
                 } else {
-                  setRateLimitForPath(chain.request(), RateLimit.denyUntil(clock, expiryAt));
+                  resourceTooManyRequests.increment();
+                  setRateLimit(bucket, RateLimit.denyUntil(clock, expiryAt));
                 }
 
                 throw new RateLimitException(expiryAt);
@@ -56,24 +180,128 @@ public class RateLimitInterceptor implements Interceptor {
     return response;
   }
 
-  private RateLimit getRateLimitForPath(Request request) {
-    return resourceRateLimit.getOrDefault(RateLimitBucket.from(request), RateLimit.allowAll());
+  private void acquire(RateLimitBucket bucket, RequestOptions options)
+      throws InterruptedIOException {
+    if (maxWait.isZero() || maxWait.isNegative()) {
+      getRateLimit(bucket).acquire();
+      acquireGlobal();
+      return;
+    }
+
+    Instant arrival = clock.instant();
+    Instant rank = arrival.plus(PRIORITY_STEP.multipliedBy(options.getPriority().ordinal()));
+    Optional<Instant> deadline = options.getDeadline();
+    Instant waitUntil =
+        deadline.filter(d -> d.isBefore(arrival.plus(maxWait))).orElse(arrival.plus(maxWait));
+
+    PriorityGate resourceGate =
+        resourceGates.compute(bucket, (b, g) -> (g == null ? new PriorityGate(clock) : g).retain());
+
+    Runnable stopWaking =
+        options
+            .getCancellation()
+            .map(
+                c ->
+                    c.onCancel(
+                        () -> {
+                          globalGate.wake();
+                          resourceGate.wake();
+                        }))
+            .orElse(() -> {});
+
+    // the resource permit is taken first, as a request refused by its resource rate limit should
+    // not use up a permit of the global rate limit that other resources could have used
+    try {
+      resourceGate.acquire(
+          () -> getRateLimit(bucket).acquire(),
+          rank,
+          waitUntil,
+          () -> options.isCancelled(clock.instant()));
+      globalGate.acquire(
+          this::acquireGlobal, rank, waitUntil, () -> options.isCancelled(clock.instant()));
+    } catch (RateLimitException e) {
+      if (deadline.isPresent() && !e.getExpiry().isBefore(deadline.get())) {
+        throw new RequestCancelledException("Rate limit does not expire before deadline", e);
+      }
+      throw e;
+    } finally {
+      stopWaking.run();
+      resourceGates.computeIfPresent(bucket, (b, g) -> g.release() ? null : g);
+    }
   }
 
-  private void setRateLimitForPath(Request request, RateLimit rateLimit) {
-    resourceRateLimit.put(RateLimitBucket.from(request), rateLimit);
+  /**
+   * Returns the number of rate limit buckets with a gate, which are those with requests currently
+   * acquiring a permit.
+   *
+   * @return the number of buckets with a gate
+   */
+  int getResourceGateCount() {
+    return resourceGates.size();
   }
 
-  private Optional<Instant> getRateLimitExpiry(Response response) {
-    Optional<Instant> reset = getRateLimitReset(response);
+  private void recordLatency(RateLimitBucket bucket, long nanos) {
+    if (metrics.isEnabled()) {
+      latencyByRoute
+          .computeIfAbsent(
+              bucket.getRoute(), r -> metrics.histogram("smalld.rest.latency", "route", r))
+          .record(nanos);
+    }
+  }
 
-    Optional<Instant> responseDate =
-        Optional.ofNullable(response.header("Date"))
-            .map(DateTimeFormatter.RFC_1123_DATE_TIME::parse)
-            .map(Instant::from);
+  private void acquireGlobal() {
+    globalRateLimit.acquire();
+    proactiveGlobalRateLimit.acquire();
+  }
+
+  private static RequestOptions getOptions(Request request) {
+    RequestOptions options = request.tag(RequestOptions.class);
+    return options == null ? RequestOptions.defaults() : options;
+  }
+
+  private void guardInvalidRequests() throws InterruptedIOException {
+    Duration delay = invalidRequestGuard.acquire(clock.instant());
+
+    if (!delay.isZero()) {
+      try {
+        Thread.sleep(delay.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  private boolean isInvalidRequest(Response response) {
+    switch (response.code()) {
+      case 401:
+      case 403:
+        return true;
+      case 429:
+        return !"shared".equals(response.header("X-RateLimit-Scope"));
+      default:
+        return false;
+    }
+  }
+
+  private RateLimit getRateLimit(RateLimitBucket bucket) {
+    return resourceRateLimit.getOrDefault(bucket, RateLimit.allowAll());
+  }
+
+  private void setRateLimit(RateLimitBucket bucket, RateLimit rateLimit) {
+    resourceRateLimit.put(bucket, rateLimit);
+  }
+
+  private Optional<Instant> getRateLimitExpiry(Response response, Instant sentAt) {
+    Optional<Instant> reset = getRateLimitReset(response, sentAt);
 
     Optional<Instant> retryAfter =
-        getRetryAfter(response).map(responseDate.orElse(clock.instant())::plusMillis);
+        getRetryAfter(response)
+            .map(
+                ms ->
+                    getResponseDate(response)
+                        .map(d -> serverClockOffset.toLocal(d.plusMillis(ms)))
+                        .orElse(clock.instant().plusMillis(ms)));
 
     return Stream.of(reset, retryAfter).filter(Optional::isPresent).map(Optional::get).findFirst();
   }
@@ -82,8 +310,26 @@ public class RateLimitInterceptor implements Interceptor {
     return headerAsLong(response, "Retry-After");
   }
 
-  private Optional<Instant> getRateLimitReset(Response response) {
-    return headerAsLong(response, "X-RateLimit-Reset").map(Instant::ofEpochMilli);
+  private Optional<Instant> getRateLimitReset(Response response, Instant sentAt) {
+    Optional<Instant> resetAfter =
+        headerAsSecondsInMillis(response, "X-RateLimit-Reset-After").map(sentAt::plusMillis);
+
+    Optional<Instant> reset =
+        headerAsSecondsInMillis(response, "X-RateLimit-Reset")
+            .map(Instant::ofEpochMilli)
+            .map(serverClockOffset::toLocal);
+
+    return resetAfter.isPresent() ? resetAfter : reset;
+  }
+
+  private Optional<Instant> getResponseDate(Response response) {
+    try {
+      return Optional.ofNullable(response.header("Date"))
+          .map(DateTimeFormatter.RFC_1123_DATE_TIME::parse)
+          .map(Instant::from);
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
   }
 
   private boolean isGlobalRateLimit(Response response) {
@@ -93,9 +339,9 @@ public class RateLimitInterceptor implements Interceptor {
         .orElse(false);
   }
 
-  private Optional<RateLimit> getRateLimit(Response response) {
+  private Optional<RateLimit> getRateLimit(Response response, Instant sentAt) {
     Optional<Long> remaining = headerAsLong(response, "X-RateLimit-Remaining");
-    Optional<Instant> reset = getRateLimitReset(response);
+    Optional<Instant> reset = getRateLimitReset(response, sentAt);
 
     return remaining.flatMap(rem -> reset.map(res -> new ResourceRateLimit(clock, rem, res)));
   }
@@ -103,4 +349,117 @@ public class RateLimitInterceptor implements Interceptor {
   private Optional<Long> headerAsLong(Response response, String header) {
     return Optional.ofNullable(response.header(header)).map(Long::parseLong);
   }
+
+  private Optional<Long> headerAsSecondsInMillis(Response response, String header) {
+    return Optional.ofNullable(response.header(header))
+        .map(Double::parseDouble)
+        .map(s -> (long) Math.ceil(s * 1000));
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code RateLimitInterceptor}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** {@code Builder} of {@code RateLimitInterceptor} instances. */
+  public static class Builder {
+
+    private Clock clock = Clock.systemUTC();
+    private HttpUrl baseUrl;
+    private RateLimit proactiveGlobalRateLimit = RateLimit.allowAll();
+    private InvalidRequestGuard invalidRequestGuard = new InvalidRequestGuard();
+    private Predicate<Request> isEssential = r -> false;
+    private Duration maxWait = Duration.ZERO;
+    private Metrics metrics = Metrics.noop();
+
+    private Builder() {}
+
+    /**
+     * Set the clock to fetch the current time from. If not set this will default to the system
+     * clock.
+     *
+     * @param clock the clock to use
+     * @return this
+     */
+    public Builder setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Set the base URL that requests are made relative to. Its path is ignored when finding the
+     * {@link RateLimitBucket} of a request. If not set the full path of each request is used.
+     *
+     * @param baseUrl the base URL requests are made relative to
+     * @return this
+     */
+    public Builder setBaseUrl(HttpUrl baseUrl) {
+      this.baseUrl = baseUrl;
+      return this;
+    }
+
+    /**
+     * Set the rate limit to apply to all requests before sending. If not set no rate limit is
+     * applied until Discord reports a global rate limit.
+     *
+     * @param proactiveGlobalRateLimit the rate limit to apply to all requests
+     * @return this
+     */
+    public Builder setGlobalRateLimit(RateLimit proactiveGlobalRateLimit) {
+      this.proactiveGlobalRateLimit = proactiveGlobalRateLimit;
+      return this;
+    }
+
+    /**
+     * Set the guard with which to count invalid requests, and which requests are essential and so
+     * should not be slowed or refused by it. If not set a guard of its own is used for this
+     * interceptor, and no request is essential.
+     *
+     * @param invalidRequestGuard the guard with which to count invalid requests
+     * @param isEssential determines which requests should not be slowed or refused by the guard
+     * @return this
+     */
+    public Builder setInvalidRequestGuard(
+        InvalidRequestGuard invalidRequestGuard, Predicate<Request> isEssential) {
+      this.invalidRequestGuard = invalidRequestGuard;
+      this.isEssential = isEssential;
+      return this;
+    }
+
+    /**
+     * Set the maximum time a request may wait for a rate limit to expire. If not set, or set to
+     * zero, requests that are rate limited fail immediately.
+     *
+     * @param maxWait the maximum time to wait
+     * @return this
+     */
+    public Builder setMaxWait(Duration maxWait) {
+      this.maxWait = maxWait;
+      return this;
+    }
+
+    /**
+     * Set the metrics to record rate limiting and latency with. If not set nothing is recorded.
+     *
+     * @param metrics the metrics to record with
+     * @return this
+     */
+    public Builder setMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * Build the {@code RateLimitInterceptor} instance.
+     *
+     * @return the built RateLimitInterceptor instance
+     */
+    public RateLimitInterceptor build() {
+      return new RateLimitInterceptor(this);
+    }
+  }
 }
@@ -0,0 +1,54 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A running estimate of the offset between Discord's clock and our local clock.
+ *
+ * <p>Samples are taken from the {@code Date} header of responses. As that header only has second
+ * precision each sample is assumed to be taken halfway through the second, and samples are smoothed
+ * so that a single slow response does not move the estimate too far.
+ */
+class ServerClockOffset {
+
+  private static final long HALF_SECOND_MILLIS = 500;
+
+  private static final double SMOOTHING = 0.2;
+
+  private volatile boolean sampled = false;
+
+  private volatile double offsetMillis = 0;
+
+  /**
+   * Record a sample of the server's time.
+   *
+   * @param serverDate the time as reported by the server
+   * @param localNow the local time at which the server time was received
+   */
+  synchronized void update(Instant serverDate, Instant localNow) {
+    long sample = serverDate.toEpochMilli() + HALF_SECOND_MILLIS - localNow.toEpochMilli();
+
+    offsetMillis = sampled ? offsetMillis + SMOOTHING * (sample - offsetMillis) : sample;
+    sampled = true;
+  }
+
+  /**
+   * Returns the estimated amount of time the server's clock is ahead of ours.
+   *
+   * @return the estimated offset
+   */
+  Duration get() {
+    return Duration.ofMillis(Math.round(offsetMillis));
+  }
+
+  /**
+   * Converts a time as reported by the server into local time.
+   *
+   * @param serverInstant the time on the server's clock
+   * @return the equivalent time on our local clock
+   */
+  Instant toLocal(Instant serverInstant) {
+    return serverInstant.minus(get());
+  }
+}
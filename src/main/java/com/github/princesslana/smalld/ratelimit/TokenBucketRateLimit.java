@@ -0,0 +1,70 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RateLimit} that issues a fixed number of permits per period, allowing them to be used in
+ * a burst.
+ *
+ * <p>This is implemented as a generic cell rate algorithm, which is equivalent to a token bucket
+ * but only requires a single value of state. Permits are acquired with a compare and set of that
+ * value, so {@link #acquire()} never blocks.
+ */
+public class TokenBucketRateLimit implements RateLimit {
+
+  private final Clock clock;
+
+  private final long intervalNanos;
+
+  private final long toleranceNanos;
+
+  private final AtomicLong theoreticalArrivalNanos = new AtomicLong(Long.MIN_VALUE);
+
+  /**
+   * Constructs a {@code TokenBucketRateLimit} that will issue {@code permits} permits every {@code
+   * period}.
+   *
+   * @param clock a source for the current {@link Instant}
+   * @param permits the number of permits issued per period
+   * @param period the period over which permits are issued
+   */
+  public TokenBucketRateLimit(Clock clock, long permits, Duration period) {
+    if (permits <= 0) {
+      throw new IllegalArgumentException("permits must be positive");
+    }
+
+    this.clock = clock;
+    this.intervalNanos = period.toNanos() / permits;
+    this.toleranceNanos = intervalNanos * (permits - 1);
+  }
+
+  @Override
+  public void acquire() {
+    long now = toNanos(clock.instant());
+
+    while (true) {
+      long tat = theoreticalArrivalNanos.get();
+      long start = Math.max(tat, now);
+
+      if (start - now > toleranceNanos) {
+        throw new RateLimitException(toInstant(start - toleranceNanos));
+      }
+
+      if (theoreticalArrivalNanos.compareAndSet(tat, start + intervalNanos)) {
+        return;
+      }
+    }
+  }
+
+  private static long toNanos(Instant instant) {
+    return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+  }
+
+  private static Instant toInstant(long nanos) {
+    return Instant.ofEpochSecond(0, nanos);
+  }
+}
@@ -2,13 +2,22 @@ package com.github.princesslana.smalld.test;
 
 import com.github.princesslana.smalld.Attachment;
 import com.github.princesslana.smalld.Config;
+import com.github.princesslana.smalld.RequestOptions;
+import com.github.princesslana.smalld.ResponseHandler;
 import com.github.princesslana.smalld.SmallD;
+import com.github.princesslana.smalld.SmallDException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import okio.ByteString;
 
 /**
  * Allows the mocking of {@link SmallD} for use in unit testing. Provides the ability to emulate
@@ -22,6 +31,8 @@ public class MockSmallD extends SmallD {
 
   private final List<Consumer<String>> listeners = new ArrayList<>();
 
+  private final List<Consumer<ByteString>> bytesListeners = new ArrayList<>();
+
   private final BlockingQueue<String> sentPayloads = new ArrayBlockingQueue<>(100, true);
 
   private final BlockingQueue<SentRequest> sentRequests = new ArrayBlockingQueue<>(100, true);
@@ -40,6 +51,11 @@ public class MockSmallD extends SmallD {
    */
   public void receivePayload(String payload) {
     listeners.forEach(l -> l.accept(payload));
+
+    if (!bytesListeners.isEmpty()) {
+      ByteString bytes = ByteString.encodeUtf8(payload);
+      bytesListeners.forEach(l -> l.accept(bytes));
+    }
   }
 
   @Override
@@ -47,6 +63,16 @@ public class MockSmallD extends SmallD {
     listeners.add(listener);
   }
 
+  @Override
+  public void onGatewayPayload(String name, Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void onGatewayPayloadBytes(Consumer<ByteString> listener) {
+    bytesListeners.add(listener);
+  }
+
   @Override
   public void sendGatewayPayload(String payload) {
     sentPayloads.add(payload);
@@ -91,12 +117,58 @@ public class MockSmallD extends SmallD {
     return "";
   }
 
+  @Override
+  public <T> T get(String path, Map<String, Object> parameters, ResponseHandler<T> handler) {
+    sentRequests.add(new SentRequest("GET", path, ""));
+    try {
+      return handler.handle(new StringReader(""));
+    } catch (IOException e) {
+      throw new SmallDException(e);
+    }
+  }
+
   @Override
   public String post(String path, String payload, Attachment... attachments) {
     sentRequests.add(new SentRequest("POST", path, payload));
     return "";
   }
 
+  @Override
+  public String get(String path, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(new SentRequest("GET", path, ""));
+    return "";
+  }
+
+  @Override
+  public String post(
+      String path,
+      String payload,
+      Map<String, Object> parameters,
+      RequestOptions options,
+      Attachment... attachments) {
+    sentRequests.add(new SentRequest("POST", path, payload));
+    return "";
+  }
+
+  @Override
+  public String put(
+      String path, String payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(new SentRequest("PUT", path, payload));
+    return "";
+  }
+
+  @Override
+  public String patch(String path, String payload, RequestOptions options) {
+    sentRequests.add(new SentRequest("PATCH", path, payload));
+    return "";
+  }
+
+  @Override
+  public String delete(String path, RequestOptions options) {
+    sentRequests.add(new SentRequest("DELETE", path, ""));
+    return "";
+  }
+
   @Override
   public String put(String path, String payload) {
     sentRequests.add(new SentRequest("PUT", path, payload));
@@ -109,6 +181,72 @@ public class MockSmallD extends SmallD {
     return "";
   }
 
+  @Override
+  public String post(
+      String path, byte[] payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(new SentRequest("POST", path, new String(payload, StandardCharsets.UTF_8)));
+    return "";
+  }
+
+  @Override
+  public String post(
+      String path, ByteBuffer payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(
+        new SentRequest(
+            "POST", path, StandardCharsets.UTF_8.decode(payload.duplicate()).toString()));
+    return "";
+  }
+
+  @Override
+  public String post(
+      String path, ByteString payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(new SentRequest("POST", path, payload.utf8()));
+    return "";
+  }
+
+  @Override
+  public String put(
+      String path, byte[] payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(new SentRequest("PUT", path, new String(payload, StandardCharsets.UTF_8)));
+    return "";
+  }
+
+  @Override
+  public String put(
+      String path, ByteBuffer payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(
+        new SentRequest(
+            "PUT", path, StandardCharsets.UTF_8.decode(payload.duplicate()).toString()));
+    return "";
+  }
+
+  @Override
+  public String put(
+      String path, ByteString payload, Map<String, Object> parameters, RequestOptions options) {
+    sentRequests.add(new SentRequest("PUT", path, payload.utf8()));
+    return "";
+  }
+
+  @Override
+  public String patch(String path, byte[] payload, RequestOptions options) {
+    sentRequests.add(new SentRequest("PATCH", path, new String(payload, StandardCharsets.UTF_8)));
+    return "";
+  }
+
+  @Override
+  public String patch(String path, ByteBuffer payload, RequestOptions options) {
+    sentRequests.add(
+        new SentRequest(
+            "PATCH", path, StandardCharsets.UTF_8.decode(payload.duplicate()).toString()));
+    return "";
+  }
+
+  @Override
+  public String patch(String path, ByteString payload, RequestOptions options) {
+    sentRequests.add(new SentRequest("PATCH", path, payload.utf8()));
+    return "";
+  }
+
   @Override
   public String delete(String path) {
     sentRequests.add(new SentRequest("DELETE", path, ""));
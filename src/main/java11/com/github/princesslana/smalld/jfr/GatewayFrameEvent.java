@@ -0,0 +1,26 @@
+package com.github.princesslana.smalld.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A frame received from the Discord gateway. */
+@Name("com.github.princesslana.smalld.GatewayFrame")
+@Label("Gateway Frame")
+@Category("SmallD")
+@Description("A frame received from the Discord gateway")
+class GatewayFrameEvent extends Event {
+
+  @Label("Op")
+  int op;
+
+  @Label("Event Type")
+  String t;
+
+  @Label("Size")
+  @DataAmount
+  long size;
+}
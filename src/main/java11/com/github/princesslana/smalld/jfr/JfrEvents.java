@@ -0,0 +1,152 @@
+package com.github.princesslana.smalld.jfr;
+
+import com.github.princesslana.smalld.ratelimit.RateLimitBucket;
+
+/**
+ * Emits Java Flight Recorder events for SmallD activity.
+ *
+ * <p>This is the Java 11 implementation, which emits {@code jdk.jfr} events under the {@code
+ * SmallD} category. Event objects are only created while the event type is enabled.
+ */
+public final class JfrEvents {
+
+  private static final GatewayFrameEvent GATEWAY_FRAME = new GatewayFrameEvent();
+
+  private static final ListenerEvent LISTENER = new ListenerEvent();
+
+  private static final RestCallEvent REST_CALL = new RestCallEvent();
+
+  private static final RateLimitWaitEvent RATE_LIMIT_WAIT = new RateLimitWaitEvent();
+
+  private JfrEvents() {}
+
+  /**
+   * Returns whether gateway frame events are being recorded.
+   *
+   * @return whether gateway frame events are recorded
+   */
+  public static boolean isGatewayFrameEnabled() {
+    return GATEWAY_FRAME.isEnabled();
+  }
+
+  /**
+   * Record the receipt of a gateway frame.
+   *
+   * @param op the op of the payload, or -1 if not known
+   * @param t the event type of the payload, or null if there is none
+   * @param size the size of the frame, in characters for text frames and bytes for binary frames
+   */
+  public static void gatewayFrame(int op, String t, long size) {
+    GatewayFrameEvent event = new GatewayFrameEvent();
+    if (event.shouldCommit()) {
+      event.op = op;
+      event.t = t;
+      event.size = size;
+      event.commit();
+    }
+  }
+
+  /**
+   * Begin recording the execution of a gateway listener.
+   *
+   * @return a token to pass to {@link #endListener(Object, String)}, or null if not recording
+   */
+  public static Object beginListener() {
+    if (!LISTENER.isEnabled()) {
+      return null;
+    }
+
+    ListenerEvent event = new ListenerEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Finish recording the execution of a gateway listener.
+   *
+   * @param token the token returned by {@link #beginListener()}
+   * @param listener the name of the listener
+   */
+  public static void endListener(Object token, String listener) {
+    if (token != null) {
+      ListenerEvent event = (ListenerEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.listener = listener;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Begin recording a REST call.
+   *
+   * @return a token to pass to {@link #endRestCall(Object, String, String, int)}, or null if not
+   *     recording
+   */
+  public static Object beginRestCall() {
+    if (!REST_CALL.isEnabled()) {
+      return null;
+    }
+
+    RestCallEvent event = new RestCallEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Finish recording a REST call.
+   *
+   * @param token the token returned by {@link #beginRestCall()}
+   * @param method the HTTP method
+   * @param route the route of the request, as given by {@link RateLimitBucket#getRoute()}
+   * @param status the HTTP status of the response, or -1 if there was no response
+   */
+  public static void endRestCall(Object token, String method, String route, int status) {
+    if (token != null) {
+      RestCallEvent event = (RestCallEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.method = method;
+        event.route = route;
+        event.status = status;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Begin recording the time a REST request waits for rate limits.
+   *
+   * @return a token to pass to {@link #endRateLimitWait(Object, String, boolean)}, or null if not
+   *     recording
+   */
+  public static Object beginRateLimitWait() {
+    if (!RATE_LIMIT_WAIT.isEnabled()) {
+      return null;
+    }
+
+    RateLimitWaitEvent event = new RateLimitWaitEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Finish recording the time a REST request waited for rate limits.
+   *
+   * @param token the token returned by {@link #beginRateLimitWait()}
+   * @param route the route of the request, as given by {@link RateLimitBucket#getRoute()}
+   * @param rejected whether the request was refused because of a rate limit
+   */
+  public static void endRateLimitWait(Object token, String route, boolean rejected) {
+    if (token != null) {
+      RateLimitWaitEvent event = (RateLimitWaitEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.route = route;
+        event.rejected = rejected;
+        event.commit();
+      }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.princesslana.smalld.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** The execution of a gateway payload listener. */
+@Name("com.github.princesslana.smalld.Listener")
+@Label("Gateway Listener")
+@Category("SmallD")
+@Description("The execution of a gateway payload listener on the dispatch thread")
+class ListenerEvent extends Event {
+
+  @Label("Listener")
+  String listener;
+}
@@ -0,0 +1,21 @@
+package com.github.princesslana.smalld.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Time a REST request spent waiting for rate limits. */
+@Name("com.github.princesslana.smalld.RateLimitWait")
+@Label("Rate Limit Wait")
+@Category("SmallD")
+@Description("Time a REST request spent waiting for rate limits, and whether it was refused")
+class RateLimitWaitEvent extends Event {
+
+  @Label("Route")
+  String route;
+
+  @Label("Rejected")
+  boolean rejected;
+}
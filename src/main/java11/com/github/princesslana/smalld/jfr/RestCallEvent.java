@@ -0,0 +1,24 @@
+package com.github.princesslana.smalld.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A call to the Discord REST API. */
+@Name("com.github.princesslana.smalld.RestCall")
+@Label("REST Call")
+@Category("SmallD")
+@Description("A call to the Discord REST API, including rate limit waits and retries")
+class RestCallEvent extends Event {
+
+  @Label("Method")
+  String method;
+
+  @Label("Route")
+  String route;
+
+  @Label("Status")
+  int status;
+}
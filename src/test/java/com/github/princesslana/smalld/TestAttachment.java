@@ -1,12 +1,23 @@
 package com.github.princesslana.smalld;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import okhttp3.RequestBody;
+import okio.Buffer;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class TestAttachment {
 
+  @TempDir Path directory;
+
   @Test
   void getBytes_whenFile_shouldReturnContentsInBytes() throws Exception {
     Attachment a =
@@ -20,4 +31,61 @@ class TestAttachment {
     Attachment a = new Attachment("", null, new File("notfound.txt"));
     Assertions.assertThatThrownBy(a::getBytes).isInstanceOf(SmallDException.class);
   }
+
+  @Test
+  void toRequestBody_whenFile_shouldHaveKnownLengthAndContents() throws Exception {
+    Attachment a =
+        new Attachment(
+            "", "text/plain", new File(getClass().getResource("multipart_input.txt").toURI()));
+
+    RequestBody body = a.toRequestBody();
+    Buffer written = new Buffer();
+    body.writeTo(written);
+
+    Assertions.assertThat(body.contentLength()).isEqualTo(4);
+    Assertions.assertThat(written.readUtf8()).isEqualTo("xyz\n");
+  }
+
+  @Test
+  void toRequestBody_whenStream_shouldBeRewritable() throws Exception {
+    Attachment a =
+        new Attachment(
+            "",
+            "text/plain",
+            () -> new ByteArrayInputStream("abc".getBytes(Charset.forName("UTF-8"))));
+
+    RequestBody body = a.toRequestBody();
+
+    for (int i = 0; i < 2; i++) {
+      Buffer written = new Buffer();
+      body.writeTo(written);
+      Assertions.assertThat(written.readUtf8()).isEqualTo("abc");
+    }
+  }
+
+  @Test
+  void toRequestBody_whenFileGrows_shouldWriteLengthFromWhenCreated() throws Exception {
+    Path file = directory.resolve("growing.txt");
+    Files.write(file, "abcd".getBytes(StandardCharsets.UTF_8));
+
+    RequestBody body = new Attachment("", "text/plain", file.toFile()).toRequestBody();
+    Files.write(file, "efgh".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    Buffer written = new Buffer();
+    body.writeTo(written);
+
+    Assertions.assertThat(body.contentLength()).isEqualTo(4);
+    Assertions.assertThat(written.readUtf8()).isEqualTo("abcd");
+  }
+
+  @Test
+  void toRequestBody_whenFileTruncated_shouldThrowIOException() throws Exception {
+    Path file = directory.resolve("truncated.txt");
+    Files.write(file, "abcd".getBytes(StandardCharsets.UTF_8));
+
+    RequestBody body = new Attachment("", "text/plain", file.toFile()).toRequestBody();
+    Files.write(file, "ab".getBytes(StandardCharsets.UTF_8));
+
+    Assertions.assertThatThrownBy(() -> body.writeTo(new Buffer())).isInstanceOf(IOException.class);
+  }
 }
@@ -0,0 +1,157 @@
+package com.github.princesslana.smalld;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestAttachmentCache {
+
+  private Path spillDirectory;
+
+  private AttachmentCache subject;
+
+  @BeforeEach
+  void subject() throws Exception {
+    spillDirectory = Files.createTempDirectory("smalld-test");
+    subject =
+        AttachmentCache.builder()
+            .setMaximumSize(10)
+            .setSpillThreshold(4)
+            .setSpillDirectory(spillDirectory)
+            .build();
+  }
+
+  @AfterEach
+  void cleanUp() throws Exception {
+    subject.close();
+    Files.deleteIfExists(spillDirectory);
+  }
+
+  @Test
+  void get_whenSameKey_shouldFetchOnce() {
+    AtomicInteger fetches = new AtomicInteger();
+    Supplier<InputStream> stream = counting(fetches, "abc");
+
+    Attachment first = subject.get("a.txt", "text/plain", "key", stream);
+    Attachment second = subject.get("b.txt", "text/plain", "key", stream);
+
+    Assertions.assertThat(fetches).hasValue(1);
+    Assertions.assertThat(second.getBytes()).isEqualTo(first.getBytes());
+    Assertions.assertThat(second.getFilename()).isEqualTo("b.txt");
+    Assertions.assertThat(subject.getHitCount()).isEqualTo(1);
+    Assertions.assertThat(subject.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void get_whenDifferentKeysWithSameContent_shouldStoreOnce() {
+    subject.get("", "text/plain", "one", stream("abc"));
+    subject.get("", "text/plain", "two", stream("abc"));
+
+    Assertions.assertThat(subject.getContentCount()).isEqualTo(1);
+    Assertions.assertThat(subject.getSize()).isEqualTo(3);
+  }
+
+  @Test
+  void get_whenLargerThanSpillThreshold_shouldStoreInFile() throws Exception {
+    Attachment a = subject.get("", "text/plain", "key", stream("abcdef"));
+
+    Assertions.assertThat(a.getBytes()).isEqualTo(bytes("abcdef"));
+    Assertions.assertThat(Files.list(spillDirectory)).hasSize(1);
+  }
+
+  @Test
+  void get_whenOverMaximumSize_shouldEvictLeastRecentlyUsed() throws Exception {
+    AtomicInteger fetches = new AtomicInteger();
+
+    subject.get("", "text/plain", "first", counting(fetches, "abcdef")).release();
+    subject.get("", "text/plain", "second", stream("ghijkl")).release();
+    subject.get("", "text/plain", "first", counting(fetches, "abcdef")).release();
+
+    Assertions.assertThat(fetches).hasValue(2);
+    Assertions.assertThat(subject.getSize()).isEqualTo(6);
+    Assertions.assertThat(Files.list(spillDirectory)).hasSize(1);
+  }
+
+  @Test
+  void get_whenEvictedWhileInUse_shouldDeleteFileOnceReleased() throws Exception {
+    Attachment inUse = subject.get("", "text/plain", "first", stream("abcdef"));
+    subject.get("", "text/plain", "second", stream("ghijkl")).release();
+
+    Assertions.assertThat(subject.getSize()).isEqualTo(6);
+    Assertions.assertThat(inUse.getBytes()).isEqualTo(bytes("abcdef"));
+
+    inUse.release();
+
+    Assertions.assertThat(Files.list(spillDirectory)).hasSize(1);
+  }
+
+  @Test
+  void get_whenConcurrentMissesForSameKey_shouldFetchOnce() throws Exception {
+    AtomicInteger fetches = new AtomicInteger();
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+
+    Supplier<InputStream> slow =
+        () -> {
+          fetches.incrementAndGet();
+          fetching.countDown();
+          try {
+            proceed.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return stream("abcdef").get();
+        };
+
+    CompletableFuture<Attachment> first =
+        CompletableFuture.supplyAsync(() -> subject.get("a", "text/plain", "key", slow));
+    fetching.await();
+    CompletableFuture<Attachment> second =
+        CompletableFuture.supplyAsync(() -> subject.get("b", "text/plain", "key", slow));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getHitCount() == 1);
+    proceed.countDown();
+
+    Assertions.assertThat(first.get(1, TimeUnit.SECONDS).getBytes()).isEqualTo(bytes("abcdef"));
+    Assertions.assertThat(second.get(1, TimeUnit.SECONDS).getBytes()).isEqualTo(bytes("abcdef"));
+    Assertions.assertThat(fetches).hasValue(1);
+    Assertions.assertThat(subject.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void close_shouldDeleteFiles() throws Exception {
+    subject.get("", "text/plain", "key", stream("abcdef"));
+
+    subject.close();
+
+    Assertions.assertThat(Files.list(spillDirectory)).isEmpty();
+    Assertions.assertThat(subject.getSize()).isZero();
+  }
+
+  private static Supplier<InputStream> counting(AtomicInteger count, String content) {
+    return () -> {
+      count.incrementAndGet();
+      return stream(content).get();
+    };
+  }
+
+  private static Supplier<InputStream> stream(String content) {
+    return () -> new ByteArrayInputStream(bytes(content));
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,42 @@
+package com.github.princesslana.smalld;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestCancellation {
+
+  private final Cancellation subject = new Cancellation();
+
+  @Test
+  void cancel_shouldRunListenersOnce() {
+    AtomicInteger runs = new AtomicInteger();
+    subject.onCancel(runs::incrementAndGet);
+
+    subject.cancel();
+    subject.cancel();
+
+    Assertions.assertThat(subject.isCancelled()).isTrue();
+    Assertions.assertThat(runs).hasValue(1);
+  }
+
+  @Test
+  void onCancel_whenAlreadyCancelled_shouldRunImmediately() {
+    AtomicInteger runs = new AtomicInteger();
+    subject.cancel();
+
+    subject.onCancel(runs::incrementAndGet);
+
+    Assertions.assertThat(runs).hasValue(1);
+  }
+
+  @Test
+  void onCancel_whenRemoved_shouldNotRun() {
+    AtomicInteger runs = new AtomicInteger();
+
+    subject.onCancel(runs::incrementAndGet).run();
+    subject.cancel();
+
+    Assertions.assertThat(runs).hasValue(0);
+  }
+}
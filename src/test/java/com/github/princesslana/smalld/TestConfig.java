@@ -17,6 +17,12 @@ class TestConfig {
     Assertions.assertThat(cfg.getClock()).isNotNull();
   }
 
+  @Test
+  void getGlobalRateLimit_whenDefaults_shouldBeFiftyPerSecond() {
+    Config cfg = Config.builder().build();
+    Assertions.assertThat(cfg.getGlobalRateLimit()).isEqualTo(50);
+  }
+
   @Test
   void getIntents_whenDefaults_shouldBeUnprivileged() {
     Config cfg = Config.builder().build();
@@ -32,4 +38,16 @@ class TestConfig {
 
     Assertions.assertThat(cfg.getIntents()).isEqualTo(1 << 9 | 1 << 12);
   }
+
+  @Test
+  void isHttp2_whenDefaults_shouldBeTrue() {
+    Config cfg = Config.builder().build();
+    Assertions.assertThat(cfg.isHttp2()).isTrue();
+  }
+
+  @Test
+  void getWarmUpConnections_whenDefaults_shouldBeZero() {
+    Config cfg = Config.builder().build();
+    Assertions.assertThat(cfg.getWarmUpConnections()).isZero();
+  }
 }
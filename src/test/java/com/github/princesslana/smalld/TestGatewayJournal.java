@@ -0,0 +1,153 @@
+package com.github.princesslana.smalld;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestGatewayJournal {
+
+  private static final Instant NOW = Instant.parse("2020-08-14T19:42:07.318123456Z");
+
+  @TempDir Path directory;
+
+  private final MutableClock clock = new MutableClock(NOW);
+
+  @Test
+  void read_whenRecorded_shouldReturnPayloadsInOrder() {
+    try (GatewayJournal subject = builder().build()) {
+      subject.record(0, "{\"op\":0,\"t\":\"READY\"}");
+      clock.plusMillis(250);
+      subject.record(3, "{\"op\":0,\"d\":{\"content\":\"café 👍\"}}");
+    }
+
+    List<GatewayJournal.Entry> entries = read();
+
+    Assertions.assertThat(entries)
+        .extracting(GatewayJournal.Entry::getPayload)
+        .containsExactly(
+            "{\"op\":0,\"t\":\"READY\"}", "{\"op\":0,\"d\":{\"content\":\"café 👍\"}}");
+    Assertions.assertThat(entries).extracting(GatewayJournal.Entry::getShard).containsExactly(0, 3);
+    Assertions.assertThat(entries)
+        .extracting(GatewayJournal.Entry::getTimestamp)
+        .containsExactly(NOW, NOW.plusMillis(250));
+  }
+
+  @Test
+  void record_whenSegmentFull_shouldStartNewSegment() throws Exception {
+    try (GatewayJournal subject = builder().setSegmentSize(64).build()) {
+      IntStream.range(0, 10).forEach(i -> subject.record(0, "payload " + i));
+    }
+
+    Assertions.assertThat(segmentCount()).isEqualTo(5);
+    Assertions.assertThat(read())
+        .extracting(GatewayJournal.Entry::getPayload)
+        .containsExactlyElementsOf(payloads(10));
+  }
+
+  @Test
+  void record_whenPayloadLargerThanSegment_shouldWriteItToOwnSegment() throws Exception {
+    String large = String.join("", payloads(100));
+
+    try (GatewayJournal subject = builder().setSegmentSize(64).build()) {
+      subject.record(0, "small");
+      subject.record(0, large);
+      subject.record(0, "small");
+    }
+
+    Assertions.assertThat(segmentCount()).isEqualTo(3);
+    Assertions.assertThat(read())
+        .extracting(GatewayJournal.Entry::getPayload)
+        .containsExactly("small", large, "small");
+  }
+
+  @Test
+  void record_whenDirectoryHasJournal_shouldAppendToIt() {
+    try (GatewayJournal subject = builder().build()) {
+      subject.record(0, "first");
+    }
+
+    try (GatewayJournal subject = builder().build()) {
+      subject.record(0, "second");
+    }
+
+    Assertions.assertThat(read())
+        .extracting(GatewayJournal.Entry::getPayload)
+        .containsExactly("first", "second");
+  }
+
+  @Test
+  void record_whenEarlierSegmentDeleted_shouldStartSegmentAfterLast() throws Exception {
+    try (GatewayJournal subject = builder().setSegmentSize(64).build()) {
+      IntStream.range(0, 4).forEach(i -> subject.record(0, "payload " + i));
+    }
+
+    Files.delete(directory.resolve(String.format("%020d.journal", 0)));
+
+    try (GatewayJournal subject = builder().build()) {
+      subject.record(0, "appended");
+      subject.close();
+
+      Assertions.assertThat(subject.getDroppedCount()).isZero();
+    }
+
+    Assertions.assertThat(read())
+        .extracting(GatewayJournal.Entry::getPayload)
+        .containsExactly("payload 2", "payload 3", "appended");
+  }
+
+  @Test
+  void close_shouldTruncateSegmentToRecords() throws Exception {
+    try (GatewayJournal subject = builder().build()) {
+      subject.record(0, "first");
+      subject.record(0, "second");
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      Path segment = files.findFirst().get();
+      Assertions.assertThat(Files.size(segment)).isEqualTo(4 + 16 + 5 + 16 + 6);
+    }
+
+    Assertions.assertThat(read())
+        .extracting(GatewayJournal.Entry::getPayload)
+        .containsExactly("first", "second");
+  }
+
+  @Test
+  void record_whenClosed_shouldNotRecord() {
+    GatewayJournal subject = builder().build();
+    subject.close();
+
+    subject.record(0, "payload");
+
+    Assertions.assertThat(subject.getRecordedCount()).isZero();
+    Assertions.assertThat(subject.getDroppedCount()).isEqualTo(1);
+    Assertions.assertThat(read()).isEmpty();
+  }
+
+  private GatewayJournal.Builder builder() {
+    return GatewayJournal.builder().setDirectory(directory).setClock(clock);
+  }
+
+  private List<GatewayJournal.Entry> read() {
+    try (Stream<GatewayJournal.Entry> entries = GatewayJournal.read(directory)) {
+      return entries.collect(Collectors.toList());
+    }
+  }
+
+  private long segmentCount() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  private static List<String> payloads(int count) {
+    return IntStream.range(0, count).mapToObj(i -> "payload " + i).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,36 @@
+package com.github.princesslana.smalld;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestGatewayPayload {
+
+  @Test
+  void peek_whenTopLevelField_shouldReturnValue() {
+    String payload = "{\"t\":\"MESSAGE_CREATE\",\"s\":42,\"op\":0,\"d\":{}}";
+
+    Assertions.assertThat(GatewayPayload.peek(payload, "t")).isEqualTo("MESSAGE_CREATE");
+    Assertions.assertThat(GatewayPayload.peek(payload, "op")).isEqualTo("0");
+    Assertions.assertThat(GatewayPayload.peek(payload, "s")).isEqualTo("42");
+  }
+
+  @Test
+  void peek_whenFieldOnlyNested_shouldReturnNull() {
+    String payload = "{\"op\":0,\"d\":{\"t\":\"nested\",\"a\":[{\"t\":1}]},\"x\":\"\\\"t\\\"\"}";
+
+    Assertions.assertThat(GatewayPayload.peek(payload, "t")).isNull();
+  }
+
+  @Test
+  void peek_whenFieldAfterNested_shouldReturnTopLevelValue() {
+    String payload = "{ \"d\" : {\"t\":\"nested\"}, \"t\" : \"READY\" , \"op\" : 0 }";
+
+    Assertions.assertThat(GatewayPayload.peek(payload, "t")).isEqualTo("READY");
+    Assertions.assertThat(GatewayPayload.peek(payload, "op")).isEqualTo("0");
+  }
+
+  @Test
+  void peek_whenNull_shouldReturnNull() {
+    Assertions.assertThat(GatewayPayload.peek("{\"t\":null,\"op\":11}", "t")).isNull();
+  }
+}
@@ -0,0 +1,191 @@
+package com.github.princesslana.smalld;
+
+import com.github.princesslana.smalld.fake.FakeDiscord;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestGatewayReplayer {
+
+  private static final Instant NOW = Instant.parse("2020-08-14T19:42:07Z");
+
+  private static final String HELLO = "{\"op\":10,\"d\":{\"heartbeat_interval\":41250}}";
+
+  @TempDir Path directory;
+
+  private final MutableClock clock = new MutableClock(NOW);
+
+  private final List<String> received = new CopyOnWriteArrayList<>();
+
+  private SmallD smalld;
+
+  @BeforeEach
+  void subject() {
+    smalld = new SmallD(Config.builder().setToken("Replay.Token").build());
+    smalld.onGatewayPayload(received::add);
+  }
+
+  @AfterEach
+  void close() {
+    smalld.close();
+  }
+
+  @Test
+  void replay_whenAsFastAsPossible_shouldNotifyListenersInOrder() throws Exception {
+    record(HELLO, dispatch(1), dispatch(2), dispatch(3));
+
+    long replayed = builder().setSpeed(0).build().replay(smalld);
+
+    Assertions.assertThat(replayed).isEqualTo(3);
+    awaitReceived(3);
+    Assertions.assertThat(received).containsExactly(dispatch(1), dispatch(2), dispatch(3));
+  }
+
+  @Test
+  void replay_whenNotDispatchOnly_shouldReplayEveryPayload() throws Exception {
+    record(HELLO, dispatch(1));
+
+    builder().setSpeed(0).setDispatchOnly(false).build().replay(smalld);
+
+    awaitReceived(2);
+    Assertions.assertThat(received).containsExactly(HELLO, dispatch(1));
+  }
+
+  @Test
+  void replay_whenOriginalSpeed_shouldKeepDelays() throws Exception {
+    try (GatewayJournal journal = journal()) {
+      journal.record(0, dispatch(1));
+      clock.plusMillis(300);
+      journal.record(0, dispatch(2));
+    }
+
+    long start = System.nanoTime();
+    builder().build().replay(smalld);
+
+    Assertions.assertThat(System.nanoTime() - start)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+  }
+
+  @Test
+  void replay_whenFasterSpeed_shouldShortenDelays() throws Exception {
+    try (GatewayJournal journal = journal()) {
+      journal.record(0, dispatch(1));
+      clock.plusMillis(10000);
+      journal.record(0, dispatch(2));
+    }
+
+    long start = System.nanoTime();
+    builder().setSpeed(50).build().replay(smalld);
+
+    Assertions.assertThat(System.nanoTime() - start)
+        .isBetween(TimeUnit.MILLISECONDS.toNanos(200), TimeUnit.SECONDS.toNanos(5));
+  }
+
+  @Test
+  void replay_whenFromAndUntil_shouldReplayOnlyThatPeriod() throws Exception {
+    try (GatewayJournal journal = journal()) {
+      for (int i = 0; i < 5; i++) {
+        journal.record(0, dispatch(i));
+        clock.plusMillis(1000);
+      }
+    }
+
+    builder()
+        .setSpeed(0)
+        .setFrom(NOW.plusSeconds(1))
+        .setUntil(NOW.plusSeconds(3))
+        .build()
+        .replay(smalld);
+
+    awaitReceived(2);
+    Assertions.assertThat(received).containsExactly(dispatch(1), dispatch(2));
+  }
+
+  @Test
+  void replay_whenShard_shouldReplayOnlyThatShard() throws Exception {
+    try (GatewayJournal journal = journal()) {
+      journal.record(0, dispatch(1));
+      journal.record(1, dispatch(2));
+      journal.record(0, dispatch(3));
+    }
+
+    builder().setSpeed(0).setShard(1).build().replay(smalld);
+
+    awaitReceived(1);
+    Assertions.assertThat(received).containsExactly(dispatch(2));
+  }
+
+  @Test
+  void replay_whenRecordedFromGateway_shouldReplaySameDispatches() throws Exception {
+    List<String> live = new CopyOnWriteArrayList<>();
+
+    try (FakeDiscord discord = FakeDiscord.builder().build();
+        GatewayJournal journal = GatewayJournal.builder().setDirectory(directory).build()) {
+      discord.start();
+
+      try (SmallD recording =
+          SmallD.create(
+              Config.builder()
+                  .setToken("Fake.Token")
+                  .setBaseUrl(discord.getBaseUrl())
+                  .setWarmUpConnections(0)
+                  .setGatewayJournal(journal)
+                  .build())) {
+        recording.onGatewayPayload(
+            p -> {
+              if (GatewayPayload.parse(p).isT("MESSAGE_CREATE")) {
+                live.add(p);
+              }
+            });
+
+        CompletableFuture.runAsync(recording::run);
+        Awaitility.await()
+            .atMost(5, TimeUnit.SECONDS)
+            .until(() -> discord.getIdentifiedSessionCount() == 1);
+
+        discord.storm("MESSAGE_CREATE", "{\"content\":\"hi\"}", 100);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> live.size() == 100);
+      }
+    }
+
+    builder().setSpeed(0).build().replay(smalld);
+
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> received.stream().filter(live::contains).count() == 100);
+    Assertions.assertThat(received).noneMatch(p -> p.contains("\"op\":10"));
+  }
+
+  private void record(String... payloads) {
+    try (GatewayJournal journal = journal()) {
+      for (String p : payloads) {
+        journal.record(0, p);
+      }
+    }
+  }
+
+  private GatewayJournal journal() {
+    return GatewayJournal.builder().setDirectory(directory).setClock(clock).build();
+  }
+
+  private GatewayReplayer.Builder builder() {
+    return GatewayReplayer.builder().setDirectory(directory);
+  }
+
+  private void awaitReceived(int count) {
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> received.size() >= count);
+  }
+
+  private static String dispatch(int n) {
+    return "{\"op\":0,\"s\":" + n + ",\"t\":\"MESSAGE_CREATE\",\"d\":{\"id\":\"" + n + "\"}}";
+  }
+}
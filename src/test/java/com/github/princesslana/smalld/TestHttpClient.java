@@ -0,0 +1,353 @@
+package com.github.princesslana.smalld;
+
+import com.github.princesslana.smalld.metrics.InMemoryMetrics;
+import com.github.princesslana.smalld.ratelimit.InvalidRequestGuard;
+import com.github.princesslana.smalld.ratelimit.RateLimit;
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+
+class TestHttpClient {
+
+  private final HttpClient subject =
+      new HttpClient(
+          Config.builder().setToken("Mock.Token").setBaseUrl("https://example.com/api").build());
+
+  @Test
+  void newRequest_shouldResolvePathAgainstBaseUrl() {
+    Request request = subject.newRequest("/channels/123/messages", Collections.emptyMap()).build();
+
+    Assertions.assertThat(request.url().toString())
+        .isEqualTo("https://example.com/api/channels/123/messages");
+  }
+
+  @Test
+  void newRequest_whenSegmentNeedsEncoding_shouldEncodeSegment() {
+    Request request =
+        subject
+            .newRequest("/channels/123/messages/456/reactions/a b/@me", Collections.emptyMap())
+            .build();
+
+    Assertions.assertThat(request.url().encodedPath())
+        .isEqualTo("/api/channels/123/messages/456/reactions/a%20b/@me");
+  }
+
+  @Test
+  void newRequest_whenParameters_shouldAddQueryString() {
+    Request request =
+        subject.newRequest("/guilds/1/members", Collections.singletonMap("limit", 100)).build();
+
+    Assertions.assertThat(request.url().encodedQuery()).isEqualTo("limit=100");
+  }
+
+  @Test
+  void newRequest_shouldAddStaticHeaders() {
+    Request request = subject.newRequest("/gateway/bot", Collections.emptyMap()).build();
+
+    Assertions.assertThat(request.header("Authorization")).isEqualTo("Bot Mock.Token");
+    Assertions.assertThat(request.header("User-Agent")).startsWith("DiscordBot (");
+  }
+
+  @Test
+  void warmUp_whenWarmUpConnections_shouldOpenConnections() throws Exception {
+    List<Socket> accepted = Collections.synchronizedList(new ArrayList<>());
+
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      Thread acceptor =
+          new Thread(
+              () -> {
+                try {
+                  while (true) {
+                    accepted.add(server.accept());
+                  }
+                } catch (Exception e) {
+                  // server closed
+                }
+              });
+      acceptor.setDaemon(true);
+      acceptor.start();
+
+      HttpClient client =
+          new HttpClient(
+              Config.builder()
+                  .setBaseUrl("http://localhost:" + server.getLocalPort() + "/api")
+                  .setWarmUpConnections(3)
+                  .build());
+
+      try {
+        client.warmUp();
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> accepted.size() == 3);
+      } finally {
+        client.close();
+        for (Socket s : accepted) {
+          s.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  void send_whenGlobalRateLimiterShared_shouldAcquireFromItForEveryClient() throws Exception {
+    AtomicInteger acquired = new AtomicInteger();
+    RateLimit shared = acquired::incrementAndGet;
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("{}"));
+      server.enqueue(new MockResponse().setBody("{}"));
+
+      HttpClient first = newClient(server, Config.builder().setGlobalRateLimiter(shared));
+      HttpClient second = newClient(server, Config.builder().setGlobalRateLimiter(shared));
+
+      try {
+        first.send("/channels/1/messages", Request.Builder::get, Collections.emptyMap());
+        second.send("/channels/1/messages", Request.Builder::get, Collections.emptyMap());
+      } finally {
+        first.close();
+        second.close();
+      }
+    }
+
+    Assertions.assertThat(acquired.get()).isEqualTo(2);
+  }
+
+  @Test
+  void send_whenSameTokenWithoutSharedLimiter_shouldApplyEachClientsOwnLimit() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("{}"));
+      server.enqueue(new MockResponse().setBody("{}"));
+
+      HttpClient limited = newClient(server, Config.builder().setGlobalRateLimit(1));
+      HttpClient unlimited = newClient(server, Config.builder().setGlobalRateLimit(100));
+
+      try {
+        limited.send("/channels/1/messages", Request.Builder::get, Collections.emptyMap());
+        unlimited.send("/channels/2/messages", Request.Builder::get, Collections.emptyMap());
+
+        Assertions.assertThatThrownBy(
+                () ->
+                    limited.send(
+                        "/channels/3/messages", Request.Builder::get, Collections.emptyMap()))
+            .isInstanceOf(RateLimitException.class);
+      } finally {
+        limited.close();
+        unlimited.close();
+      }
+    }
+  }
+
+  @Test
+  void send_whenInvalidRequestGuardShared_shouldCountInvalidRequestsFromEveryClient()
+      throws Exception {
+    InvalidRequestGuard shared = new InvalidRequestGuard(100, Duration.ofMinutes(10));
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setResponseCode(401));
+
+      HttpClient first = newClient(server, Config.builder().setInvalidRequestGuard(shared));
+      HttpClient second = newClient(server, Config.builder().setInvalidRequestGuard(shared));
+      HttpClient other = newClient(server, Config.builder());
+
+      try {
+        Assertions.assertThatThrownBy(
+                () -> first.send("/users/@me", Request.Builder::get, Collections.emptyMap()))
+            .isInstanceOf(HttpException.class);
+
+        Assertions.assertThat(second.getInvalidRequestBudget()).isEqualTo(99);
+        Assertions.assertThat(other.getInvalidRequestBudget()).isEqualTo(10_000);
+      } finally {
+        first.close();
+        second.close();
+        other.close();
+      }
+    }
+  }
+
+  @Test
+  void send_whenClientRebuiltAfterClose_shouldKeepRetryBudget() throws Exception {
+    RetryPolicy policy =
+        RetryPolicy.builder().setBackoff(Duration.ZERO, Duration.ZERO).setBudget(0, 1).build();
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setResponseCode(503));
+      server.enqueue(new MockResponse().setBody("{}"));
+      server.enqueue(new MockResponse().setResponseCode(503));
+      server.enqueue(new MockResponse().setBody("{}"));
+
+      HttpClient client = newClient(server, Config.builder().setRetryPolicy(policy));
+
+      try {
+        client.send("/users/@me", Request.Builder::get, Collections.emptyMap());
+        client.close();
+
+        Assertions.assertThatThrownBy(
+                () -> client.send("/users/@me", Request.Builder::get, Collections.emptyMap()))
+            .isInstanceOf(HttpException.ServerException.class);
+        Assertions.assertThat(server.getRequestCount()).isEqualTo(3);
+      } finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  void create_shouldReportInvalidRequestBudgetAsGauge() {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+
+    new HttpClient(Config.builder().setToken("Mock.Token").setMetrics(metrics).build());
+
+    Assertions.assertThat(metrics.getGauge("smalld.rest.invalid_requests.remaining", "shard", "0"))
+        .hasValue(10_000);
+  }
+
+  @Test
+  void create_whenInvalidRequestGuardShared_shouldRegisterGaugeOnce() {
+    InvalidRequestGuard shared = new InvalidRequestGuard(100, Duration.ofMinutes(10));
+    InMemoryMetrics metrics = new InMemoryMetrics();
+
+    new HttpClient(
+        Config.builder()
+            .setToken("Mock.Token")
+            .setShard(0, 2)
+            .setInvalidRequestGuard(shared)
+            .setMetrics(metrics)
+            .build());
+    new HttpClient(
+        Config.builder()
+            .setToken("Mock.Token")
+            .setShard(1, 2)
+            .setInvalidRequestGuard(shared)
+            .setMetrics(metrics)
+            .build());
+
+    Assertions.assertThat(metrics.getGauge("smalld.rest.invalid_requests.remaining", "shard", "0"))
+        .hasValue(100);
+    Assertions.assertThat(metrics.getGauge("smalld.rest.invalid_requests.remaining", "shard", "1"))
+        .isEmpty();
+  }
+
+  @Test
+  void send_whenHandler_shouldStreamBodyWithoutBufferingIt() throws Exception {
+    char[] chunk = new char[1024];
+    Arrays.fill(chunk, 'a');
+    String body = String.join("", Collections.nCopies(64, new String(chunk)));
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(
+          new MockResponse().setBody(body).throttleBody(1024, 100, TimeUnit.MILLISECONDS));
+
+      HttpClient client = newClient(server, Config.builder());
+
+      try {
+        long start = System.nanoTime();
+
+        String first =
+            client.send(
+                "/guilds/1/members",
+                Request.Builder::get,
+                Collections.emptyMap(),
+                r -> {
+                  char[] read = new char[10];
+                  return new String(read, 0, r.read(read));
+                });
+
+        Assertions.assertThat(first).isEqualTo("aaaaaaaaaa");
+        Assertions.assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(3));
+      } finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  void send_whenHandlerThrows_shouldCloseBody() throws Exception {
+    AtomicReference<Reader> reader = new AtomicReference<>();
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("{\"id\":\"1\"}"));
+
+      HttpClient client = newClient(server, Config.builder());
+
+      try {
+        Assertions.assertThatThrownBy(
+                () ->
+                    client.send(
+                        "/guilds/1",
+                        Request.Builder::get,
+                        Collections.emptyMap(),
+                        r -> {
+                          reader.set(r);
+                          throw new IllegalArgumentException("handler failed");
+                        }))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        Assertions.assertThatThrownBy(() -> reader.get().read())
+            .isInstanceOfAny(IOException.class, IllegalStateException.class);
+      } finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  void send_whenHandlerAndErrorStatus_shouldThrowHttpExceptionWithoutCallingHandler()
+      throws Exception {
+    AtomicBoolean handled = new AtomicBoolean();
+
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"code\":10004}"));
+      server.enqueue(new MockResponse().setResponseCode(502).setBody("bad gateway"));
+
+      HttpClient client = newClient(server, Config.builder());
+      ResponseHandler<Boolean> handler = r -> handled.getAndSet(true);
+
+      try {
+        Assertions.assertThatThrownBy(
+                () ->
+                    client.send("/guilds/1", Request.Builder::get, Collections.emptyMap(), handler))
+            .isInstanceOfSatisfying(
+                HttpException.ClientException.class,
+                e -> {
+                  Assertions.assertThat(e.getCode()).isEqualTo(404);
+                  Assertions.assertThat(e.getBody()).isEqualTo("{\"code\":10004}");
+                });
+
+        Assertions.assertThatThrownBy(
+                () ->
+                    client.send("/guilds/1", Request.Builder::get, Collections.emptyMap(), handler))
+            .isInstanceOf(HttpException.ServerException.class);
+
+        Assertions.assertThat(handled).isFalse();
+      } finally {
+        client.close();
+      }
+    }
+  }
+
+  private static HttpClient newClient(MockWebServer server, Config.Builder config) {
+    return new HttpClient(
+        config
+            .setToken("Mock.Token")
+            .setBaseUrl(server.url("/api").toString())
+            .setWarmUpConnections(0)
+            .build());
+  }
+}
@@ -0,0 +1,98 @@
+package com.github.princesslana.smalld;
+
+import com.github.princesslana.smalld.metrics.InMemoryMetrics;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TestListenerMonitor {
+
+  private final InMemoryMetrics metrics = new InMemoryMetrics();
+
+  private ListenerMonitor subject;
+
+  @AfterEach
+  void stop() {
+    subject.stop();
+  }
+
+  @Test
+  void notify_whenSampleRate_shouldTimeOneInEveryRate() {
+    subject = monitor(4, Duration.ZERO);
+    ListenerMonitor.Listener<String> a = subject.listener("a", s -> {});
+    ListenerMonitor.Listener<String> b = subject.listener("b", s -> {});
+
+    for (int i = 0; i < 8; i++) {
+      subject.notify(Arrays.asList(a, b), "payload");
+    }
+
+    Assertions.assertThat(subject.getLatencies().get("a").getCount()).isEqualTo(2);
+    Assertions.assertThat(subject.getLatencies().get("b").getCount()).isEqualTo(2);
+    Assertions.assertThat(
+            metrics
+                .getHistogram("smalld.gateway.listener.invocation", "shard", "0", "listener", "a")
+                .map(h -> h.getCount()))
+        .contains(2L);
+  }
+
+  @Test
+  void notify_whenSampleRateZero_shouldNotTime() {
+    subject = monitor(0, Duration.ZERO);
+    ListenerMonitor.Listener<String> a = subject.listener("a", s -> {});
+
+    subject.notify(Collections.singletonList(a), "payload");
+
+    Assertions.assertThat(subject.getLatencies().get("a").getCount()).isEqualTo(0);
+  }
+
+  @Test
+  void notify_whenListenerSlow_shouldReportOnce() {
+    subject = monitor(1, Duration.ofMillis(50));
+    subject.start();
+
+    ListenerMonitor.Listener<String> slow = subject.listener("slow", s -> sleep(400));
+
+    subject.notify(Collections.singletonList(slow), "payload");
+
+    Awaitility.await()
+        .atMost(1, TimeUnit.SECONDS)
+        .until(() -> metrics.getCount("smalld.gateway.listener.slow", "shard", "0") == 1);
+  }
+
+  @Test
+  void notify_whenListenersFast_shouldNotReport() {
+    subject = monitor(1, Duration.ofMillis(200));
+    subject.start();
+
+    ListenerMonitor.Listener<String> fast = subject.listener("fast", s -> sleep(5));
+
+    for (int i = 0; i < 40; i++) {
+      subject.notify(Collections.singletonList(fast), "payload");
+    }
+
+    Assertions.assertThat(metrics.getCount("smalld.gateway.listener.slow", "shard", "0"))
+        .isEqualTo(0);
+  }
+
+  private ListenerMonitor monitor(int sampleRate, Duration threshold) {
+    return new ListenerMonitor(
+        Config.builder()
+            .setMetrics(metrics)
+            .setListenerTimingSampleRate(sampleRate)
+            .setSlowListenerThreshold(threshold)
+            .build());
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
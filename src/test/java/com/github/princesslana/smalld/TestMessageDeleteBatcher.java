@@ -0,0 +1,191 @@
+package com.github.princesslana.smalld;
+
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.javacrumbs.jsonunit.assertj.JsonAssertions;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TestMessageDeleteBatcher {
+
+  private static final String CHANNEL_ID = "123";
+
+  private static final String BULK_DELETE_PATH = "/channels/123/messages/bulk-delete";
+
+  private static final long DISCORD_EPOCH_MILLIS = 1420070400000L;
+
+  @Mock private SmallD smalld;
+
+  private MessageDeleteBatcher subject;
+
+  @BeforeEach
+  void subject() {
+    subject = MessageDeleteBatcher.builder(smalld).setWindow(Duration.ofMillis(50)).build();
+  }
+
+  @AfterEach
+  void close() {
+    subject.close();
+  }
+
+  @Test
+  void delete_whenManyInWindow_shouldBulkDelete() throws Exception {
+    String first = snowflake(Instant.now());
+    String second = snowflake(Instant.now().minusSeconds(1));
+
+    CompletableFuture.allOf(subject.delete(CHANNEL_ID, first), subject.delete(CHANNEL_ID, second))
+        .get(1, TimeUnit.SECONDS);
+
+    ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+    Mockito.verify(smalld)
+        .post(
+            Mockito.eq(BULK_DELETE_PATH),
+            payload.capture(),
+            Mockito.eq(Collections.emptyMap()),
+            Mockito.any(RequestOptions.class));
+
+    JsonAssertions.assertThatJson(payload.getValue())
+        .isEqualTo("{\"messages\": [\"" + first + "\", \"" + second + "\"]}");
+  }
+
+  @Test
+  void delete_whenSingleInWindow_shouldDeleteIndividually() throws Exception {
+    String id = snowflake(Instant.now());
+
+    subject.delete(CHANNEL_ID, id).get(1, TimeUnit.SECONDS);
+
+    Mockito.verify(smalld)
+        .delete(Mockito.eq("/channels/123/messages/" + id), Mockito.any(RequestOptions.class));
+  }
+
+  @Test
+  void delete_whenOlderThanTwoWeeks_shouldDeleteIndividually() throws Exception {
+    String old = snowflake(Instant.now().minus(Duration.ofDays(15)));
+
+    CompletableFuture.allOf(
+            subject.delete(CHANNEL_ID, snowflake(Instant.now())),
+            subject.delete(CHANNEL_ID, snowflake(Instant.now().minusSeconds(1))),
+            subject.delete(CHANNEL_ID, old))
+        .get(1, TimeUnit.SECONDS);
+
+    Mockito.verify(smalld)
+        .post(
+            Mockito.eq(BULK_DELETE_PATH),
+            Mockito.anyString(),
+            Mockito.anyMap(),
+            Mockito.any(RequestOptions.class));
+    Mockito.verify(smalld)
+        .delete(Mockito.eq("/channels/123/messages/" + old), Mockito.any(RequestOptions.class));
+  }
+
+  @Test
+  void delete_whenBulkDeleteFails_shouldFailEachResult() {
+    Mockito.when(
+            smalld.post(
+                Mockito.eq(BULK_DELETE_PATH),
+                Mockito.anyString(),
+                Mockito.anyMap(),
+                Mockito.any(RequestOptions.class)))
+        .thenThrow(new SmallDException("failed"));
+
+    CompletableFuture<Void> first = subject.delete(CHANNEL_ID, snowflake(Instant.now()));
+    CompletableFuture<Void> second =
+        subject.delete(CHANNEL_ID, snowflake(Instant.now().minusSeconds(1)));
+
+    Assertions.assertThatThrownBy(() -> first.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(SmallDException.class);
+    Assertions.assertThatThrownBy(() -> second.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(SmallDException.class);
+  }
+
+  @Test
+  void delete_whenSameMessageTwiceInWindow_shouldDeleteOnceAndCompleteBoth() throws Exception {
+    String id = snowflake(Instant.now());
+
+    CompletableFuture.allOf(subject.delete(CHANNEL_ID, id), subject.delete(CHANNEL_ID, id))
+        .get(1, TimeUnit.SECONDS);
+
+    Mockito.verify(smalld)
+        .delete(Mockito.eq("/channels/123/messages/" + id), Mockito.any(RequestOptions.class));
+    Mockito.verifyNoMoreInteractions(smalld);
+  }
+
+  @Test
+  void delete_whenBulkDeleteRateLimited_shouldRetryAfterExpiry() throws Exception {
+    Mockito.when(
+            smalld.post(
+                Mockito.eq(BULK_DELETE_PATH),
+                Mockito.anyString(),
+                Mockito.anyMap(),
+                Mockito.any(RequestOptions.class)))
+        .thenThrow(new RateLimitException(Instant.now().plusMillis(50)))
+        .thenReturn("");
+
+    CompletableFuture.allOf(
+            subject.delete(CHANNEL_ID, snowflake(Instant.now())),
+            subject.delete(CHANNEL_ID, snowflake(Instant.now().minusSeconds(1))))
+        .get(1, TimeUnit.SECONDS);
+
+    Mockito.verify(smalld, Mockito.times(2))
+        .post(
+            Mockito.eq(BULK_DELETE_PATH),
+            Mockito.anyString(),
+            Mockito.anyMap(),
+            Mockito.any(RequestOptions.class));
+  }
+
+  @Test
+  void delete_whenAlwaysRateLimited_shouldFailAfterMaxAttempts() {
+    String id = snowflake(Instant.now());
+    RateLimitException rateLimited = new RateLimitException(Instant.now());
+
+    Mockito.when(smalld.delete(Mockito.anyString(), Mockito.any(RequestOptions.class)))
+        .thenThrow(rateLimited);
+
+    CompletableFuture<Void> result = subject.delete(CHANNEL_ID, id);
+
+    Assertions.assertThatThrownBy(() -> result.get(1, TimeUnit.SECONDS)).hasCause(rateLimited);
+    Mockito.verify(smalld, Mockito.times(5))
+        .delete(Mockito.eq("/channels/123/messages/" + id), Mockito.any(RequestOptions.class));
+  }
+
+  @Test
+  void close_whenDeletesCollected_shouldSendThemWithoutWaitingForWindow() throws Exception {
+    subject = MessageDeleteBatcher.builder(smalld).setWindow(Duration.ofMinutes(1)).build();
+    String id = snowflake(Instant.now());
+
+    CompletableFuture<Void> result = subject.delete(CHANNEL_ID, id);
+    subject.close();
+
+    result.get(1, TimeUnit.SECONDS);
+    Mockito.verify(smalld)
+        .delete(Mockito.eq("/channels/123/messages/" + id), Mockito.any(RequestOptions.class));
+  }
+
+  @Test
+  void delete_whenClosed_shouldFail() {
+    subject.close();
+
+    CompletableFuture<Void> result = subject.delete(CHANNEL_ID, snowflake(Instant.now()));
+
+    Assertions.assertThatThrownBy(() -> result.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(SmallDException.class);
+    Mockito.verifyNoInteractions(smalld);
+  }
+
+  private static String snowflake(Instant createdAt) {
+    return Long.toUnsignedString((createdAt.toEpochMilli() - DISCORD_EPOCH_MILLIS) << 22);
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TestPaginator {
+
+  private static final String PATH = "/guilds/123/members";
+
+  @Mock private SmallD smalld;
+
+  @Test
+  void stream_whenManyPages_shouldReturnAllItemsInOrder() {
+    respondWithItems(250);
+
+    List<String> ids =
+        Paginator.builder(smalld, PATH)
+            .setIdOf(item -> item.get("user").asObject().getString("id", null))
+            .build()
+            .stream()
+            .map(item -> item.get("user").asObject().getString("id", null))
+            .collect(Collectors.toList());
+
+    Assertions.assertThat(ids).hasSize(250).startsWith("1", "2").endsWith("250");
+  }
+
+  @Test
+  void stream_whenRateLimited_shouldRetry() {
+    respondWithItems(10);
+
+    Mockito.when(smalld.get(Mockito.eq(PATH), Mockito.anyMap(), Mockito.any(ResponseHandler.class)))
+        .thenThrow(new RateLimitException(Instant.now()))
+        .thenAnswer(inv -> page(inv.getArgument(1), 10));
+
+    Assertions.assertThat(
+            Paginator.builder(smalld, PATH)
+                .setIdOf(item -> item.get("user").asObject().getString("id", null))
+                .build()
+                .stream()
+                .count())
+        .isEqualTo(10);
+  }
+
+  private void respondWithItems(int total) {
+    Mockito.lenient()
+        .when(smalld.get(Mockito.eq(PATH), Mockito.anyMap(), Mockito.any(ResponseHandler.class)))
+        .thenAnswer(inv -> page(inv.getArgument(1), total));
+  }
+
+  private static Object page(Map<String, Object> params, int total) throws Exception {
+    int after = Integer.parseInt(String.valueOf(params.getOrDefault("after", "0")));
+    int limit = (Integer) params.get("limit");
+
+    JsonArray page = Json.array();
+    for (int id = after + 1; id <= Math.min(total, after + limit); id++) {
+      JsonObject user = Json.object().add("id", String.valueOf(id));
+      page.add(Json.object().add("user", user));
+    }
+
+    return Json.parse(new StringReader(page.toString()));
+  }
+}
@@ -0,0 +1,144 @@
+package com.github.princesslana.smalld;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+@ExtendWith(MockitoExtension.class)
+class TestPayloadLogger {
+
+  private static final String MESSAGE_CREATE = "{\"op\":0,\"t\":\"MESSAGE_CREATE\",\"d\":{}}";
+
+  private static final String PRESENCE_UPDATE = "{\"op\":0,\"t\":\"PRESENCE_UPDATE\",\"d\":{}}";
+
+  @Mock private Logger log;
+
+  private PayloadLogger subject;
+
+  @AfterEach
+  void close() {
+    subject.close();
+  }
+
+  @Test
+  void received_whenShardEnabled_shouldLog() {
+    subject = PayloadLogger.builder().setLogger(log).build();
+    subject.enable(1);
+
+    subject.received(1, MESSAGE_CREATE);
+
+    Mockito.verify(log, Mockito.timeout(1000))
+        .info("{} (shard {}): {}", "Gateway Received", 1, MESSAGE_CREATE);
+  }
+
+  @Test
+  void received_whenShardNotEnabled_shouldNotLog() {
+    subject = PayloadLogger.builder().setLogger(log).build();
+    subject.enable(1);
+    subject.disable(1);
+
+    subject.received(1, MESSAGE_CREATE);
+    subject.received(2, MESSAGE_CREATE);
+    subject.sent(1, MESSAGE_CREATE);
+
+    Mockito.verify(log, Mockito.after(100).never())
+        .info(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  void received_whenClosed_shouldNotLog() {
+    subject = PayloadLogger.builder().setLogger(log).setAllShardsEnabled(true).build();
+    subject.close();
+
+    subject.received(0, MESSAGE_CREATE);
+    subject.response(0, "GET", "/users/@me", 200, "{}");
+
+    Assertions.assertThat(subject.isEnabled(0)).isFalse();
+    Mockito.verify(log, Mockito.after(100).never())
+        .info(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  void received_whenTypeNotSampled_shouldOnlyLogOtherTypes() {
+    subject =
+        PayloadLogger.builder()
+            .setLogger(log)
+            .setAllShardsEnabled(true)
+            .setSampleRate("PRESENCE_UPDATE", 0)
+            .build();
+
+    subject.received(0, PRESENCE_UPDATE);
+    subject.received(0, MESSAGE_CREATE);
+
+    Mockito.verify(log, Mockito.timeout(1000))
+        .info("{} (shard {}): {}", "Gateway Received", 0, MESSAGE_CREATE);
+    Mockito.verify(log, Mockito.never())
+        .info("{} (shard {}): {}", "Gateway Received", 0, PRESENCE_UPDATE);
+  }
+
+  @Test
+  void sent_whenLong_shouldTruncate() {
+    subject =
+        PayloadLogger.builder().setLogger(log).setAllShardsEnabled(true).setMaxLength(10).build();
+
+    subject.sent(0, MESSAGE_CREATE);
+
+    Mockito.verify(log, Mockito.timeout(1000))
+        .info(
+            "{} (shard {}): {}... ({} more chars)",
+            "Gateway Sent",
+            0,
+            MESSAGE_CREATE.substring(0, 10),
+            MESSAGE_CREATE.length() - 10);
+  }
+
+  @Test
+  void sent_whenIdentifyOrResume_shouldNotLogToken() {
+    String token = "Bot.Secret.Token";
+    subject = PayloadLogger.builder().setLogger(log).setAllShardsEnabled(true).build();
+
+    subject.sent(0, "{\"op\":2,\"d\":{\"token\":\"" + token + "\",\"properties\":{}}}");
+    subject.sent(0, "{\"op\":6,\"d\":{\"token\": \"" + token + "\",\"seq\":1}}");
+
+    ArgumentCaptor<Object> logged = ArgumentCaptor.forClass(Object.class);
+    Mockito.verify(log, Mockito.timeout(1000).times(2))
+        .info(Mockito.anyString(), Mockito.any(), Mockito.any(), logged.capture());
+
+    Assertions.assertThat(logged.getAllValues())
+        .containsExactly(
+            "{\"op\":2,\"d\":{\"token\":\"[REDACTED]\",\"properties\":{}}}",
+            "{\"op\":6,\"d\":{\"token\": \"[REDACTED]\",\"seq\":1}}");
+  }
+
+  @Test
+  void sent_whenTruncatedWithinToken_shouldNotLogPartOfToken() {
+    subject =
+        PayloadLogger.builder().setLogger(log).setAllShardsEnabled(true).setMaxLength(24).build();
+
+    subject.sent(0, "{\"op\":2,\"d\":{\"token\":\"Bot.Secret.Token\"}}");
+
+    Mockito.verify(log, Mockito.timeout(1000))
+        .info(
+            Mockito.eq("{} (shard {}): {}... ({} more chars)"),
+            Mockito.any(),
+            Mockito.any(),
+            Mockito.eq("{\"op\":2,\"d\":{\"token\":\"[REDACTED]\""),
+            Mockito.any());
+  }
+
+  @Test
+  void response_whenEnabled_shouldLogRequest() {
+    subject = PayloadLogger.builder().setLogger(log).setAllShardsEnabled(true).build();
+
+    subject.response(0, "GET", "/users/@me", 200, "{}");
+
+    Mockito.verify(log, Mockito.timeout(1000))
+        .info("{} (shard {}): {}", "HTTP Response [GET /users/@me 200]", 0, "{}");
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.Json;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestPayloadTemplate {
+
+  @Test
+  void render_whenLong_shouldSpliceNumber() {
+    PayloadTemplate subject = PayloadTemplate.compile("{\"op\":1,\"d\":${seq}}");
+
+    Assertions.assertThat(subject.render(42L)).isEqualTo("{\"op\":1,\"d\":42}");
+  }
+
+  @Test
+  void render_whenNull_shouldSpliceNull() {
+    PayloadTemplate subject = PayloadTemplate.compile("{\"op\":1,\"d\":${seq}}");
+
+    Assertions.assertThat(subject.render((Object) null)).isEqualTo("{\"op\":1,\"d\":null}");
+  }
+
+  @Test
+  void render_whenStringNeedsEscaping_shouldProduceValidJson() {
+    PayloadTemplate subject = PayloadTemplate.compile("{\"s\":${s}}");
+    String value = "quote\" slash\\ newline\n tab\t bell\u0007 sep ";
+
+    String rendered = subject.render(value);
+
+    Assertions.assertThat(Json.parse(rendered).asObject().getString("s", null)).isEqualTo(value);
+  }
+
+  @Test
+  void render_whenMultiplePlaceholders_shouldSpliceInOrder() {
+    PayloadTemplate subject = PayloadTemplate.compile("[${a},${b},${c},${d}]");
+
+    Assertions.assertThat(subject.render(1, true, 1.5, Json.object().add("x", 1)))
+        .isEqualTo("[1,true,1.5,{\"x\":1}]");
+  }
+
+  @Test
+  void render_whenWrongNumberOfValues_shouldThrowException() {
+    PayloadTemplate subject = PayloadTemplate.compile("[${a},${b}]");
+
+    Assertions.assertThatThrownBy(() -> subject.render(1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void render_whenUnsupportedValue_shouldThrowException() {
+    PayloadTemplate subject = PayloadTemplate.compile("[${a}]");
+
+    Assertions.assertThatThrownBy(() -> subject.render(new Object()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void compile_whenNoPlaceholders_shouldRenderTemplate() {
+    PayloadTemplate subject = PayloadTemplate.compile("{\"op\":1}");
+
+    Assertions.assertThat(subject.getPlaceholderCount()).isEqualTo(0);
+    Assertions.assertThat(subject.render()).isEqualTo("{\"op\":1}");
+  }
+}
@@ -0,0 +1,155 @@
+package com.github.princesslana.smalld;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestRequestCoalescer {
+
+  private RequestCoalescer subject;
+
+  @BeforeEach
+  void subject() {
+    subject = new RequestCoalescer();
+  }
+
+  @Test
+  void execute_whenConcurrentSameKey_shouldMakeOneRequest() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+
+    CompletableFuture<String> first =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", () -> awaitAndReturn(release, calls, "body")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> calls.get() == 1);
+
+    CompletableFuture<String> second =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", () -> awaitAndReturn(release, calls, "other")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getCoalescedCount() == 1);
+    release.countDown();
+
+    Assertions.assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("body");
+    Assertions.assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("body");
+    Assertions.assertThat(calls.get()).isEqualTo(1);
+    Assertions.assertThat(subject.getHitRate()).isEqualTo(0.5);
+  }
+
+  @Test
+  void execute_whenSequentialSameKey_shouldMakeTwoRequests() {
+    subject.execute("/path", () -> "first");
+
+    Assertions.assertThat(subject.execute("/path", () -> "second")).isEqualTo("second");
+    Assertions.assertThat(subject.getCoalescedCount()).isEqualTo(0);
+  }
+
+  @Test
+  void execute_whenRequestFails_shouldRethrow() {
+    SmallDException ex = new SmallDException();
+
+    Assertions.assertThatThrownBy(
+            () ->
+                subject.execute(
+                    "/path",
+                    () -> {
+                      throw ex;
+                    }))
+        .isSameAs(ex);
+  }
+
+  @Test
+  void execute_whenWaiterMissesDeadline_shouldFailOnlyWaiter() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+
+    CompletableFuture<String> first =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", () -> awaitAndReturn(release, calls, "body")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> calls.get() == 1);
+
+    RequestOptions options =
+        RequestOptions.builder().setDeadline(Instant.now().plusMillis(50)).build();
+
+    Assertions.assertThatThrownBy(
+            () -> subject.execute("/path", options, () -> awaitAndReturn(release, calls, "other")))
+        .isInstanceOf(RequestCancelledException.class);
+
+    release.countDown();
+
+    Assertions.assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("body");
+    Assertions.assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  void execute_whenWaiterCancelled_shouldFailOnlyWaiter() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    Cancellation cancellation = new Cancellation();
+
+    CompletableFuture<String> first =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", () -> awaitAndReturn(release, calls, "body")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> calls.get() == 1);
+
+    RequestOptions options = RequestOptions.builder().setCancellation(cancellation).build();
+
+    CompletableFuture<String> second =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", options, () -> awaitAndReturn(release, calls, "other")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getCoalescedCount() == 1);
+    cancellation.cancel();
+
+    Assertions.assertThatThrownBy(() -> second.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(RequestCancelledException.class);
+
+    release.countDown();
+
+    Assertions.assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("body");
+  }
+
+  @Test
+  void execute_whenRequestHasCancellation_shouldNotBeSharedWithOthers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+
+    RequestOptions options = RequestOptions.builder().setCancellation(new Cancellation()).build();
+
+    CompletableFuture<String> first =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", options, () -> awaitAndReturn(release, calls, "body")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> calls.get() == 1);
+
+    CompletableFuture<String> second =
+        CompletableFuture.supplyAsync(
+            () -> subject.execute("/path", () -> awaitAndReturn(release, calls, "other")));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> calls.get() == 2);
+    release.countDown();
+
+    Assertions.assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("body");
+    Assertions.assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("other");
+    Assertions.assertThat(subject.getCoalescedCount()).isZero();
+  }
+
+  private static String awaitAndReturn(CountDownLatch latch, AtomicInteger calls, String body) {
+    calls.incrementAndGet();
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return body;
+  }
+}
@@ -0,0 +1,42 @@
+package com.github.princesslana.smalld;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestRequestOptions {
+
+  private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+  @Test
+  void resolveDeadline_whenTimeout_shouldSetDeadlineFromNow() {
+    RequestOptions options =
+        RequestOptions.builder().setTimeout(Duration.ofSeconds(3)).build().resolveDeadline(NOW);
+
+    Assertions.assertThat(options.getDeadline()).contains(NOW.plusSeconds(3));
+    Assertions.assertThat(options.getTimeout()).isEmpty();
+  }
+
+  @Test
+  void resolveDeadline_whenDeadlineEarlierThanTimeout_shouldKeepDeadline() {
+    RequestOptions options =
+        RequestOptions.builder()
+            .setTimeout(Duration.ofSeconds(3))
+            .setDeadline(NOW.plusSeconds(1))
+            .build()
+            .resolveDeadline(NOW);
+
+    Assertions.assertThat(options.getDeadline()).contains(NOW.plusSeconds(1));
+  }
+
+  @Test
+  void isCancelled_whenCancellationCancelled_shouldBeTrue() {
+    Cancellation cancellation = new Cancellation();
+    RequestOptions options = RequestOptions.builder().setCancellation(cancellation).build();
+
+    cancellation.cancel();
+
+    Assertions.assertThat(options.isCancelled(NOW)).isTrue();
+  }
+}
@@ -0,0 +1,183 @@
+package com.github.princesslana.smalld;
+
+import com.eclipsesource.json.Json;
+import com.github.princesslana.smalld.test.MockSmallD;
+import java.time.Duration;
+import java.time.Instant;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestResponseCache {
+
+  private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+  private ResponseCache subject;
+
+  @BeforeEach
+  void subject() {
+    subject =
+        ResponseCache.builder()
+            .setMaximumSize(2)
+            .setDefaultTtl(Duration.ofSeconds(10))
+            .setTtl("/guilds/\\d+/roles", Duration.ofSeconds(60))
+            .setTtl("/channels/\\d+/messages", Duration.ZERO)
+            .build();
+  }
+
+  @Test
+  void get_whenCached_shouldHit() {
+    subject.put("/guilds/123", null, "guild", NOW);
+
+    Assertions.assertThat(subject.get("/guilds/123", null, NOW)).contains("guild");
+    Assertions.assertThat(subject.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  void get_whenDifferentQuery_shouldMiss() {
+    subject.put("/guilds/123", "with_counts=true", "guild", NOW);
+
+    Assertions.assertThat(subject.get("/guilds/123", null, NOW)).isEmpty();
+    Assertions.assertThat(subject.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  void get_whenExpired_shouldMiss() {
+    subject.put("/guilds/123", null, "guild", NOW);
+    subject.put("/guilds/123/roles", null, "roles", NOW);
+
+    Instant later = NOW.plusSeconds(30);
+    Assertions.assertThat(subject.get("/guilds/123", null, later)).isEmpty();
+    Assertions.assertThat(subject.get("/guilds/123/roles", null, later)).contains("roles");
+  }
+
+  @Test
+  void put_whenZeroTtl_shouldNotCache() {
+    subject.put("/channels/123/messages", null, "messages", NOW);
+    Assertions.assertThat(subject.size()).isEqualTo(0);
+  }
+
+  @Test
+  void put_whenNoTtlConfigured_shouldNotCache() {
+    subject = ResponseCache.builder().build();
+
+    subject.put("/gateway/bot", null, "gateway", NOW);
+
+    Assertions.assertThat(subject.size()).isEqualTo(0);
+  }
+
+  @Test
+  void put_whenFull_shouldEvictLeastRecentlyUsed() {
+    subject.put("/guilds/1", null, "1", NOW);
+    subject.put("/guilds/2", null, "2", NOW);
+    subject.get("/guilds/1", null, NOW);
+    subject.put("/guilds/3", null, "3", NOW);
+
+    Assertions.assertThat(subject.get("/guilds/1", null, NOW)).contains("1");
+    Assertions.assertThat(subject.get("/guilds/2", null, NOW)).isEmpty();
+    Assertions.assertThat(subject.getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  void invalidateAfterMutation_shouldRemovePathAndCollection() {
+    subject.put("/guilds/123/roles", null, "roles", NOW);
+    subject.put("/guilds/123", null, "guild", NOW);
+
+    subject.invalidateAfterMutation("/guilds/123/roles/456");
+
+    Assertions.assertThat(subject.get("/guilds/123/roles", null, NOW)).isEmpty();
+    Assertions.assertThat(subject.get("/guilds/123", null, NOW)).contains("guild");
+  }
+
+  @Test
+  void accept_whenUpdateEvent_shouldInvalidate() {
+    MockSmallD smalld = new MockSmallD();
+    subject.accept(smalld);
+
+    subject.put("/channels/123", null, "channel", NOW);
+
+    smalld.receivePayload(
+        Json.object()
+            .add("op", GatewayPayload.OP_DISPATCH)
+            .add("t", "CHANNEL_UPDATE")
+            .add("d", Json.object().add("id", "123").add("guild_id", "456"))
+            .toString());
+
+    Assertions.assertThat(subject.get("/channels/123", null, NOW)).isEmpty();
+  }
+
+  @Test
+  void accept_whenMessageDeleted_shouldInvalidateMessageListOfChannel() {
+    subject =
+        ResponseCache.builder()
+            .setTtl("/channels/\\d+/messages(/\\d+)?", Duration.ofSeconds(10))
+            .build();
+
+    MockSmallD smalld = new MockSmallD();
+    subject.accept(smalld);
+
+    subject.put("/channels/123/messages", "limit=50", "messages", NOW);
+    subject.put("/channels/123/messages/789", null, "message", NOW);
+    subject.put("/channels/999/messages", "limit=50", "other messages", NOW);
+
+    smalld.receivePayload(
+        Json.object()
+            .add("op", GatewayPayload.OP_DISPATCH)
+            .add("t", "MESSAGE_DELETE")
+            .add("d", Json.object().add("id", "789").add("channel_id", "123"))
+            .toString());
+
+    Assertions.assertThat(subject.get("/channels/123/messages", "limit=50", NOW)).isEmpty();
+    Assertions.assertThat(subject.get("/channels/123/messages/789", null, NOW)).isEmpty();
+    Assertions.assertThat(subject.get("/channels/999/messages", "limit=50", NOW))
+        .contains("other messages");
+  }
+
+  @Test
+  void accept_whenEventDoesNotInvalidate_shouldNotParsePayload() {
+    MockSmallD smalld = new MockSmallD();
+    subject.accept(smalld);
+
+    subject.put("/channels/123", null, "channel", NOW);
+
+    Assertions.assertThatCode(
+            () -> smalld.receivePayload("{\"op\":0,\"t\":\"PRESENCE_UPDATE\",\"d\":{not json"))
+        .doesNotThrowAnyException();
+    Assertions.assertThat(subject.get("/channels/123", null, NOW)).contains("channel");
+  }
+
+  @Test
+  void invalidate_whenPathCachedWithoutLeadingSlash_shouldRemoveIt() {
+    subject.put("guilds/123", null, "guild", NOW);
+
+    Assertions.assertThat(subject.get("/guilds/123/", null, NOW)).contains("guild");
+
+    subject.invalidate("/guilds/123");
+
+    Assertions.assertThat(subject.get("guilds/123", null, NOW)).isEmpty();
+  }
+
+  @Test
+  void put_whenPathInvalidatedAfterRequestSent_shouldNotCache() {
+    long sentAt = subject.getGeneration();
+
+    subject.invalidateAfterMutation("/guilds/123/roles/456");
+    subject.put("/guilds/123/roles", null, "stale roles", NOW, sentAt);
+    subject.put("/guilds/123", null, "guild", NOW, sentAt);
+
+    Assertions.assertThat(subject.get("/guilds/123/roles", null, NOW)).isEmpty();
+    Assertions.assertThat(subject.get("/guilds/123", null, NOW)).contains("guild");
+  }
+
+  @Test
+  void put_whenRequestOutlivedInvalidationLog_shouldNotCache() {
+    long sentAt = subject.getGeneration();
+
+    for (int i = 0; i < 300; i++) {
+      subject.invalidate("/channels/" + i);
+    }
+    subject.put("/guilds/123", null, "guild", NOW, sentAt);
+
+    Assertions.assertThat(subject.size()).isEqualTo(0);
+  }
+}
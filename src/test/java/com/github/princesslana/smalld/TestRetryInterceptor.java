@@ -0,0 +1,161 @@
+package com.github.princesslana.smalld;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TestRetryInterceptor {
+
+  private static final Request GET = new Request.Builder().url("https://example.com/x").build();
+
+  private static final Request POST =
+      new Request.Builder()
+          .url("https://example.com/x")
+          .post(RequestBody.create(MediaType.get("application/json"), "{}"))
+          .build();
+
+  private static final RetryPolicy POLICY =
+      RetryPolicy.builder().setBackoff(Duration.ZERO, Duration.ZERO).build();
+
+  private RetryInterceptor subject;
+
+  @Mock private Interceptor.Chain chain;
+
+  @Mock private Call call;
+
+  @BeforeEach
+  void subject() {
+    subject = new RetryInterceptor(POLICY, Clock.systemUTC());
+
+    Mockito.lenient().when(chain.call()).thenReturn(call);
+  }
+
+  @Test
+  void intercept_whenServerErrorThenSuccess_shouldRetry() throws Exception {
+    Mockito.when(chain.request()).thenReturn(GET);
+    Mockito.when(chain.proceed(GET)).thenReturn(response(GET, 503), response(GET, 200));
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(200);
+  }
+
+  @Test
+  void intercept_whenIOExceptionThenSuccess_shouldRetry() throws Exception {
+    Mockito.when(chain.request()).thenReturn(GET);
+    Mockito.when(chain.proceed(GET)).thenThrow(new IOException()).thenReturn(response(GET, 200));
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(200);
+  }
+
+  @Test
+  void intercept_whenAlwaysServerError_shouldStopAtMaxAttempts() throws Exception {
+    Mockito.when(chain.request()).thenReturn(GET);
+    Mockito.when(chain.proceed(GET)).thenAnswer(i -> response(GET, 500));
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(500);
+    Mockito.verify(chain, Mockito.times(3)).proceed(GET);
+  }
+
+  @Test
+  void intercept_whenClientError_shouldNotRetry() throws Exception {
+    Mockito.when(chain.request()).thenReturn(GET);
+    Mockito.when(chain.proceed(GET)).thenReturn(response(GET, 404));
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(404);
+    Mockito.verify(chain, Mockito.times(1)).proceed(GET);
+  }
+
+  @Test
+  void intercept_whenPostNotIdempotent_shouldNotRetry() throws Exception {
+    Mockito.when(chain.request()).thenReturn(POST);
+    Mockito.when(chain.proceed(POST)).thenReturn(response(POST, 503));
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(503);
+    Mockito.verify(chain, Mockito.times(1)).proceed(POST);
+  }
+
+  @Test
+  void intercept_whenPostIdempotent_shouldRetry() throws Exception {
+    Request post =
+        POST.newBuilder()
+            .tag(RequestOptions.class, RequestOptions.builder().setIdempotent(true).build())
+            .build();
+
+    Mockito.when(chain.request()).thenReturn(post);
+    Mockito.when(chain.proceed(post)).thenReturn(response(post, 503), response(post, 200));
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(200);
+  }
+
+  @Test
+  void intercept_whenBudgetExhausted_shouldNotRetry() throws Exception {
+    subject =
+        new RetryInterceptor(
+            RetryPolicy.builder()
+                .setBackoff(Duration.ZERO, Duration.ZERO)
+                .setBudget(0.1, 1)
+                .build(),
+            Clock.systemUTC());
+
+    Mockito.when(chain.request()).thenReturn(GET);
+    Mockito.when(chain.proceed(GET)).thenAnswer(i -> response(GET, 503));
+
+    subject.intercept(chain);
+    Mockito.clearInvocations(chain);
+
+    subject.intercept(chain);
+
+    Mockito.verify(chain, Mockito.times(1)).proceed(GET);
+  }
+
+  @Test
+  void intercept_whenManyRequestsSucceed_shouldNotBankMoreThanMaxRetries() throws Exception {
+    subject =
+        new RetryInterceptor(
+            RetryPolicy.builder()
+                .setMaxAttempts(5)
+                .setBackoff(Duration.ZERO, Duration.ZERO)
+                .setBudget(1, 1)
+                .build(),
+            Clock.systemUTC());
+
+    Mockito.when(chain.request()).thenReturn(GET);
+    Mockito.when(chain.proceed(GET)).thenAnswer(i -> response(GET, 200));
+
+    for (int i = 0; i < 10; i++) {
+      subject.intercept(chain);
+    }
+
+    Mockito.clearInvocations(chain);
+    Mockito.when(chain.proceed(GET)).thenAnswer(i -> response(GET, 503));
+
+    subject.intercept(chain);
+
+    Mockito.verify(chain, Mockito.times(2)).proceed(GET);
+  }
+
+  private static Response response(Request request, int code) {
+    return new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("")
+        .body(ResponseBody.create(null, ""))
+        .build();
+  }
+}
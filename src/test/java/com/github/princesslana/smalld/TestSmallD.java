@@ -1,11 +1,18 @@
 package com.github.princesslana.smalld;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+import okhttp3.Request;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
+import okio.Buffer;
+import okio.ByteString;
 import org.assertj.core.api.Assertions;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.AfterEach;
@@ -127,6 +134,119 @@ class TestSmallD {
     Assertions.assertThat(msg.get()).isEqualTo("TEST_MESSAGE");
   }
 
+  @Test
+  void run_whenBinaryMessage_shouldNotifyBytesListener() throws Exception {
+    CompletableFuture<ByteString> msg = new CompletableFuture<>();
+    subject.onGatewayPayloadBytes(msg::complete);
+
+    wsListener.onMessage(webSocket, ByteString.encodeUtf8("TEST_MESSAGE"));
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(msg::isDone);
+    Assertions.assertThat(msg.get().utf8()).isEqualTo("TEST_MESSAGE");
+  }
+
+  @Test
+  void run_whenTextMessage_shouldNotifyBytesListener() throws Exception {
+    CompletableFuture<ByteString> msg = new CompletableFuture<>();
+    subject.onGatewayPayloadBytes(msg::complete);
+
+    wsListener.onMessage(webSocket, "TEST_MESSAGE");
+
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(msg::isDone);
+    Assertions.assertThat(msg.get().utf8()).isEqualTo("TEST_MESSAGE");
+  }
+
+  @Test
+  void post_whenByteBuffer_shouldSendRemainingBytes() throws Exception {
+    ByteBuffer payload = ByteBuffer.wrap("xx{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+    payload.position(2);
+
+    subject.post("/test", payload);
+
+    Assertions.assertThat(sentBody("/test")).isEqualTo("{\"a\":1}");
+    Assertions.assertThat(payload.remaining()).isEqualTo(7);
+  }
+
+  @Test
+  void patch_whenByteArray_shouldSendBytes() throws Exception {
+    subject.patch("/test", "{}".getBytes(StandardCharsets.UTF_8));
+
+    Assertions.assertThat(sentBody("/test")).isEqualTo("{}");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void put_whenByteStringWithParametersAndOptions_shouldSendThem() throws Exception {
+    RequestOptions options =
+        RequestOptions.builder().setPriority(RequestPriority.INTERACTIVE).build();
+
+    subject.put(
+        "/test", ByteString.encodeUtf8("{}"), Collections.singletonMap("reason", "x"), options);
+
+    ArgumentCaptor<UnaryOperator<Request.Builder>> build =
+        ArgumentCaptor.forClass(UnaryOperator.class);
+    Mockito.verify(http)
+        .send(
+            Mockito.eq("/test"),
+            build.capture(),
+            Mockito.eq(Collections.singletonMap("reason", "x")));
+
+    Request request = build.getValue().apply(new Request.Builder().url("http://localhost")).build();
+    Assertions.assertThat(request.method()).isEqualTo("PUT");
+    Assertions.assertThat(request.tag(RequestOptions.class)).isSameAs(options);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void get_whenHandler_shouldSendGetWithHandler() throws Exception {
+    ResponseHandler<String> handler = body -> "handled";
+    Mockito.when(
+            http.send(
+                Mockito.eq("/test"),
+                Mockito.any(),
+                Mockito.eq(Collections.singletonMap("limit", 10)),
+                Mockito.same(handler)))
+        .thenReturn("handled");
+
+    Assertions.assertThat(subject.get("/test", Collections.singletonMap("limit", 10), handler))
+        .isEqualTo("handled");
+
+    ArgumentCaptor<UnaryOperator<Request.Builder>> build =
+        ArgumentCaptor.forClass(UnaryOperator.class);
+    Mockito.verify(http)
+        .send(Mockito.eq("/test"), build.capture(), Mockito.any(), Mockito.same(handler));
+
+    Request request = build.getValue().apply(new Request.Builder().url("http://localhost")).build();
+    Assertions.assertThat(request.method()).isEqualTo("GET");
+  }
+
+  @Test
+  void post_whenAttachments_shouldReleaseThemOnceSent() throws Exception {
+    AtomicBoolean released = new AtomicBoolean();
+    File file = File.createTempFile("smalld-test", ".txt");
+    file.deleteOnExit();
+
+    subject.post(
+        "/test", "{}", new Attachment("a.txt", "text/plain", file, () -> released.set(true)));
+
+    Mockito.verify(http).send(Mockito.eq("/test"), Mockito.any(), Mockito.any());
+    Assertions.assertThat(released).isTrue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private String sentBody(String path) throws Exception {
+    ArgumentCaptor<UnaryOperator<Request.Builder>> build =
+        ArgumentCaptor.forClass(UnaryOperator.class);
+    Mockito.verify(http).send(Mockito.eq(path), build.capture(), Mockito.any());
+
+    Request request = build.getValue().apply(new Request.Builder().url("http://localhost")).build();
+
+    try (Buffer buffer = new Buffer()) {
+      request.body().writeTo(buffer);
+      return buffer.readUtf8();
+    }
+  }
+
   private CompletableFuture<WebSocketListener> awaitConnection() {
     return CompletableFuture.supplyAsync(
         () -> {
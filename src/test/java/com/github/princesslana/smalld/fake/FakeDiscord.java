@@ -0,0 +1,542 @@
+package com.github.princesslana.smalld.fake;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.github.princesslana.smalld.GatewayPayload;
+import com.github.princesslana.smalld.ratelimit.RateLimitBucket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ServerSocketFactory;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * A fake Discord that serves the REST API and the gateway from a local port, so that the real
+ * {@code HttpClient}, rate limiting, and gateway code can be tested end to end and under load.
+ *
+ * <p>REST requests are answered with an empty JSON object and Discord's rate limit headers. Each
+ * rate limit bucket allows a number of requests per period, and requests beyond that are answered
+ * with a 429. Further 429s may be injected every so many requests, and every response may be
+ * delayed. As with Discord, the {@code Retry-After} header of a 429 is in whole seconds.
+ *
+ * <p>The gateway sends HELLO when a client connects, READY when it identifies, RESUMED when it
+ * resumes, and acknowledges heartbeats unless configured not to. Events are sent to all identified
+ * sessions with {@link #storm(String, String, int)}.
+ */
+public class FakeDiscord implements AutoCloseable {
+
+  private static final String API = "/api";
+
+  private static final String GATEWAY = "/gateway";
+
+  private static final long MAX_QUEUED_BYTES = 1024 * 1024;
+
+  private final MockWebServer server = new MockWebServer();
+
+  private final int rateLimit;
+
+  private final Duration rateLimitResetAfter;
+
+  private final int tooManyRequestsEvery;
+
+  private final Duration retryAfter;
+
+  private final Duration latency;
+
+  private final Duration heartbeatInterval;
+
+  private final boolean heartbeatAck;
+
+  private final Map<RateLimitBucket, Window> windows = new ConcurrentHashMap<>();
+
+  private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+  private final AtomicLong requests = new AtomicLong();
+
+  private final AtomicLong tooManyRequests = new AtomicLong();
+
+  private final AtomicLong heartbeats = new AtomicLong();
+
+  private FakeDiscord(Builder builder) {
+    this.rateLimit = builder.rateLimit;
+    this.rateLimitResetAfter = builder.rateLimitResetAfter;
+    this.tooManyRequestsEvery = builder.tooManyRequestsEvery;
+    this.retryAfter = builder.retryAfter;
+    this.latency = builder.latency;
+    this.heartbeatInterval = builder.heartbeatInterval;
+    this.heartbeatAck = builder.heartbeatAck;
+
+    server.setDispatcher(new FakeDispatcher());
+    server.setServerSocketFactory(new NoDelayServerSocketFactory());
+  }
+
+  /**
+   * Start serving on a free local port.
+   *
+   * @throws IOException if the server could not be started
+   */
+  public void start() throws IOException {
+    server.start(InetAddress.getLoopbackAddress(), 0);
+  }
+
+  /**
+   * Returns the base url of the REST API, to be used with {@code Config.Builder#setBaseUrl}.
+   *
+   * @return the base url
+   */
+  public String getBaseUrl() {
+    return server.url(API).toString();
+  }
+
+  /**
+   * Returns the url of the gateway, as returned from {@code /gateway/bot}.
+   *
+   * @return the gateway url
+   */
+  public String getGatewayUrl() {
+    return "ws://" + server.getHostName() + ":" + server.getPort() + GATEWAY;
+  }
+
+  /**
+   * Send events to every identified session. This blocks while a session has a large amount of data
+   * waiting to be sent, so that a storm does not overflow OkHttp's websocket queue.
+   *
+   * @param type the event type, such as {@code MESSAGE_CREATE}
+   * @param data the JSON for the {@code d} field of the events
+   * @param count the number of events to send to each session
+   * @return the total number of events sent
+   */
+  public long storm(String type, String data, int count) {
+    long sent = 0;
+
+    for (Session session : sessions) {
+      if (session.identified) {
+        for (int i = 0; i < count && session.dispatch(type, data); i++) {
+          sent++;
+        }
+      }
+    }
+
+    return sent;
+  }
+
+  /**
+   * Close every gateway session.
+   *
+   * @param code the close code to send
+   * @param reason the reason to send
+   */
+  public void closeSessions(int code, String reason) {
+    sessions.forEach(s -> s.close(code, reason));
+  }
+
+  /**
+   * Returns the number of gateway sessions that have identified or resumed.
+   *
+   * @return the number of identified sessions
+   */
+  public long getIdentifiedSessionCount() {
+    return sessions.stream().filter(s -> s.identified).count();
+  }
+
+  /**
+   * Returns the number of REST requests received.
+   *
+   * @return the number of requests
+   */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the number of REST requests that were answered with a 429, whether injected or because
+   * the bucket's rate limit was exceeded.
+   *
+   * @return the number of 429 responses
+   */
+  public long getTooManyRequestsCount() {
+    return tooManyRequests.get();
+  }
+
+  /**
+   * Returns the number of heartbeats received on all gateway sessions.
+   *
+   * @return the number of heartbeats
+   */
+  public long getHeartbeatCount() {
+    return heartbeats.get();
+  }
+
+  /**
+   * Stop serving, closing any open connections.
+   *
+   * @throws IOException if the server could not be shut down
+   */
+  @Override
+  public void close() throws IOException {
+    server.shutdown();
+  }
+
+  private MockResponse respond(RecordedRequest request) {
+    String path = request.getPath();
+
+    int query = path.indexOf('?');
+    if (query >= 0) {
+      path = path.substring(0, query);
+    }
+
+    if (path.startsWith(API)) {
+      path = path.substring(API.length());
+    }
+
+    long n = requests.incrementAndGet();
+
+    if (path.equals("/gateway") || path.equals("/gateway/bot")) {
+      return ok(Json.object().add("url", getGatewayUrl()).add("shards", 1).toString());
+    }
+
+    if (tooManyRequestsEvery > 0 && n % tooManyRequestsEvery == 0) {
+      return tooManyRequests(retryAfter, "shared");
+    }
+
+    if (rateLimit <= 0) {
+      return ok("{}");
+    }
+
+    RateLimitBucket bucket = RateLimitBucket.from(request.getMethod(), path);
+    Window window = windows.computeIfAbsent(bucket, b -> new Window());
+
+    long remaining;
+    long resetAfterNanos;
+
+    synchronized (window) {
+      long now = System.nanoTime();
+
+      if (now - window.resetAt >= 0) {
+        window.remaining = rateLimit;
+        window.resetAt = now + rateLimitResetAfter.toNanos();
+      }
+
+      resetAfterNanos = window.resetAt - now;
+
+      if (window.remaining <= 0) {
+        return tooManyRequests(Duration.ofNanos(resetAfterNanos), "user");
+      }
+
+      remaining = --window.remaining;
+    }
+
+    return ok("{}")
+        .addHeader("X-RateLimit-Bucket", Integer.toHexString(bucket.hashCode()))
+        .addHeader("X-RateLimit-Limit", rateLimit)
+        .addHeader("X-RateLimit-Remaining", remaining)
+        .addHeader("X-RateLimit-Reset-After", toSeconds(Duration.ofNanos(resetAfterNanos)));
+  }
+
+  private MockResponse ok(String body) {
+    return delayed(new MockResponse().setResponseCode(200))
+        .addHeader("Content-Type", "application/json")
+        .setBody(body);
+  }
+
+  private MockResponse tooManyRequests(Duration retry, String scope) {
+    tooManyRequests.incrementAndGet();
+
+    JsonObject body =
+        Json.object()
+            .add("message", "You are being rate limited.")
+            .add("retry_after", retry.toMillis())
+            .add("global", false);
+
+    return delayed(new MockResponse().setResponseCode(429))
+        .addHeader("Content-Type", "application/json")
+        .addHeader("Retry-After", toWholeSeconds(retry))
+        .addHeader("X-RateLimit-Remaining", 0)
+        .addHeader("X-RateLimit-Reset-After", toSeconds(retry))
+        .addHeader("X-RateLimit-Scope", scope)
+        .setBody(body.toString());
+  }
+
+  private MockResponse delayed(MockResponse response) {
+    return latency.isZero()
+        ? response
+        : response.setHeadersDelay(latency.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private static long toWholeSeconds(Duration duration) {
+    return (duration.toMillis() + 999) / 1000;
+  }
+
+  private static String toSeconds(Duration duration) {
+    return String.format(Locale.ROOT, "%.3f", duration.toMillis() / 1000.0);
+  }
+
+  /**
+   * Creates a {@link Builder} that can be used to create an instance.
+   *
+   * @return a {@link Builder} that can build a {@code FakeDiscord}
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Routes websocket upgrades to a new gateway session and everything else to the REST API. */
+  private class FakeDispatcher extends Dispatcher {
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      return "websocket".equalsIgnoreCase(request.getHeader("Upgrade"))
+          ? new MockResponse().withWebSocketUpgrade(new Session())
+          : respond(request);
+    }
+  }
+
+  /**
+   * Creates server sockets that disable Nagle's algorithm on accepted connections. MockWebServer
+   * writes the headers and body of a response separately, and with Nagle's algorithm the body waits
+   * for the client's delayed ACK of the headers, adding about 40ms to every response.
+   *
+   * <p>Sockets are created unbound and then bound as requested, as the default factory does, so
+   * that each can set {@code TCP_NODELAY} on the connections it accepts.
+   */
+  private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+      return new ServerSocket() {
+        @Override
+        public Socket accept() throws IOException {
+          Socket socket = super.accept();
+          socket.setTcpNoDelay(true);
+          return socket;
+        }
+      };
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+      return bind(new InetSocketAddress(port), 50);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+      return bind(new InetSocketAddress(port), backlog);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress address)
+        throws IOException {
+      return bind(new InetSocketAddress(address, port), backlog);
+    }
+
+    private ServerSocket bind(InetSocketAddress address, int backlog) throws IOException {
+      ServerSocket socket = createServerSocket();
+      try {
+        socket.bind(address, backlog);
+        return socket;
+      } catch (IOException e) {
+        socket.close();
+        throw e;
+      }
+    }
+  }
+
+  /** The requests remaining for a rate limit bucket, and when they reset. */
+  private static class Window {
+    private long remaining;
+    private long resetAt = System.nanoTime();
+  }
+
+  /** A gateway session, from the server's side. */
+  private class Session extends WebSocketListener {
+
+    private final String id = UUID.randomUUID().toString();
+
+    private WebSocket ws;
+
+    private long sequence = 0;
+
+    private volatile boolean identified;
+
+    @Override
+    public void onOpen(WebSocket ws, Response response) {
+      this.ws = ws;
+      sessions.add(this);
+
+      send(
+          GatewayPayload.OP_HELLO,
+          Json.object().add("heartbeat_interval", heartbeatInterval.toMillis()).toString());
+    }
+
+    @Override
+    public void onMessage(WebSocket ws, String text) {
+      GatewayPayload payload = GatewayPayload.parse(text);
+
+      switch (payload.getOp()) {
+        case GatewayPayload.OP_HEARTBEAT:
+          heartbeats.incrementAndGet();
+          if (heartbeatAck) {
+            send(GatewayPayload.OP_HEARTBEAT_ACK, "null");
+          }
+          break;
+        case GatewayPayload.OP_IDENTIFY:
+          dispatch("READY", ready());
+          identified = true;
+          break;
+        case GatewayPayload.OP_RESUME:
+          dispatch("RESUMED", "{}");
+          identified = true;
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void onClosing(WebSocket ws, int code, String reason) {
+      sessions.remove(this);
+      ws.close(code, null);
+    }
+
+    @Override
+    public void onFailure(WebSocket ws, Throwable t, Response response) {
+      sessions.remove(this);
+    }
+
+    private String ready() {
+      return Json.object()
+          .add("v", 6)
+          .add("session_id", id)
+          .add("user", Json.object().add("id", "1").add("username", "fake").add("bot", true))
+          .add("guilds", Json.array())
+          .toString();
+    }
+
+    private synchronized void send(int op, String data) {
+      ws.send("{\"op\":" + op + ",\"d\":" + data + "}");
+    }
+
+    private boolean dispatch(String type, String data) {
+      // wait outside the lock, so that heartbeats are still acknowledged while the queue drains
+      while (ws.queueSize() > MAX_QUEUED_BYTES) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+
+      synchronized (this) {
+        return ws.send(
+            "{\"op\":0,\"t\":\"" + type + "\",\"s\":" + ++sequence + ",\"d\":" + data + "}");
+      }
+    }
+
+    private void close(int code, String reason) {
+      identified = false;
+      ws.close(code, reason);
+    }
+  }
+
+  /** {@code Builder} of {@code FakeDiscord} instances. */
+  public static class Builder {
+
+    private int rateLimit = 5;
+    private Duration rateLimitResetAfter = Duration.ofSeconds(5);
+    private int tooManyRequestsEvery = 0;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private Duration latency = Duration.ZERO;
+    private Duration heartbeatInterval = Duration.ofMillis(41250);
+    private boolean heartbeatAck = true;
+
+    private Builder() {}
+
+    /**
+     * Set the number of requests each rate limit bucket allows per period. If not set this will
+     * default to 5 requests every 5 seconds. A limit of zero or less disables rate limiting and the
+     * rate limit headers.
+     *
+     * @param limit the number of requests allowed per period
+     * @param resetAfter the period after which the limit resets
+     * @return this
+     */
+    public Builder setRateLimit(int limit, Duration resetAfter) {
+      this.rateLimit = limit;
+      this.rateLimitResetAfter = resetAfter;
+      return this;
+    }
+
+    /**
+     * Answer every {@code every}th request with a 429, regardless of rate limits. These 429s have a
+     * scope of {@code shared}, so they do not count against the client's invalid request budget. If
+     * not set no 429s are injected.
+     *
+     * @param every how often to inject a 429, in requests
+     * @param retryAfter the time after which the request may be retried
+     * @return this
+     */
+    public Builder setTooManyRequests(int every, Duration retryAfter) {
+      this.tooManyRequestsEvery = every;
+      this.retryAfter = retryAfter;
+      return this;
+    }
+
+    /**
+     * Set the delay before each REST response is sent. If not set responses are not delayed.
+     *
+     * @param latency the delay before each response
+     * @return this
+     */
+    public Builder setLatency(Duration latency) {
+      this.latency = latency;
+      return this;
+    }
+
+    /**
+     * Set the heartbeat interval sent in HELLO. If not set this will default to 41.25 seconds.
+     *
+     * @param heartbeatInterval the interval at which clients should heartbeat
+     * @return this
+     */
+    public Builder setHeartbeatInterval(Duration heartbeatInterval) {
+      this.heartbeatInterval = heartbeatInterval;
+      return this;
+    }
+
+    /**
+     * Set whether heartbeats are acknowledged. If not set heartbeats are acknowledged.
+     *
+     * @param heartbeatAck whether to acknowledge heartbeats
+     * @return this
+     */
+    public Builder setHeartbeatAck(boolean heartbeatAck) {
+      this.heartbeatAck = heartbeatAck;
+      return this;
+    }
+
+    /**
+     * Build the {@code FakeDiscord} instance.
+     *
+     * @return the built FakeDiscord instance
+     */
+    public FakeDiscord build() {
+      return new FakeDiscord(this);
+    }
+  }
+}
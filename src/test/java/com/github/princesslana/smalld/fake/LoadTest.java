@@ -0,0 +1,201 @@
+package com.github.princesslana.smalld.fake;
+
+import com.github.princesslana.smalld.Config;
+import com.github.princesslana.smalld.GatewayPayload;
+import com.github.princesslana.smalld.SmallD;
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import okhttp3.mockwebserver.MockWebServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs SmallD against a {@link FakeDiscord} and reports the end to end rate of gateway events and
+ * REST requests.
+ *
+ * <p>The load is configured with system properties:
+ *
+ * <ul>
+ *   <li>{@code load.events} - the number of MESSAGE_CREATE events to send (default 100000)
+ *   <li>{@code load.requests} - the number of REST requests to make (default 20000)
+ *   <li>{@code load.threads} - the number of threads making REST requests (default 8)
+ *   <li>{@code load.channels} - the number of channels the requests are spread over (default 8)
+ *   <li>{@code load.rateLimit} - the requests allowed per bucket per second, or 0 for no rate limit
+ *       (default 0)
+ *   <li>{@code load.maxWaitMillis} - how long a request may wait for a rate limit, or 0 to fail
+ *       straight away (default 0)
+ *   <li>{@code load.tooManyRequestsEvery} - how often to inject a 429, or 0 for never (default 0)
+ *   <li>{@code load.latencyMillis} - the delay before each REST response (default 0)
+ * </ul>
+ *
+ * <p>For example:
+ *
+ * <pre>
+ * $ mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.github.princesslana.smalld.fake.LoadTest -Dload.latencyMillis=20
+ * </pre>
+ */
+public class LoadTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+
+  private static final java.util.logging.Logger SERVER_LOG =
+      java.util.logging.Logger.getLogger(MockWebServer.class.getName());
+
+  private static final String MESSAGE =
+      "{\"id\":\"743912480873742396\",\"channel_id\":\"702595512402640950\","
+          + "\"guild_id\":\"702595512402640946\",\"content\":\"load\",\"tts\":false,"
+          + "\"author\":{\"id\":\"245627862424518656\",\"username\":\"load\","
+          + "\"discriminator\":\"0001\",\"avatar\":null},\"mentions\":[],\"attachments\":[],"
+          + "\"embeds\":[],\"timestamp\":\"2020-08-14T19:42:07.318000+00:00\"}";
+
+  private final int events = Integer.getInteger("load.events", 100000);
+
+  private final int requests = Integer.getInteger("load.requests", 20000);
+
+  private final int threads = Integer.getInteger("load.threads", 8);
+
+  private final int channels = Integer.getInteger("load.channels", 8);
+
+  private final int rateLimit = Integer.getInteger("load.rateLimit", 0);
+
+  private final long maxWaitMillis = Long.getLong("load.maxWaitMillis", 0);
+
+  private final int tooManyRequestsEvery = Integer.getInteger("load.tooManyRequestsEvery", 0);
+
+  private final long latencyMillis = Long.getLong("load.latencyMillis", 0);
+
+  /**
+   * Run the load test.
+   *
+   * @throws Exception if the fake Discord could not be started or the test was interrupted
+   */
+  public void run() throws Exception {
+    try (FakeDiscord discord =
+        FakeDiscord.builder()
+            .setRateLimit(rateLimit, Duration.ofSeconds(1))
+            .setTooManyRequests(tooManyRequestsEvery, Duration.ofMillis(100))
+            .setLatency(Duration.ofMillis(latencyMillis))
+            .build()) {
+      discord.start();
+
+      try (SmallD smalld =
+          SmallD.create(
+              Config.builder()
+                  .setToken("Load.Token")
+                  .setBaseUrl(discord.getBaseUrl())
+                  .setGlobalRateLimit(1_000_000)
+                  .setRateLimitMaxWait(Duration.ofMillis(maxWaitMillis))
+                  .setDispatcherConcurrency(threads, threads)
+                  .setConnectionPool(threads, Duration.ofMinutes(5))
+                  .build())) {
+
+        runEvents(discord, smalld);
+        runRequests(discord, smalld);
+      }
+    }
+  }
+
+  private void runEvents(FakeDiscord discord, SmallD smalld) throws InterruptedException {
+    AtomicLong received = new AtomicLong();
+    smalld.onGatewayPayload(
+        "load",
+        p -> {
+          if (GatewayPayload.parse(p).isT("MESSAGE_CREATE")) {
+            received.incrementAndGet();
+          }
+        });
+
+    CompletableFuture.runAsync(smalld::run);
+
+    while (discord.getIdentifiedSessionCount() == 0) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+
+    long start = System.nanoTime();
+
+    long sent = discord.storm("MESSAGE_CREATE", MESSAGE, events);
+
+    while (received.get() < sent) {
+      TimeUnit.MILLISECONDS.sleep(1);
+    }
+
+    report("Gateway", sent, "events", System.nanoTime() - start);
+  }
+
+  private void runRequests(FakeDiscord discord, SmallD smalld) throws InterruptedException {
+    AtomicLong succeeded = new AtomicLong();
+    AtomicLong rateLimited = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<CompletableFuture<Void>> workers = new ArrayList<>();
+
+    long start = System.nanoTime();
+
+    for (int t = 0; t < threads; t++) {
+      int first = t;
+      workers.add(
+          CompletableFuture.runAsync(
+              () -> {
+                for (int i = first; i < requests; i += threads) {
+                  try {
+                    smalld.post("/channels/" + (i % channels) + "/messages", MESSAGE);
+                    succeeded.incrementAndGet();
+                  } catch (RateLimitException e) {
+                    rateLimited.incrementAndGet();
+                  } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                  }
+                }
+              },
+              executor));
+    }
+
+    CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+    executor.shutdown();
+
+    report("REST", requests, "requests", System.nanoTime() - start);
+
+    LOG.info(
+        "REST: {} succeeded, {} rate limited, {} failed, {} 429s from the server",
+        succeeded.get(),
+        rateLimited.get(),
+        failed.get(),
+        discord.getTooManyRequestsCount());
+  }
+
+  private static void report(String name, long count, String unit, long nanos) {
+    double seconds = nanos / 1e9;
+
+    LOG.info(
+        "{}: {} {} in {} ms ({} {}/sec)",
+        name,
+        count,
+        unit,
+        TimeUnit.NANOSECONDS.toMillis(nanos),
+        String.format("%.0f", count / seconds),
+        unit);
+  }
+
+  /**
+   * Run the load test, configured by system properties.
+   *
+   * @param args not used
+   * @throws Exception if the load test fails
+   */
+  public static void main(String[] args) throws Exception {
+    // MockWebServer logs every request at INFO, which swamps the output of the load test
+    SERVER_LOG.setLevel(Level.WARNING);
+
+    new LoadTest().run();
+  }
+}
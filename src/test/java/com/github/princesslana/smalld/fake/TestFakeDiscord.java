@@ -0,0 +1,131 @@
+package com.github.princesslana.smalld.fake;
+
+import com.github.princesslana.smalld.Config;
+import com.github.princesslana.smalld.GatewayPayload;
+import com.github.princesslana.smalld.SmallD;
+import com.github.princesslana.smalld.ratelimit.RateLimitException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TestFakeDiscord {
+
+  private FakeDiscord discord;
+
+  private SmallD smalld;
+
+  @AfterEach
+  void close() throws Exception {
+    if (smalld != null) {
+      smalld.close();
+    }
+    discord.close();
+  }
+
+  @Test
+  void storm_whenIdentified_shouldDeliverEveryEvent() throws Exception {
+    start(FakeDiscord.builder());
+
+    AtomicLong received = new AtomicLong();
+    smalld.onGatewayPayload(
+        p -> {
+          if (GatewayPayload.parse(p).isT("MESSAGE_CREATE")) {
+            received.incrementAndGet();
+          }
+        });
+
+    connect();
+
+    Assertions.assertThat(discord.storm("MESSAGE_CREATE", "{\"content\":\"hi\"}", 1000))
+        .isEqualTo(1000);
+
+    Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> received.get() == 1000);
+  }
+
+  @Test
+  void gateway_whenHeartbeatIntervalElapses_shouldReceiveHeartbeats() throws Exception {
+    start(FakeDiscord.builder().setHeartbeatInterval(Duration.ofMillis(50)));
+
+    connect();
+
+    Awaitility.await().atMost(2, TimeUnit.SECONDS).until(() -> discord.getHeartbeatCount() >= 2);
+  }
+
+  @Test
+  void post_whenRateLimitExhausted_shouldRateLimitBeforeSending() throws Exception {
+    start(FakeDiscord.builder().setRateLimit(2, Duration.ofSeconds(10)));
+
+    smalld.post("/channels/1/messages", "{}");
+    smalld.post("/channels/1/messages", "{}");
+
+    long sent = discord.getRequestCount();
+
+    Assertions.assertThatThrownBy(() -> smalld.post("/channels/1/messages", "{}"))
+        .isInstanceOf(RateLimitException.class);
+
+    Assertions.assertThat(discord.getRequestCount()).isEqualTo(sent);
+    Assertions.assertThat(discord.getTooManyRequestsCount()).isZero();
+  }
+
+  @Test
+  void post_whenTooManyRequestsInjected_shouldThrowRateLimitException() throws Exception {
+    start(FakeDiscord.builder().setTooManyRequests(1, Duration.ofSeconds(1)));
+
+    Assertions.assertThatThrownBy(() -> smalld.post("/channels/1/messages", "{}"))
+        .isInstanceOf(RateLimitException.class);
+
+    Assertions.assertThat(discord.getTooManyRequestsCount()).isEqualTo(1);
+  }
+
+  @Test
+  void get_whenTooManyRequestsInjected_shouldSendRetryAfterInSeconds() throws Exception {
+    start(FakeDiscord.builder().setTooManyRequests(1, Duration.ofMillis(1500)));
+
+    Request request = new Request.Builder().url(discord.getBaseUrl() + "/channels/1").build();
+
+    try (Response response = new OkHttpClient().newCall(request).execute()) {
+      Assertions.assertThat(response.code()).isEqualTo(429);
+      Assertions.assertThat(response.header("Retry-After")).isEqualTo("2");
+    }
+  }
+
+  @Test
+  void post_whenLatency_shouldDelayResponse() throws Exception {
+    start(FakeDiscord.builder().setLatency(Duration.ofMillis(200)));
+
+    long start = System.nanoTime();
+    smalld.post("/channels/1/messages", "{}");
+
+    Assertions.assertThat(System.nanoTime() - start)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  private void start(FakeDiscord.Builder builder) throws Exception {
+    discord = builder.build();
+    discord.start();
+
+    smalld =
+        SmallD.create(
+            Config.builder()
+                .setToken("Fake.Token")
+                .setBaseUrl(discord.getBaseUrl())
+                .setWarmUpConnections(0)
+                .build());
+  }
+
+  private void connect() {
+    CompletableFuture.runAsync(smalld::run);
+
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> discord.getIdentifiedSessionCount() == 1);
+  }
+}
@@ -0,0 +1,37 @@
+package com.github.princesslana.smalld.metrics;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestBucketedHistogram {
+
+  private final BucketedHistogram subject = new BucketedHistogram();
+
+  @Test
+  void getPercentile_whenEmpty_shouldBeZero() {
+    Assertions.assertThat(subject.getPercentile(99)).isEqualTo(0);
+    Assertions.assertThat(subject.getMean()).isEqualTo(0);
+  }
+
+  @Test
+  void getPercentile_shouldBeWithinFactorOfTwo() {
+    for (long i = 1; i <= 1000; i++) {
+      subject.record(i);
+    }
+
+    Assertions.assertThat(subject.getPercentile(50)).isBetween(500L, 1000L);
+    Assertions.assertThat(subject.getPercentile(99)).isBetween(990L, 1000L);
+    Assertions.assertThat(subject.getPercentile(100)).isEqualTo(1000);
+  }
+
+  @Test
+  void record_shouldTrackCountSumAndMax() {
+    subject.record(3);
+    subject.record(5);
+    subject.record(-1);
+
+    Assertions.assertThat(subject.getCount()).isEqualTo(3);
+    Assertions.assertThat(subject.getSum()).isEqualTo(8);
+    Assertions.assertThat(subject.getMax()).isEqualTo(5);
+  }
+}
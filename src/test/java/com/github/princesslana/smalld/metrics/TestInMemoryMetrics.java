@@ -0,0 +1,57 @@
+package com.github.princesslana.smalld.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TestInMemoryMetrics {
+
+  private final InMemoryMetrics subject = new InMemoryMetrics();
+
+  @Test
+  void counter_whenIncremented_shouldCountByTags() {
+    subject.counter("events", "type", "A").increment();
+    subject.counter("events", "type", "A").increment(2);
+    subject.counter("events", "type", "B").increment();
+
+    Assertions.assertThat(subject.getCount("events", "type", "A")).isEqualTo(3);
+    Assertions.assertThat(subject.getCount("events", "type", "B")).isEqualTo(1);
+    Assertions.assertThat(subject.getCount("events")).isEqualTo(0);
+  }
+
+  @Test
+  void gauge_whenRegistered_shouldReadCurrentValue() {
+    AtomicLong value = new AtomicLong(1);
+    subject.gauge("queue", value::get);
+
+    value.set(5);
+
+    Assertions.assertThat(subject.getGauge("queue")).hasValue(5);
+    Assertions.assertThat(subject.getGauge("other")).isEmpty();
+  }
+
+  @Test
+  void histogram_whenRecorded_shouldBeRetrievable() {
+    subject.histogram("latency").record(10);
+
+    Assertions.assertThat(subject.getHistogram("latency").map(BucketedHistogram::getCount))
+        .contains(1L);
+    Assertions.assertThat(subject.getHistogram("other")).isEmpty();
+  }
+
+  @Test
+  void counter_whenOddTags_shouldThrowException() {
+    Assertions.assertThatThrownBy(() -> subject.counter("events", "type"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void noop_shouldNotBeEnabled() {
+    Metrics noop = Metrics.noop();
+
+    noop.counter("events").increment();
+    noop.histogram("latency").record(1);
+
+    Assertions.assertThat(noop.isEnabled()).isFalse();
+  }
+}
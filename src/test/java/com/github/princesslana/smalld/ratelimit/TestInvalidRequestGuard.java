@@ -0,0 +1,55 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestInvalidRequestGuard {
+
+  private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+  private InvalidRequestGuard subject;
+
+  @BeforeEach
+  void subject() {
+    subject = new InvalidRequestGuard(100, Duration.ofMinutes(1));
+  }
+
+  @Test
+  void acquire_whenNoInvalidRequests_shouldNotDelay() {
+    Assertions.assertThat(subject.acquire(NOW)).isEqualTo(Duration.ZERO);
+  }
+
+  @Test
+  void acquire_whenOverHalfUsed_shouldDelay() {
+    record(70, NOW);
+    Assertions.assertThat(subject.acquire(NOW)).isEqualTo(Duration.ofMillis(500));
+  }
+
+  @Test
+  void acquire_whenNearlyUsed_shouldRefuseUntilRequestsExpire() {
+    record(50, NOW);
+    record(40, NOW.plusSeconds(30));
+
+    Assertions.assertThatThrownBy(() -> subject.acquire(NOW.plusSeconds(30)))
+        .isInstanceOfSatisfying(
+            RateLimitException.class,
+            e -> Assertions.assertThat(e.getExpiry()).isEqualTo(NOW.plusSeconds(60)));
+  }
+
+  @Test
+  void getRemaining_whenWindowPassed_shouldBeFullLimit() {
+    record(50, NOW);
+
+    Assertions.assertThat(subject.getRemaining(NOW)).isEqualTo(50);
+    Assertions.assertThat(subject.getRemaining(NOW.plusSeconds(60))).isEqualTo(100);
+  }
+
+  private void record(int count, Instant at) {
+    for (int i = 0; i < count; i++) {
+      subject.record(at);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import com.github.princesslana.smalld.RequestCancelledException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestPriorityGate {
+
+  private final Clock clock = Clock.systemUTC();
+
+  private final AtomicInteger permits = new AtomicInteger();
+
+  private final RateLimit rateLimit =
+      () -> {
+        if (permits.getAndUpdate(p -> Math.max(0, p - 1)) <= 0) {
+          throw new RateLimitException(clock.instant().plusMillis(20));
+        }
+      };
+
+  private PriorityGate subject;
+
+  @BeforeEach
+  void subject() {
+    subject = new PriorityGate(clock);
+  }
+
+  @Test
+  void acquire_whenPermitAvailable_shouldNotWait() throws Exception {
+    permits.set(1);
+
+    subject.acquire(rateLimit, clock.instant(), clock.instant(), () -> false);
+
+    Assertions.assertThat(permits).hasValue(0);
+  }
+
+  @Test
+  void acquire_whenPermitAvailable_shouldNotTakeLock() throws Exception {
+    permits.set(1);
+
+    CompletableFuture<Void> acquired;
+    synchronized (subject) {
+      acquired =
+          CompletableFuture.runAsync(
+              () -> {
+                try {
+                  subject.acquire(rateLimit, clock.instant(), clock.instant(), () -> false);
+                } catch (InterruptedIOException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+
+      acquired.get(1, TimeUnit.SECONDS);
+    }
+
+    Assertions.assertThat(permits).hasValue(0);
+  }
+
+  @Test
+  void acquire_whenExpiryAfterWaitUntil_shouldThrow() {
+    Assertions.assertThatThrownBy(
+            () -> subject.acquire(rateLimit, clock.instant(), clock.instant(), () -> false))
+        .isInstanceOf(RateLimitException.class);
+  }
+
+  @Test
+  void acquire_whenWaiting_shouldGrantInRankOrder() throws Exception {
+    Instant now = clock.instant();
+    Instant waitUntil = now.plusSeconds(5);
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    CompletableFuture<Void> background =
+        acquireAsync("background", now.plusSeconds(2), waitUntil, order);
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getWaitingCount() == 1);
+
+    CompletableFuture<Void> interactive = acquireAsync("interactive", now, waitUntil, order);
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getWaitingCount() == 2);
+
+    permits.set(2);
+
+    CompletableFuture.allOf(background, interactive).get(1, TimeUnit.SECONDS);
+
+    Assertions.assertThat(order).containsExactly("interactive", "background");
+  }
+
+  @Test
+  void acquire_whenWaitUntilPassed_shouldThrow() throws Exception {
+    Instant now = clock.instant();
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    CompletableFuture<Void> head = acquireAsync("head", now, now.plusSeconds(5), order);
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getWaitingCount() == 1);
+
+    CompletableFuture<Void> waiting =
+        acquireAsync("waiting", now.plusSeconds(1), now.plus(Duration.ofMillis(100)), order);
+
+    Assertions.assertThatThrownBy(() -> waiting.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(RateLimitException.class);
+
+    permits.set(1);
+    head.get(1, TimeUnit.SECONDS);
+
+    Assertions.assertThat(order).containsExactly("head");
+  }
+
+  @Test
+  void acquire_whenCancelledWhileWaiting_shouldThrow() throws Exception {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    Instant waitUntil = clock.instant().plusSeconds(5);
+
+    CompletableFuture<Void> waiting =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                subject.acquire(rateLimit, clock.instant(), waitUntil, cancelled::get);
+              } catch (InterruptedIOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    Awaitility.await().atMost(1, TimeUnit.SECONDS).until(() -> subject.getWaitingCount() == 1);
+
+    cancelled.set(true);
+    subject.wake();
+
+    Assertions.assertThatThrownBy(() -> waiting.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(RequestCancelledException.class);
+    Assertions.assertThat(subject.getWaitingCount()).isZero();
+  }
+
+  private CompletableFuture<Void> acquireAsync(
+      String name, Instant rank, Instant waitUntil, List<String> order) {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            subject.acquire(
+                () -> {
+                  rateLimit.acquire();
+                  order.add(name);
+                },
+                rank,
+                waitUntil,
+                () -> false);
+          } catch (InterruptedIOException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+  }
+}
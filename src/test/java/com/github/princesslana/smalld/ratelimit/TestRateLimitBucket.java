@@ -1,5 +1,7 @@
 package com.github.princesslana.smalld.ratelimit;
 
+import okhttp3.HttpUrl;
+import okhttp3.Request;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -51,4 +53,26 @@ class TestRateLimitBucket {
     Assertions.assertThat(RateLimitBucket.from("GET", "/channels/123/messages/999"))
         .isNotEqualTo(RateLimitBucket.from("DELETE", "/channels/123/messages/999"));
   }
+
+  @Test
+  void from_whenRequestUnderBaseUrl_shouldIgnoreBasePath() {
+    Request request =
+        new Request.Builder().url("https://discord.com/api/v6/channels/123/messages/999").build();
+
+    Assertions.assertThat(RateLimitBucket.from(request, HttpUrl.get("https://discord.com/api/v6")))
+        .isEqualTo(RateLimitBucket.from("GET", "/channels/123/messages/888"));
+  }
+
+  @Test
+  void getRoute_whenDifferentMajorParameter_shouldBeSame() {
+    Assertions.assertThat(RateLimitBucket.from("GET", "/channels/123/messages/999").getRoute())
+        .isEqualTo(RateLimitBucket.from("GET", "/channels/456/messages/888").getRoute())
+        .isEqualTo("/channels/{id}/messages/{message.id}");
+  }
+
+  @Test
+  void getRoute_whenUnknownPath_shouldReplaceIds() {
+    Assertions.assertThat(RateLimitBucket.from("GET", "/applications/123/commands").getRoute())
+        .isEqualTo("/applications/{id}/commands");
+  }
 }
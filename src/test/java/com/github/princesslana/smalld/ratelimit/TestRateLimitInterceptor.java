@@ -0,0 +1,177 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import com.github.princesslana.smalld.MutableClock;
+import com.github.princesslana.smalld.RequestCancelledException;
+import com.github.princesslana.smalld.RequestOptions;
+import com.github.princesslana.smalld.metrics.InMemoryMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TestRateLimitInterceptor {
+
+  private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+  private static final Request REQUEST =
+      new Request.Builder().url("https://example.com/channels/123/messages").build();
+
+  private MutableClock clock;
+
+  private RateLimitInterceptor subject;
+
+  @Mock private Interceptor.Chain chain;
+
+  @BeforeEach
+  void subject() {
+    clock = new MutableClock(NOW);
+    subject = new RateLimitInterceptor(clock);
+
+    Mockito.lenient().when(chain.request()).thenReturn(REQUEST);
+  }
+
+  @Test
+  void intercept_whenResetAfter_shouldExpireRelativeToSend() throws Exception {
+    respondWith(
+        response(200)
+            .header("X-RateLimit-Remaining", "0")
+            .header("X-RateLimit-Reset-After", "1.25"));
+    subject.intercept(chain);
+
+    assertRateLimitedUntil(NOW.plusMillis(1250));
+  }
+
+  @Test
+  void intercept_whenResetAfterElapsed_shouldAllow() throws Exception {
+    respondWith(
+        response(200)
+            .header("X-RateLimit-Remaining", "0")
+            .header("X-RateLimit-Reset-After", "1.25"));
+    subject.intercept(chain);
+
+    clock.plusMillis(1250);
+
+    Assertions.assertThat(subject.intercept(chain).code()).isEqualTo(200);
+  }
+
+  @Test
+  void intercept_whenServerClockAhead_shouldAdjustReset() throws Exception {
+    Instant serverNow = NOW.plusSeconds(10);
+
+    respondWith(
+        response(200)
+            .header(
+                "Date",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(serverNow.atOffset(ZoneOffset.UTC)))
+            .header("X-RateLimit-Remaining", "0")
+            .header("X-RateLimit-Reset", "1577836812.000"));
+    subject.intercept(chain);
+
+    assertRateLimitedUntil(NOW.plusMillis(1500));
+  }
+
+  @Test
+  void intercept_when429WithRetryAfter_shouldThrowRateLimitException() throws Exception {
+    respondWith(response(429).header("Retry-After", "500"));
+
+    Assertions.assertThatThrownBy(() -> subject.intercept(chain))
+        .isInstanceOfSatisfying(
+            RateLimitException.class,
+            e -> Assertions.assertThat(e.getExpiry()).isEqualTo(NOW.plusMillis(500)));
+  }
+
+  @Test
+  void intercept_whenDeadlinePassed_shouldNotSend() throws Exception {
+    Request request =
+        REQUEST
+            .newBuilder()
+            .tag(RequestOptions.class, RequestOptions.builder().setDeadline(NOW).build())
+            .build();
+    Mockito.when(chain.request()).thenReturn(request);
+
+    Assertions.assertThatThrownBy(() -> subject.intercept(chain))
+        .isInstanceOf(RequestCancelledException.class);
+    Mockito.verify(chain, Mockito.never()).proceed(Mockito.any());
+  }
+
+  private void assertRateLimitedUntil(Instant expiry) {
+    Assertions.assertThatThrownBy(() -> subject.intercept(chain))
+        .isInstanceOfSatisfying(
+            RateLimitException.class, e -> Assertions.assertThat(e.getExpiry()).isEqualTo(expiry));
+  }
+
+  @Test
+  void intercept_whenMetrics_shouldRecordLatencyAnd429s() throws Exception {
+    InMemoryMetrics metrics = new InMemoryMetrics();
+    subject = RateLimitInterceptor.builder().setClock(clock).setMetrics(metrics).build();
+
+    respondWith(response(429).header("Retry-After", "500"));
+
+    Assertions.assertThatThrownBy(() -> subject.intercept(chain))
+        .isInstanceOf(RateLimitException.class);
+    Assertions.assertThatThrownBy(() -> subject.intercept(chain))
+        .isInstanceOf(RateLimitException.class);
+
+    Assertions.assertThat(metrics.getCount("smalld.rest.429", "scope", "resource")).isEqualTo(1);
+    Assertions.assertThat(metrics.getCount("smalld.ratelimit.rejected")).isEqualTo(1);
+    Assertions.assertThat(
+            metrics
+                .getHistogram("smalld.rest.latency", "route", "/channels/{id}/messages")
+                .map(h -> h.getCount()))
+        .contains(1L);
+  }
+
+  @Test
+  void intercept_whenWaitingAndResourceRateLimited_shouldNotTakeGlobalPermit() throws Exception {
+    AtomicInteger globalPermits = new AtomicInteger();
+    subject =
+        RateLimitInterceptor.builder()
+            .setClock(clock)
+            .setGlobalRateLimit(globalPermits::incrementAndGet)
+            .setMaxWait(Duration.ofSeconds(1))
+            .build();
+
+    respondWith(
+        response(200).header("X-RateLimit-Remaining", "0").header("X-RateLimit-Reset-After", "5"));
+    subject.intercept(chain);
+
+    assertRateLimitedUntil(NOW.plusSeconds(5));
+    Assertions.assertThat(globalPermits).hasValue(1);
+  }
+
+  @Test
+  void intercept_whenWaitingAndComplete_shouldDiscardResourceGate() throws Exception {
+    subject =
+        RateLimitInterceptor.builder().setClock(clock).setMaxWait(Duration.ofSeconds(1)).build();
+
+    respondWith(response(200));
+    subject.intercept(chain);
+
+    Assertions.assertThat(subject.getResourceGateCount()).isZero();
+  }
+
+  private void respondWith(Response.Builder response) throws Exception {
+    Mockito.when(chain.proceed(Mockito.any())).thenReturn(response.build());
+  }
+
+  private static Response.Builder response(int code) {
+    return new Response.Builder()
+        .request(REQUEST)
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .message("");
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.princesslana.smalld.ratelimit;
+
+import com.github.princesslana.smalld.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestTokenBucketRateLimit {
+
+  private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+  private MutableClock clock;
+
+  private TokenBucketRateLimit subject;
+
+  @BeforeEach
+  void subject() {
+    clock = new MutableClock(NOW);
+    subject = new TokenBucketRateLimit(clock, 5, Duration.ofSeconds(1));
+  }
+
+  @Test
+  void acquire_whenWithinBurst_shouldAllow() {
+    for (int i = 0; i < 5; i++) {
+      subject.acquire();
+    }
+  }
+
+  @Test
+  void acquire_whenBurstExceeded_shouldDenyUntilNextPermit() {
+    for (int i = 0; i < 5; i++) {
+      subject.acquire();
+    }
+
+    Assertions.assertThatThrownBy(subject::acquire)
+        .isInstanceOfSatisfying(
+            RateLimitException.class,
+            e -> Assertions.assertThat(e.getExpiry()).isEqualTo(NOW.plusMillis(200)));
+  }
+
+  @Test
+  void acquire_whenPermitReplenished_shouldAllow() {
+    for (int i = 0; i < 5; i++) {
+      subject.acquire();
+    }
+
+    clock.plusMillis(200);
+
+    subject.acquire();
+    Assertions.assertThatThrownBy(subject::acquire).isInstanceOf(RateLimitException.class);
+  }
+}